@@ -0,0 +1,50 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A computer player that plays from an OpeningBook while the position is in it and asks another engine
+ * otherwise.
+ * @invariants book != null AND engine != null
+ */
+public class BookEngine implements IMoveEngine {
+    private OpeningBook book;
+    private IMoveEngine engine;
+    private LongAdder hits = new LongAdder();
+    private LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a player
+     * @pre book != null AND engine != null
+     * @post [player answers from book, then from engine]
+     * @param book positions to answer without searching
+     * @param engine player used for positions not in book
+     */
+    public BookEngine(OpeningBook book, IMoveEngine engine)
+    {
+        this.book = book;
+        this.engine = engine;
+    }
+
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        SearchResult result = book.lookup(board, players.length);
+        if(result != null)
+        {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        return engine.search(board, players, toMove);
+    }
+
+    public OpeningBook getBook() { return book; }
+
+    public IMoveEngine getEngine() { return engine; }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+}
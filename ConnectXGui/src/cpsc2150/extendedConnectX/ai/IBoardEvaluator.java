@@ -0,0 +1,20 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+/**
+ * Heuristic score of a position that is not yet won or tied, used at the leaves of a search.
+ */
+public interface IBoardEvaluator {
+    /**
+     * Scores a position for one player against all the others
+     * @pre 0 <= player < players.length AND [players holds every token on board]
+     * @post board = #board AND [evaluate() > 0 if the position favours players[player], < 0 if it favours
+     *       the other players] AND |evaluate()| < NegamaxEngine.WIN_SCORE - [longest possible game]
+     * @param board board to score
+     * @param players tokens of the players in turn order
+     * @param player index in players of the player the score is for
+     * @return heuristic score
+     */
+    public int evaluate(IGameBoard board, char[] players, int player);
+}
@@ -0,0 +1,37 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+/**
+ * A computer player that picks the column to play on an IGameBoard.
+ * @defines players = tokens of the players in turn order
+ *          toMove = index in players of the player whose turn it is
+ */
+public interface IMoveEngine {
+    /**
+     * Searches for a column for the player to move
+     * @pre [board is not won or tied] AND 0 <= toMove < players.length AND
+     *      [players holds every token on board]
+     * @post board = #board AND [search() = result whose column c has board.checkIfFree(c)]
+     * @param board board to move on; may be modified during the search but is restored before returning
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @return column to play with the statistics of the search
+     */
+    public SearchResult search(IGameBoard board, char[] players, int toMove);
+
+    /**
+     * Chooses a column for the player to move
+     * @pre [board is not won or tied] AND 0 <= toMove < players.length AND
+     *      [players holds every token on board]
+     * @post board = #board AND [chooseMove() = a column c with board.checkIfFree(c)]
+     * @param board board to move on; may be modified during the search but is restored before returning
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @return column to play
+     */
+    default public int chooseMove(IGameBoard board, char[] players, int toMove)
+    {
+        return search(board, players, toMove).getBestColumn();
+    }
+}
@@ -0,0 +1,468 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+import cpsc2150.extendedConnectX.models.InstrumentedBoard;
+import cpsc2150.extendedConnectX.models.ThreatTrackingBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A computer player using Monte Carlo tree search with UCT: it grows a tree of moves from the position, choosing
+ * which branch to explore by the upper confidence bound of its playout results, and finishes each branch with a
+ * random playout to the end of the game. It needs no evaluator and no depth, so it copes with wide boards where
+ * alpha-beta cannot see far, and it gets stronger with every playout per second.
+ * <p>
+ * Any number of players is handled by scoring each node for the player who made its move: 1 for a win, 1 / the
+ * number of players for a tie and 0 otherwise. The column played is the most visited child of the root and the
+ * reported score is that child's mean result in thousandths; depth is the deepest node reached and nodes counts
+ * playouts.
+ * <p>
+ * The search is root parallel: every thread grows its own tree on its own copy of the board and their root
+ * children are summed at the end, so threads never share memory while searching. Each tree lives in parallel
+ * arrays sized once from a memory cap, so a search allocates almost nothing, and a tree that fills up keeps
+ * running playouts from its leaves without growing. Playouts make and unmake moves on the board copy. A
+ * ThreatTrackingBoard is searched through the board it wraps, as window counts only slow playouts down.
+ * @invariants timeBudgetNanos > 0 AND exploration >= 0 AND trees.length >= 1 AND
+ *             (trees.length = 1 OR pool != null)
+ */
+public class MonteCarloEngine implements IMoveEngine {
+    /**
+     * Memory for all trees together when no cap is given, in megabytes
+     */
+    public static final int DEFAULT_MEGABYTES = 32;
+    /**
+     * Weight of the exploration term of UCT when none is given, the usual sqrt(2)
+     */
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+    /**
+     * Bytes of tree memory per node
+     */
+    public static final int BYTES_PER_NODE = 17;
+
+    //states of a node
+    private static final byte UNCHECKED = 0;
+    private static final byte OPEN = 1;
+    private static final byte EXPANDED = 2;
+    private static final byte WON = 3;
+    private static final byte TIED = 4;
+
+    private static final int PLAYOUTS_BETWEEN_CLOCK_CHECKS = 64;
+
+    private long timeBudgetNanos;
+    private double exploration;
+    private Tree[] trees;
+    private ForkJoinPool pool;
+    private long treeNodes;
+
+    /**
+     * Constructs an engine with the default memory cap and exploration weight
+     * @pre threads >= 1 AND timeBudgetMillis > 0
+     * @post [engine searches on threads threads for timeBudgetMillis per move within DEFAULT_MEGABYTES of tree
+     *       memory, using DEFAULT_EXPLORATION and playouts seeded from seed]
+     * @param threads number of threads, each growing its own tree
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     * @param seed seed of the random playouts
+     */
+    public MonteCarloEngine(int threads, long timeBudgetMillis, long seed)
+    {
+        this(threads, timeBudgetMillis, DEFAULT_MEGABYTES, DEFAULT_EXPLORATION, seed);
+    }
+
+    /**
+     * Constructs an engine, allocating the memory of its trees
+     * @pre threads >= 1 AND timeBudgetMillis > 0 AND megabytes >= 1 AND exploration >= 0
+     * @post [engine searches on threads threads for timeBudgetMillis per move, its trees together holding at most
+     *       megabytes of nodes, using exploration as the UCT weight and playouts seeded from seed]
+     * @param threads number of threads, each growing its own tree
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     * @param megabytes memory cap of all trees together
+     * @param exploration weight of the exploration term of UCT
+     * @param seed seed of the random playouts
+     */
+    public MonteCarloEngine(int threads, long timeBudgetMillis, int megabytes, double exploration, long seed)
+    {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.exploration = exploration;
+        long nodesPerTree = (long) megabytes * 1024 * 1024 / BYTES_PER_NODE / threads;
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, nodesPerTree);
+        trees = new Tree[threads];
+        for(int i = 0; i < threads; i++)
+        {
+            trees[i] = new Tree(capacity, seed + i * 0x9E3779B97F4A7C15L);
+        }
+        //the calling thread grows the first tree itself
+        pool = threads > 1 ? new ForkJoinPool(threads - 1) : null;
+    }
+
+    public int getThreads() { return trees.length; }
+
+    /**
+     * Gets the memory the trees take
+     * @post [getTreeBytes() = BYTES_PER_NODE * total node capacity of all trees]
+     * @return bytes allocated for tree nodes
+     */
+    public long getTreeBytes() { return (long) trees[0].capacity * trees.length * BYTES_PER_NODE; }
+
+    /**
+     * Gets how much of the trees the last search used
+     * @post [getTreeNodes() = nodes created by all trees during the last search]
+     * @return nodes in use
+     */
+    public long getTreeNodes() { return treeNodes; }
+
+    /**
+     * Stops the worker threads
+     * @pre none
+     * @post [the worker threads end once idle; search must not be called again]
+     */
+    public void shutdown()
+    {
+        if(pool != null)
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Searches for the best column with playouts until the time budget runs out
+     * @pre [board is not won or tied] AND 0 <= toMove < players.length AND [players holds every token on board]
+     * @post board = #board AND [search() = most visited free column, its mean result in thousandths, the deepest
+     *       node reached and the number of playouts]
+     * @param board board to search; only copied, never changed
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @return best column found, with its score, tree depth and playouts of every thread
+     */
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+        //playouts do not use window counts, so they run on the board behind any tracker, still measured if it was
+        IGameBoard base = InstrumentedBoard.unwrap(board);
+        base = base instanceof ThreatTrackingBoard ? ((ThreatTrackingBoard) base).getBoard() : base;
+        boolean instrumented = board instanceof InstrumentedBoard;
+        int[] order = NegamaxEngine.centerFirst(board.getNumColumns());
+        for(Tree tree : trees)
+        {
+            tree.reset(instrumented ? new InstrumentedBoard(base.copy()) : base.copy(), players, toMove, order,
+                    deadline);
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int i = 1; i < trees.length; i++)
+        {
+            tasks.add(pool.submit(trees[i]::grow));
+        }
+        trees[0].grow();
+        for(ForkJoinTask<?> task : tasks)
+        {
+            task.join();
+        }
+
+        long[] visits = new long[board.getNumColumns()];
+        double[] wins = new double[board.getNumColumns()];
+        long playouts = 0;
+        int depth = 0;
+        treeNodes = 0;
+        for(Tree tree : trees)
+        {
+            tree.addRootChildren(visits, wins);
+            playouts += tree.playouts;
+            depth = Math.max(depth, tree.maxDepth);
+            treeNodes += tree.size;
+            tree.board = null;
+        }
+        int bestColumn = -1;
+        for(int column : order)
+        {
+            if(board.checkIfFree(column) && (bestColumn < 0 || visits[column] > visits[bestColumn]))
+            {
+                bestColumn = column;
+            }
+        }
+        int score = visits[bestColumn] == 0 ? 0 : (int) (1000 * wins[bestColumn] / visits[bestColumn]);
+        return new SearchResult(bestColumn, score, depth, playouts, System.nanoTime() - start);
+    }
+
+    @Override
+    public String toString()
+    {
+        long capacity = (long) trees[0].capacity * trees.length;
+        return "threads " + trees.length + " tree nodes " + treeNodes + " of " + capacity + " ("
+                + getTreeBytes() / (1024 * 1024) + " MB)";
+    }
+
+    /**
+     * One search tree in parallel arrays, with the board it is grown on. Node 0 is the root; the children of a
+     * node are contiguous, in center first column order.
+     * @invariants 0 <= size <= capacity
+     */
+    private class Tree {
+        private final int capacity;
+        private final int[] firstChild;
+        private final short[] childCount;
+        private final short[] column;
+        private final int[] visits;
+        private final float[] wins;
+        private final byte[] state;
+        private int size;
+        private long random;
+
+        private IGameBoard board;
+        private char[] players;
+        private int rootPlayer;
+        private int[] order;
+        private long deadline;
+        private int cells;
+        private int[] moves = new int[0];
+        private int[] path = new int[0];
+        private int played;
+
+        private long playouts;
+        private int maxDepth;
+
+        private Tree(int capacity, long seed)
+        {
+            this.capacity = capacity;
+            firstChild = new int[capacity];
+            childCount = new short[capacity];
+            column = new short[capacity];
+            visits = new int[capacity];
+            wins = new float[capacity];
+            state = new byte[capacity];
+            random = seed;
+        }
+
+        /**
+         * Empties the tree for a search of board
+         * @post [the tree holds only an open root for board with players[toMove] to move]
+         */
+        private void reset(IGameBoard board, char[] players, int toMove, int[] order, long deadline)
+        {
+            this.board = board;
+            this.players = players;
+            this.rootPlayer = toMove;
+            this.order = order;
+            this.deadline = deadline;
+            cells = board.getNumRows() * board.getNumColumns();
+            int empty = cells - board.getNumMoves();
+            if(moves.length < empty)
+            {
+                moves = new int[empty];
+                path = new int[empty + 1];
+            }
+            size = 1;
+            visits[0] = 0;
+            wins[0] = 0;
+            state[0] = OPEN;
+            playouts = 0;
+            maxDepth = 0;
+        }
+
+        /**
+         * Runs iterations until the deadline, always at least one
+         */
+        private void grow()
+        {
+            do
+            {
+                for(int i = 0; i < PLAYOUTS_BETWEEN_CLOCK_CHECKS; i++)
+                {
+                    iterate();
+                }
+            }
+            while(System.nanoTime() < deadline);
+        }
+
+        /**
+         * Selects down the tree, expands a leaf, plays out from it and backs the result up the path
+         * @post [board is as it was before] AND playouts = #playouts + 1
+         */
+        private void iterate()
+        {
+            played = 0;
+            int node = 0;
+            int depth = 0;
+            path[0] = 0;
+            while(state[node] == EXPANDED)
+            {
+                node = select(node);
+                path[++depth] = node;
+                enter(node, depth);
+            }
+            if(state[node] == OPEN && (node == 0 || visits[node] > 0) && expand(node))
+            {
+                //the first child is unvisited, so it is the one selection would take
+                node = firstChild[node];
+                path[++depth] = node;
+                enter(node, depth);
+            }
+            int winner;
+            if(state[node] == WON)
+            {
+                winner = moverAt(depth);
+            }
+            else if(state[node] == TIED)
+            {
+                winner = -1;
+            }
+            else
+            {
+                winner = playout((rootPlayer + depth) % players.length);
+            }
+
+            float tie = 1f / players.length;
+            visits[0]++;
+            for(int d = 1; d <= depth; d++)
+            {
+                int n = path[d];
+                int mover = moverAt(d);
+                visits[n]++;
+                wins[n] += winner == mover ? 1 : winner < 0 ? tie : 0;
+            }
+            while(played > 0)
+            {
+                board.removeToken(moves[--played]);
+            }
+            playouts++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        /**
+         * Plays the move of a node and works out if it ended the game the first time the node is reached
+         */
+        private void enter(int node, int depth)
+        {
+            int c = column[node];
+            board.placeToken(players[moverAt(depth)], c);
+            moves[played++] = c;
+            if(state[node] == UNCHECKED)
+            {
+                state[node] = board.checkForWin(c) ? WON : board.getNumMoves() == cells ? TIED : OPEN;
+            }
+        }
+
+        /**
+         * Picks the child with the highest upper confidence bound, or the first child never visited
+         */
+        private int select(int node)
+        {
+            int first = firstChild[node];
+            int end = first + childCount[node];
+            double logVisits = Math.log(visits[node]);
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for(int child = first; child < end; child++)
+            {
+                int n = visits[child];
+                if(n == 0)
+                {
+                    return child;
+                }
+                double value = wins[child] / n + exploration * Math.sqrt(logVisits / n);
+                if(value > bestValue)
+                {
+                    best = child;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds a child for every free column of an open node, unless the tree is full
+         * @post [expand() = true and node is EXPANDED, or false if there was no room]
+         */
+        private boolean expand(int node)
+        {
+            int count = 0;
+            for(int c : order)
+            {
+                if(board.checkIfFree(c))
+                {
+                    count++;
+                }
+            }
+            if(count > capacity - size)
+            {
+                return false;
+            }
+            firstChild[node] = size;
+            childCount[node] = (short) count;
+            for(int c : order)
+            {
+                if(board.checkIfFree(c))
+                {
+                    column[size] = (short) c;
+                    childCount[size] = 0;
+                    visits[size] = 0;
+                    wins[size] = 0;
+                    state[size] = UNCHECKED;
+                    size++;
+                }
+            }
+            state[node] = EXPANDED;
+            return true;
+        }
+
+        /**
+         * Plays random moves until the game ends
+         * @post [playout() = index of the winner, or -1 for a tie] AND [the moves are pushed onto moves]
+         */
+        private int playout(int player)
+        {
+            int columns = board.getNumColumns();
+            while(board.getNumMoves() < cells)
+            {
+                //a random column, or the next free one to its right
+                int c = (int) (((nextRandom() >>> 32) * columns) >>> 32);
+                while(!board.checkIfFree(c))
+                {
+                    c = c + 1 == columns ? 0 : c + 1;
+                }
+                board.placeToken(players[player], c);
+                moves[played++] = c;
+                if(board.checkForWin(c))
+                {
+                    return player;
+                }
+                player = player + 1 == players.length ? 0 : player + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds the visits and results of the root's children to the totals by column
+         */
+        private void addRootChildren(long[] columnVisits, double[] columnWins)
+        {
+            if(state[0] != EXPANDED)
+            {
+                return;
+            }
+            for(int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++)
+            {
+                columnVisits[column[child]] += visits[child];
+                columnWins[column[child]] += wins[child];
+            }
+        }
+
+        private int moverAt(int depth)
+        {
+            return (rootPlayer + depth - 1) % players.length;
+        }
+
+        /**
+         * SplitMix64, which needs no allocation and is good enough for picking columns
+         */
+        private long nextRandom()
+        {
+            long z = random += 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
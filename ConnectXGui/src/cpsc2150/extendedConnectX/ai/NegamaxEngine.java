@@ -0,0 +1,385 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+import cpsc2150.extendedConnectX.models.ZobristKeys;
+
+/**
+ * A computer player searching with negamax, alpha-beta pruning and iterative deepening under a time budget.
+ * <p>
+ * With more than two players the search is paranoid: every opponent is assumed to play against the
+ * searching player, so the players split into two sides. Scores are kept from the point of view of the
+ * side to move and are only negated when the turn passes to the other side, which makes the search
+ * plain negamax for two players.
+ * <p>
+ * Moves are made and unmade on the board passed in (placeToken and removeToken) instead of copying it,
+ * and are tried center column first, with the best move of the previous iteration first at the root.
+ * <p>
+ * Results are kept in a TranspositionTable keyed by the board's canonical key, so positions reached through
+ * different move orders, and a position and its mirror image, are only searched once and the stored best move is
+ * tried first. Stored columns are in the canonical orientation and are mapped back with canonicalColumn.
+ * @invariants timeBudgetNanos > 0 AND 1 <= maxDepth
+ */
+public class NegamaxEngine implements IMoveEngine {
+    /**
+     * Score of a won position, less the number of moves it takes so faster wins score higher
+     */
+    public static final int WIN_SCORE = 1_000_000;
+    /**
+     * Deepest iteration searched when no other limit is given
+     */
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int NODES_BETWEEN_CLOCK_CHECKS = 1023;
+    private static final int MAX_PLY = 10_000;
+
+    private long timeBudgetNanos;
+    private int maxDepth;
+    private IBoardEvaluator evaluator;
+    private TranspositionTable table;
+
+    private IGameBoard board;
+    private char[] players;
+    private int rootPlayer;
+    private int[] moveOrder;
+    private long rootKeyMix;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+
+    /**
+     * Constructs an engine with a time budget per move and the default depth limit and evaluator
+     * @pre timeBudgetMillis > 0
+     * @post [engine searches for timeBudgetMillis per move up to DEFAULT_MAX_DEPTH using a ThreatEvaluator
+     *       and a transposition table of TranspositionTable.DEFAULT_MEGABYTES]
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     */
+    public NegamaxEngine(long timeBudgetMillis)
+    {
+        this(timeBudgetMillis, DEFAULT_MAX_DEPTH, new ThreatEvaluator(),
+                new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * Constructs an engine
+     * @pre timeBudgetMillis > 0 AND 1 <= maxDepth < 256 AND evaluator != null
+     * @post [engine searches for timeBudgetMillis per move up to maxDepth using evaluator at the leaves and
+     *       table to remember positions, or no table if table is null]
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     * @param maxDepth deepest iteration to search
+     * @param evaluator heuristic for positions at the depth limit
+     * @param table transposition table to use, or null for none
+     */
+    public NegamaxEngine(long timeBudgetMillis, int maxDepth, IBoardEvaluator evaluator, TranspositionTable table)
+    {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.maxDepth = maxDepth;
+        this.evaluator = evaluator;
+        this.table = table;
+    }
+
+    public TranspositionTable getTranspositionTable() { return table; }
+
+    /**
+     * Searches for the best column with iterative deepening until the time budget runs out, the depth
+     * limit is reached or the result of the game is proven
+     * @pre [board is not won or tied] AND 0 <= toMove < players.length AND [players holds every token on board]
+     * @post board = #board AND [search() = result of the deepest completed iteration, whose column is free]
+     * @param board board to search; restored before returning
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @return best column found, with its score, depth and search statistics
+     */
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        long start = System.nanoTime();
+        begin(board, players, toMove, start + timeBudgetNanos);
+
+        int emptyCells = 0;
+        for(int column = 0; column < board.getNumColumns(); column++)
+        {
+            emptyCells += board.getNumRows() - board.getColumnHeight(column);
+        }
+        int bestColumn = -1;
+        for(int column : moveOrder)
+        {
+            if(board.checkIfFree(column))
+            {
+                bestColumn = column;
+                break;
+            }
+        }
+        int bestScore = 0;
+        int completedDepth = 0;
+        int[] rootResult = new int[2];
+        for(int depth = 1; depth <= Math.min(maxDepth, emptyCells); depth++)
+        {
+            searchRoot(depth, bestColumn, rootResult);
+            if(aborted)
+            {
+                break;
+            }
+            bestColumn = rootResult[0];
+            bestScore = rootResult[1];
+            completedDepth = depth;
+            if(Math.abs(bestScore) >= WIN_SCORE - emptyCells)
+            {
+                //the result is proven, deeper iterations cannot change it
+                break;
+            }
+        }
+        this.board = null;
+        return new SearchResult(bestColumn, bestScore, completedDepth, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Scores one root move to a fixed depth; used by ParallelRootSearch so each worker can search one
+     * root move on its own board copy with its own engine
+     * @pre [board is not won or tied] AND board.checkIfFree(column) AND depth >= 1 AND
+     *      0 <= toMove < players.length
+     * @post board = #board AND [scoreRootMove() = score of column for players[toMove], or a value <= alpha if it
+     *       is no better than alpha] AND [wasAborted() = true if deadline passed before the score was found]
+     * @param board board to search; restored before returning
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @param column root move to score
+     * @param depth depth to search, counting the root move
+     * @param alpha best score already found for another root move
+     * @param deadline System.nanoTime() at which to give up
+     * @return score of the move for the player to move
+     */
+    int scoreRootMove(IGameBoard board, char[] players, int toMove, int column, int depth, int alpha, long deadline)
+    {
+        begin(board, players, toMove, deadline);
+        int score = scoreMove(column, toMove, depth, alpha, INFINITY, 0);
+        this.board = null;
+        return score;
+    }
+
+    boolean wasAborted() { return aborted; }
+
+    long getNodes() { return nodes; }
+
+    /**
+     * Sets up the state of a search
+     * @post [this engine searches board for players[toMove] until deadline, with no nodes counted yet]
+     */
+    private void begin(IGameBoard board, char[] players, int toMove, long deadline)
+    {
+        this.board = board;
+        this.players = players;
+        this.rootPlayer = toMove;
+        this.moveOrder = centerFirst(board.getNumColumns());
+        //with more than two players scores depend on who searched, so keep their entries apart
+        this.rootKeyMix = players.length > 2 ? ZobristKeys.keyFor(0xFFFF, toMove, (char) 0xFFFF) : 0;
+        this.nodes = 0;
+        this.deadline = deadline;
+        this.aborted = false;
+    }
+
+    /**
+     * Searches every root move to a fixed depth
+     * @pre depth >= 1 AND board.checkIfFree(firstColumn)
+     * @post board = #board AND [if not aborted, result[0] = best column and result[1] = its score]
+     */
+    private void searchRoot(int depth, int firstColumn, int[] result)
+    {
+        int alpha = -INFINITY;
+        int bestColumn = firstColumn;
+        for(int i = -1; i < moveOrder.length; i++)
+        {
+            int column = i < 0 ? firstColumn : moveOrder[i];
+            if((i >= 0 && column == firstColumn) || !board.checkIfFree(column))
+            {
+                continue;
+            }
+            int score = scoreMove(column, rootPlayer, depth, alpha, INFINITY, 0);
+            if(aborted)
+            {
+                return;
+            }
+            if(score > alpha)
+            {
+                alpha = score;
+                bestColumn = column;
+            }
+        }
+        result[0] = bestColumn;
+        result[1] = alpha;
+    }
+
+    /**
+     * Negamax search of a position
+     * @pre [board is not won or tied] AND depth >= 0 AND alpha < beta
+     * @post board = #board AND [negamax() = score for the side of toMove, exact when inside (alpha, beta)]
+     */
+    private int negamax(int toMove, int depth, int alpha, int beta, int ply)
+    {
+        if((++nodes & NODES_BETWEEN_CLOCK_CHECKS) == 0 && System.nanoTime() > deadline)
+        {
+            aborted = true;
+        }
+        if(aborted)
+        {
+            return 0;
+        }
+        if(depth == 0)
+        {
+            int score = evaluator.evaluate(board, players, rootPlayer);
+            return toMove == rootPlayer ? score : -score;
+        }
+        long key = board.getCanonicalKey() ^ rootKeyMix;
+        int tableColumn = -1;
+        if(table != null)
+        {
+            long entry = table.probe(key);
+            if(entry != 0)
+            {
+                tableColumn = board.canonicalColumn(TranspositionTable.columnOf(entry));
+                if(TranspositionTable.depthOf(entry) >= depth)
+                {
+                    int score = fromTable(TranspositionTable.scoreOf(entry), ply);
+                    int bound = TranspositionTable.boundOf(entry);
+                    if(bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == TranspositionTable.UPPER_BOUND && score <= alpha))
+                    {
+                        return score;
+                    }
+                }
+            }
+        }
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestColumn = -1;
+        for(int i = -1; i < moveOrder.length; i++)
+        {
+            //the stored best move goes first, then every other column center first
+            int column = i < 0 ? tableColumn : moveOrder[i];
+            if(column < 0 || (i >= 0 && column == tableColumn) || !board.checkIfFree(column))
+            {
+                continue;
+            }
+            int score = scoreMove(column, toMove, depth, alpha, beta, ply);
+            if(aborted)
+            {
+                return 0;
+            }
+            if(score > best)
+            {
+                best = score;
+                bestColumn = column;
+                if(best > alpha)
+                {
+                    alpha = best;
+                    if(alpha >= beta)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        if(table != null)
+        {
+            int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                    : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(key, depth, bound, toTable(best, ply), board.canonicalColumn(bestColumn));
+        }
+        return best;
+    }
+
+    /**
+     * Converts a score to be stored so a win counts its moves from the stored position, not from the root
+     * @post [toTable() = score adjusted by ply if it is a win or loss score]
+     */
+    private static int toTable(int score, int ply)
+    {
+        if(score > WIN_SCORE - MAX_PLY)
+        {
+            return score + ply;
+        }
+        if(score < -WIN_SCORE + MAX_PLY)
+        {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a stored score back to one counted from the root
+     * @post [fromTable() = toTable reversed]
+     */
+    private static int fromTable(int score, int ply)
+    {
+        if(score > WIN_SCORE - MAX_PLY)
+        {
+            return score - ply;
+        }
+        if(score < -WIN_SCORE + MAX_PLY)
+        {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Makes a move, scores it for the side that made it and unmakes it
+     * @pre board.checkIfFree(column) AND depth >= 1 AND alpha < beta
+     * @post board = #board AND [scoreMove() = score of the move for the side of toMove]
+     */
+    private int scoreMove(int column, int toMove, int depth, int alpha, int beta, int ply)
+    {
+        board.placeToken(players[toMove], column);
+        int score;
+        if(board.checkForWin(column))
+        {
+            score = WIN_SCORE - ply - 1;
+        }
+        else if(board.checkTie())
+        {
+            score = 0;
+        }
+        else
+        {
+            int next = (toMove + 1) % players.length;
+            if(isRootSide(next) == isRootSide(toMove))
+            {
+                score = negamax(next, depth - 1, alpha, beta, ply + 1);
+            }
+            else
+            {
+                score = -negamax(next, depth - 1, -beta, -alpha, ply + 1);
+            }
+        }
+        board.removeToken(column);
+        return score;
+    }
+
+    private boolean isRootSide(int player)
+    {
+        return player == rootPlayer;
+    }
+
+    /**
+     * Orders the columns from the center outwards
+     * @pre columns > 0
+     * @post [centerFirst() = 0..columns-1 sorted by distance from the center, left first on ties]
+     */
+    static int[] centerFirst(int columns)
+    {
+        int[] order = new int[columns];
+        for(int column = 0; column < columns; column++)
+        {
+            //insertion sort on twice the distance from the center, which is exact for even widths too
+            int distance = Math.abs(2 * column - (columns - 1));
+            int slot = column;
+            while(slot > 0 && Math.abs(2 * order[slot - 1] - (columns - 1)) > distance)
+            {
+                order[slot] = order[slot - 1];
+                slot--;
+            }
+            order[slot] = column;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,228 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A read-only book of searched positions for one board shape, memory-mapped from a file and binary-searched,
+ * so the early moves that are played in almost every game are answered in microseconds without searching and
+ * without loading the book onto the heap.
+ * <p>
+ * The file is a 32 byte header (the bytes "CXOB", a version int, rows, columns, numToWin, number of players and
+ * a long entry count) followed by 16 byte entries sorted by canonical key (IGameBoard.getCanonicalKey): the key
+ * (long), the best column (int) in the orientation of the canonical key and its score (int) for the player to
+ * move, so a position and its mirror image share one entry. Everything is big-endian. Lookups only use absolute reads of the
+ * mapping, so one book can be shared by every thread.
+ * @invariants [entries are sorted by key, signed] AND [every column of an entry is in 0..columns-1]
+ */
+public class OpeningBook {
+    /**
+     * Directory the GUI looks in for books, relative to the working directory
+     */
+    public static final String DEFAULT_DIRECTORY = "books";
+
+    private static final int MAGIC = 'C' << 24 | 'X' << 16 | 'O' << 8 | 'B';
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 16;
+
+    private ByteBuffer entries;
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private int numPlayers;
+    private int size;
+
+    private OpeningBook(ByteBuffer entries, int rows, int columns, int numToWin, int numPlayers, int size)
+    {
+        this.entries = entries;
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        this.numPlayers = numPlayers;
+        this.size = size;
+    }
+
+    /**
+     * Maps a book file
+     * @pre file != null
+     * @post [open() = the book stored in file; the file stays mapped until the book is garbage collected]
+     * @param file book to open
+     * @return book
+     * @throws IOException if the file cannot be read, is not a book or is larger than 2 GB
+     */
+    public static OpeningBook open(Path file) throws IOException
+    {
+        //the mapping stays valid after the channel is closed
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if(length < HEADER_BYTES || length > Integer.MAX_VALUE)
+            {
+                throw new StreamCorruptedException("Not an opening book: " + file);
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            {
+                throw new StreamCorruptedException("Not an opening book: " + file);
+            }
+            long size = map.getLong(24);
+            if(size < 0 || HEADER_BYTES + size * ENTRY_BYTES != length)
+            {
+                throw new StreamCorruptedException("Opening book is truncated: " + file);
+            }
+            return new OpeningBook(map, map.getInt(8), map.getInt(12), map.getInt(16), map.getInt(20), (int) size);
+        }
+    }
+
+    /**
+     * Opens the book for a game, if one has been generated
+     * @pre directory != null
+     * @post [find() = the book named fileName(rows, columns, numToWin, numPlayers) in directory, or null if there
+     *       is no such file]
+     * @param directory directory holding books
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param numPlayers number of players
+     * @return book or null
+     * @throws IOException if the book exists but cannot be read
+     */
+    public static OpeningBook find(Path directory, int rows, int columns, int numToWin, int numPlayers)
+            throws IOException
+    {
+        Path file = directory.resolve(fileName(rows, columns, numToWin, numPlayers));
+        return Files.isRegularFile(file) ? open(file) : null;
+    }
+
+    /**
+     * Gets the name a book is stored under
+     * @post [fileName() = "<rows>x<columns>-<numToWin>-<numPlayers>p.cxob"]
+     * @return file name of the book
+     */
+    public static String fileName(int rows, int columns, int numToWin, int numPlayers)
+    {
+        return rows + "x" + columns + "-" + numToWin + "-" + numPlayers + "p.cxob";
+    }
+
+    /**
+     * Writes a book file
+     * @pre [every result's column is in 0..columns-1] AND entries.size() < 2^27
+     * @post [file holds the book of the shape with one entry per key of entries, in key order]
+     * @param file file to write; replaced if it exists
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param numPlayers number of players
+     * @param entries best column in the canonical orientation and score of each position, by canonical key
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, int rows, int columns, int numToWin, int numPlayers,
+                             SortedMap<Long, SearchResult> entries) throws IOException
+    {
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(file)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(numToWin);
+            out.writeInt(numPlayers);
+            out.writeLong(entries.size());
+            for(Map.Entry<Long, SearchResult> entry : entries.entrySet())
+            {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().getBestColumn());
+                out.writeInt(entry.getValue().getScore());
+            }
+        }
+    }
+
+    /**
+     * Looks up the position on a board
+     * @pre board != null
+     * @post board = #board AND [lookup() = the book's column and score for the position, with depth and nodes 0, or
+     *       null if the board's shape or numPlayers differ from the book's, the position is not in the book or
+     *       its column is full]
+     * @param board position to look up
+     * @param numPlayers number of players in the game
+     * @return book move, or null if the book has none
+     */
+    public SearchResult lookup(IGameBoard board, int numPlayers)
+    {
+        long start = System.nanoTime();
+        if(board.getNumRows() != rows || board.getNumColumns() != columns || board.getNumToWin() != numToWin
+                || numPlayers != this.numPlayers)
+        {
+            return null;
+        }
+        int index = indexOf(board.getCanonicalKey());
+        if(index < 0)
+        {
+            return null;
+        }
+        int offset = HEADER_BYTES + index * ENTRY_BYTES;
+        int column = board.canonicalColumn(entries.getInt(offset + 8));
+        if(!board.checkIfFree(column))
+        {
+            //a different position with the same key
+            return null;
+        }
+        return new SearchResult(column, entries.getInt(offset + 12), 0, 0, System.nanoTime() - start);
+    }
+
+    public int getNumRows() { return rows; }
+
+    public int getNumColumns() { return columns; }
+
+    public int getNumToWin() { return numToWin; }
+
+    public int getNumPlayers() { return numPlayers; }
+
+    public int size() { return size; }
+
+    @Override
+    public String toString()
+    {
+        return rows + "x" + columns + ", " + numToWin + " to win, " + numPlayers + " players, " + size
+                + " positions";
+    }
+
+    /**
+     * Binary searches the entries for a key
+     * @post [indexOf() = index of the entry with key, or -1 if there is none]
+     */
+    private int indexOf(long key)
+    {
+        int low = 0;
+        int high = size - 1;
+        while(low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long found = entries.getLong(HEADER_BYTES + middle * ENTRY_BYTES);
+            if(found < key)
+            {
+                low = middle + 1;
+            }
+            else if(found > key)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,215 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.GameBoardBit;
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.IGameBoard;
+import cpsc2150.extendedConnectX.models.ThreatTrackingBoard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Builds an OpeningBook for one board shape by searching every position reachable in the first few moves.
+ * <p>
+ * Positions are enumerated depth first by making and unmaking moves on one board; a position reached
+ * again through another move order, or the mirror image of one already searched, is searched only once, and won
+ * or tied positions are left out.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.ai.OpeningBookGenerator --rows 6 --columns 7 --win 4
+ * --plies 4 --millis 500 [--players 2] [--depth 64] [--threads 1] [--out file]}; the book is written to
+ * OpeningBook.DEFAULT_DIRECTORY under OpeningBook.fileName unless --out is given.
+ * @invariants rows > 0 AND columns > 0 AND numToWin > 0 AND 2 <= players.length
+ */
+public class OpeningBookGenerator {
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private char[] players;
+    private IMoveEngine engine;
+
+    private IGameBoard board;
+    private SortedMap<Long, SearchResult> entries;
+    private long searchNanos;
+    private IntConsumer progress;
+
+    /**
+     * Constructs a generator
+     * @pre rows > 0 AND columns > 0 AND numToWin > 0 AND 2 <= numPlayers <= GameEngine.PLAYER_TOKENS.length AND
+     *      engine != null
+     * @post [generator searches positions of the shape with engine]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param numPlayers number of players
+     * @param engine search run on every position
+     */
+    public OpeningBookGenerator(int rows, int columns, int numToWin, int numPlayers, IMoveEngine engine)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        this.players = new char[numPlayers];
+        System.arraycopy(GameEngine.PLAYER_TOKENS, 0, players, 0, numPlayers);
+        this.engine = engine;
+    }
+
+    /**
+     * Searches every position reachable in at most plies moves
+     * @pre plies >= 0
+     * @post [generate() = the engine's result for every distinct position that is not won or tied and has at
+     *       most plies moves, one of each mirror image pair, by canonical key with columns in the canonical
+     *       orientation]
+     * @param plies number of moves to enumerate
+     * @return search results by canonical key, ready for OpeningBook.write
+     */
+    public SortedMap<Long, SearchResult> generate(int plies)
+    {
+        return generate(plies, searched -> { });
+    }
+
+    /**
+     * Searches every position reachable in at most plies moves, reporting each search as it finishes
+     * @pre plies >= 0 AND progress != null
+     * @post [generate() = the engine's result for every distinct position that is not won or tied and has at
+     *       most plies moves, one of each mirror image pair, by canonical key with columns in the canonical
+     *       orientation] AND [progress was called with the number of positions searched after each search]
+     * @param plies number of moves to enumerate
+     * @param progress called on the generating thread with the number of positions searched so far
+     * @return search results by canonical key, ready for OpeningBook.write
+     */
+    public SortedMap<Long, SearchResult> generate(int plies, IntConsumer progress)
+    {
+        board = new ThreatTrackingBoard(new GameBoardBit(rows, columns, numToWin));
+        entries = new TreeMap<>();
+        searchNanos = 0;
+        this.progress = progress;
+        visit(plies);
+        board = null;
+        this.progress = null;
+        return entries;
+    }
+
+    /**
+     * Gets the time spent searching during the last generate
+     * @post [getSearchNanos() = total elapsed time of the engine's searches]
+     * @return nanoseconds spent searching
+     */
+    public long getSearchNanos() { return searchNanos; }
+
+    /**
+     * Searches the position on board and every position below it
+     * @pre [board is not won or tied]
+     * @post board = #board AND [every new position within pliesLeft moves is in entries]
+     */
+    private void visit(int pliesLeft)
+    {
+        long key = board.getCanonicalKey();
+        if(entries.containsKey(key))
+        {
+            return;
+        }
+        SearchResult result = engine.search(board, players, board.getNumMoves() % players.length);
+        entries.put(key, new SearchResult(board.canonicalColumn(result.getBestColumn()), result.getScore(),
+                result.getDepth(), result.getNodes(), result.getElapsedNanos()));
+        searchNanos += result.getElapsedNanos();
+        progress.accept(entries.size());
+        if(pliesLeft == 0)
+        {
+            return;
+        }
+        char token = players[board.getNumMoves() % players.length];
+        for(int column = 0; column < columns; column++)
+        {
+            if(board.checkIfFree(column))
+            {
+                board.placeToken(token, column);
+                if(!board.checkForWin(column) && !board.checkTie())
+                {
+                    visit(pliesLeft - 1);
+                }
+                board.removeToken(column);
+            }
+        }
+    }
+
+    /**
+     * Generates a book and writes it to a file
+     *
+     * @param args see the class comment
+     * @throws IOException if the book cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int rows = 6;
+        int columns = 7;
+        int numToWin = 4;
+        int numPlayers = 2;
+        int plies = 4;
+        long millis = 500;
+        int depth = NegamaxEngine.DEFAULT_MAX_DEPTH;
+        int threads = 1;
+        String out = null;
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            String value = args[i + 1];
+            switch(args[i])
+            {
+                case "--rows": rows = Integer.parseInt(value); break;
+                case "--columns": columns = Integer.parseInt(value); break;
+                case "--win": numToWin = Integer.parseInt(value); break;
+                case "--players": numPlayers = Integer.parseInt(value); break;
+                case "--plies": plies = Integer.parseInt(value); break;
+                case "--millis": millis = Long.parseLong(value); break;
+                case "--depth": depth = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        String errors = GameEngine.checkSettings(rows, columns, numPlayers, numToWin);
+        if(!errors.isEmpty())
+        {
+            throw new IllegalArgumentException(errors);
+        }
+        Path file = out != null ? Paths.get(out)
+                : Paths.get(OpeningBook.DEFAULT_DIRECTORY, OpeningBook.fileName(rows, columns, numToWin, numPlayers));
+        if(file.getParent() != null)
+        {
+            Files.createDirectories(file.getParent());
+        }
+
+        TranspositionTable table = new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES);
+        ParallelRootSearch parallel = threads > 1
+                ? new ParallelRootSearch(threads, millis, depth, new ThreatEvaluator(), table) : null;
+        IMoveEngine engine = parallel != null ? parallel
+                : new NegamaxEngine(millis, depth, new ThreatEvaluator(), table);
+        OpeningBookGenerator generator = new OpeningBookGenerator(rows, columns, numToWin, numPlayers, engine);
+        long start = System.nanoTime();
+        SortedMap<Long, SearchResult> entries;
+        try
+        {
+            entries = generator.generate(plies, searched -> {
+                if(searched % 1000 == 0)
+                {
+                    System.out.println(searched + " positions searched");
+                }
+            });
+        }
+        finally
+        {
+            if(parallel != null)
+            {
+                parallel.shutdown();
+            }
+        }
+        OpeningBook.write(file, rows, columns, numToWin, numPlayers, entries);
+        System.out.printf("%d positions up to %d plies in %.1f s (%.1f s searching), %d bytes written to %s%n",
+                entries.size(), plies, (System.nanoTime() - start) / 1e9, generator.getSearchNanos() / 1e9,
+                Files.size(file), file);
+    }
+}
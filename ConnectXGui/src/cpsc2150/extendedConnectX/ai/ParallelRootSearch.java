@@ -0,0 +1,213 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A computer player that splits each iteration of a NegamaxEngine search across threads at the root.
+ * <p>
+ * Every iteration searches the best move of the previous iteration first, on the calling thread, to get a
+ * good alpha. The other root moves are then searched at once in a ForkJoinPool, one task per move. Each
+ * task plays on its own copy of the board with its own NegamaxEngine, so workers never share a board; they
+ * share only the lock-free TranspositionTable and the best score found so far, which every task reads as
+ * its alpha when it starts.
+ * <p>
+ * An iteration cut short by the time budget is thrown away and the result of the last complete iteration
+ * is returned, as in NegamaxEngine.
+ * @invariants timeBudgetNanos > 0 AND 1 <= maxDepth AND pool != null
+ */
+public class ParallelRootSearch implements IMoveEngine {
+    private long timeBudgetNanos;
+    private int maxDepth;
+    private IBoardEvaluator evaluator;
+    private TranspositionTable table;
+    private ForkJoinPool pool;
+
+    /**
+     * Constructs an engine with the default depth limit, evaluator and table size
+     * @pre threads >= 1 AND timeBudgetMillis > 0
+     * @post [engine searches on threads threads for timeBudgetMillis per move up to
+     *       NegamaxEngine.DEFAULT_MAX_DEPTH using a ThreatEvaluator and a shared table of
+     *       TranspositionTable.DEFAULT_MEGABYTES]
+     * @param threads number of worker threads
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     */
+    public ParallelRootSearch(int threads, long timeBudgetMillis)
+    {
+        this(threads, timeBudgetMillis, NegamaxEngine.DEFAULT_MAX_DEPTH, new ThreatEvaluator(),
+                new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * Constructs an engine
+     * @pre threads >= 1 AND timeBudgetMillis > 0 AND 1 <= maxDepth < 256 AND evaluator != null
+     * @post [engine searches on threads threads for timeBudgetMillis per move up to maxDepth using evaluator
+     *       at the leaves and table shared by every thread, or no table if table is null]
+     * @param threads number of worker threads
+     * @param timeBudgetMillis time allowed per move in milliseconds
+     * @param maxDepth deepest iteration to search
+     * @param evaluator heuristic for positions at the depth limit; must be safe to use from several threads
+     * @param table transposition table shared by every thread, or null for none
+     */
+    public ParallelRootSearch(int threads, long timeBudgetMillis, int maxDepth, IBoardEvaluator evaluator,
+                              TranspositionTable table)
+    {
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.maxDepth = maxDepth;
+        this.evaluator = evaluator;
+        this.table = table;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public int getThreads() { return pool.getParallelism(); }
+
+    public TranspositionTable getTranspositionTable() { return table; }
+
+    /**
+     * Stops the worker threads
+     * @pre none
+     * @post [the worker threads end once idle; search must not be called again]
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Searches for the best column with iterative deepening, splitting every iteration across the worker threads
+     * @pre [board is not won or tied] AND 0 <= toMove < players.length AND [players holds every token on board]
+     * @post board = #board AND [search() = result of the deepest completed iteration, whose column is free]
+     * @param board board to search; only copied, never changed
+     * @param players tokens of the players in turn order
+     * @param toMove index in players of the player to move
+     * @return best column found, with its score, depth and the nodes searched by every thread
+     */
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        long start = System.nanoTime();
+        long deadline = start + timeBudgetNanos;
+        int[] moveOrder = NegamaxEngine.centerFirst(board.getNumColumns());
+        int emptyCells = 0;
+        for(int column = 0; column < board.getNumColumns(); column++)
+        {
+            emptyCells += board.getNumRows() - board.getColumnHeight(column);
+        }
+        int bestColumn = -1;
+        for(int column : moveOrder)
+        {
+            if(board.checkIfFree(column))
+            {
+                bestColumn = column;
+                break;
+            }
+        }
+        int bestScore = 0;
+        int completedDepth = 0;
+        LongAdder nodes = new LongAdder();
+        NegamaxEngine leader = new NegamaxEngine(1, maxDepth, evaluator, table);
+        IGameBoard leaderBoard = board.copy();
+        for(int depth = 1; depth <= Math.min(maxDepth, emptyCells); depth++)
+        {
+            //the previous best move is searched alone first so the other moves start with its score as alpha
+            int firstScore = leader.scoreRootMove(leaderBoard, players, toMove, bestColumn, depth,
+                    -NegamaxEngine.WIN_SCORE - 1, deadline);
+            nodes.add(leader.getNodes());
+            if(leader.wasAborted())
+            {
+                break;
+            }
+            AtomicInteger alpha = new AtomicInteger(firstScore);
+            List<RootMoveTask> tasks = new ArrayList<>();
+            for(int column : moveOrder)
+            {
+                if(column != bestColumn && board.checkIfFree(column))
+                {
+                    tasks.add(new RootMoveTask(board, players, toMove, column, depth, alpha, deadline, nodes));
+                }
+            }
+            for(RootMoveTask task : tasks)
+            {
+                pool.execute(task);
+            }
+            int iterationColumn = bestColumn;
+            int iterationScore = firstScore;
+            boolean aborted = false;
+            for(RootMoveTask task : tasks)
+            {
+                task.join();
+                aborted |= task.aborted;
+                if(!task.aborted && task.score > iterationScore)
+                {
+                    iterationColumn = task.column;
+                    iterationScore = task.score;
+                }
+            }
+            if(aborted)
+            {
+                break;
+            }
+            bestColumn = iterationColumn;
+            bestScore = iterationScore;
+            completedDepth = depth;
+            if(Math.abs(bestScore) >= NegamaxEngine.WIN_SCORE - emptyCells)
+            {
+                //the result is proven, deeper iterations cannot change it
+                break;
+            }
+        }
+        return new SearchResult(bestColumn, bestScore, completedDepth, nodes.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Scores one root move on a private copy of the board; score and aborted are set once the task is done
+     */
+    private class RootMoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IGameBoard board;
+        private final char[] players;
+        private final int toMove;
+        private final int column;
+        private final int depth;
+        private final AtomicInteger alpha;
+        private final long deadline;
+        private final LongAdder nodes;
+        private int score;
+        private boolean aborted;
+
+        RootMoveTask(IGameBoard board, char[] players, int toMove, int column, int depth, AtomicInteger alpha,
+                     long deadline, LongAdder nodes)
+        {
+            this.board = board;
+            this.players = players;
+            this.toMove = toMove;
+            this.column = column;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.deadline = deadline;
+            this.nodes = nodes;
+        }
+
+        @Override
+        protected void compute()
+        {
+            NegamaxEngine engine = new NegamaxEngine(1, maxDepth, evaluator, table);
+            int bound = alpha.get();
+            int found = engine.scoreRootMove(board.copy(), players, toMove, column, depth, bound, deadline);
+            nodes.add(engine.getNodes());
+            aborted = engine.wasAborted();
+            //a score at or below the alpha it started with is only a bound, so it can never be the best move
+            score = found > bound ? found : Integer.MIN_VALUE;
+            if(!aborted && found > bound)
+            {
+                alpha.accumulateAndGet(found, Math::max);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.util.Random;
+
+/**
+ * A computer player that plays a uniformly random free column. Used to drive headless games; one instance
+ * must not be shared between threads.
+ */
+public class RandomPlayer implements IMoveEngine {
+    private Random random;
+
+    /**
+     * Constructs a player with a fixed seed, so the same games are played every run
+     * @pre none
+     * @post [player picks columns from a Random seeded with seed]
+     * @param seed seed of the random columns
+     */
+    public RandomPlayer(long seed)
+    {
+        random = new Random(seed);
+    }
+
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        return new SearchResult(chooseMove(board, players, toMove), 0, 0, 0, 0);
+    }
+
+    @Override
+    //Overridden because a random move needs no SearchResult
+    public int chooseMove(IGameBoard board, char[] players, int toMove)
+    {
+        int columns = board.getNumColumns();
+        int free = 0;
+        for(int column = 0; column < columns; column++)
+        {
+            if(board.checkIfFree(column))
+            {
+                free++;
+            }
+        }
+        int pick = random.nextInt(free);
+        for(int column = 0; column < columns; column++)
+        {
+            if(board.checkIfFree(column) && pick-- == 0)
+            {
+                return column;
+            }
+        }
+        throw new IllegalStateException("board is full");
+    }
+}
@@ -0,0 +1,72 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.util.Arrays;
+
+/**
+ * A computer player that plays a fixed list of columns, one per turn. The player's n-th move of a game is
+ * script[n]; when that column is full or off the board, or the script has run out, the free column nearest
+ * the center is played instead. The move depends only on the board, so one instance can play any number of
+ * games, on any number of threads.
+ * @invariants script != null
+ */
+public class ScriptedPlayer implements IMoveEngine {
+    private int[] script;
+
+    /**
+     * Constructs a player following a script
+     * @pre script != null
+     * @post [player plays a copy of script]
+     * @param script columns to play, in order
+     */
+    public ScriptedPlayer(int[] script)
+    {
+        this.script = Arrays.copyOf(script, script.length);
+    }
+
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        return new SearchResult(chooseMove(board, players, toMove), 0, 0, 0, 0);
+    }
+
+    @Override
+    //Overridden because a scripted move needs no SearchResult
+    public int chooseMove(IGameBoard board, char[] players, int toMove)
+    {
+        //players move in a fixed order, so the moves played so far tell how many of them were ours
+        int turn = board.getNumMoves() / players.length;
+        if(turn < script.length && script[turn] >= 0 && script[turn] < board.getNumColumns()
+                && board.checkIfFree(script[turn]))
+        {
+            return script[turn];
+        }
+        for(int column : NegamaxEngine.centerFirst(board.getNumColumns()))
+        {
+            if(board.checkIfFree(column))
+            {
+                return column;
+            }
+        }
+        throw new IllegalStateException("board is full");
+    }
+
+    /**
+     * Reads a script written as comma separated columns, such as "3,3,4"
+     * @pre text is a comma separated list of integers
+     * @post [parse() = a player following those columns]
+     * @param text the columns
+     * @return player following the script
+     * @throws NumberFormatException if a column is not an integer
+     */
+    public static ScriptedPlayer parse(String text)
+    {
+        String[] parts = text.split(",");
+        int[] script = new int[parts.length];
+        for(int i = 0; i < parts.length; i++)
+        {
+            script[i] = Integer.parseInt(parts[i].trim());
+        }
+        return new ScriptedPlayer(script);
+    }
+}
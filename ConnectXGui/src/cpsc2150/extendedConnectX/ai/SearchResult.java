@@ -0,0 +1,60 @@
+package cpsc2150.extendedConnectX.ai;
+
+/**
+ * The outcome of one search: the column chosen, its score and how much work it took.
+ * @invariants nodes >= 0 AND elapsedNanos >= 0 AND depth >= 0
+ */
+public class SearchResult {
+    private int bestColumn;
+    private int score;
+    private int depth;
+    private long nodes;
+    private long elapsedNanos;
+
+    /**
+     * Constructs a search result
+     * @pre nodes >= 0 AND elapsedNanos >= 0 AND depth >= 0
+     * @post this.bestColumn = bestColumn AND this.score = score AND this.depth = depth AND
+     *       this.nodes = nodes AND this.elapsedNanos = elapsedNanos
+     * @param bestColumn column chosen
+     * @param score score of the column for the player that searched
+     * @param depth deepest iteration that completed
+     * @param nodes positions visited
+     * @param elapsedNanos time spent searching
+     */
+    public SearchResult(int bestColumn, int score, int depth, long nodes, long elapsedNanos)
+    {
+        this.bestColumn = bestColumn;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getBestColumn() { return bestColumn; }
+
+    public int getScore() { return score; }
+
+    public int getDepth() { return depth; }
+
+    public long getNodes() { return nodes; }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * Gets the search speed
+     * @post [getNodesPerSecond() = nodes / elapsed seconds, or 0 if no time elapsed]
+     * @return nodes searched per second
+     */
+    public long getNodesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "column " + bestColumn + " score " + score + " depth " + depth + " nodes " + nodes
+                + " (" + getNodesPerSecond() / 1000 + "k nodes/s)";
+    }
+}
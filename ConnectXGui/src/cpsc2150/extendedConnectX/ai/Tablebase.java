@@ -0,0 +1,298 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The perfect result of every reachable two player position of one small board shape, memory-mapped from a file
+ * built by TablebaseGenerator.
+ * <p>
+ * A position is indexed without hashing by TablebaseIndex, from its column heights and the rank of the first
+ * player's tokens among the ways to place them. Every index has a 2 bit result for the player to move, four to
+ * a byte, so probing is one read of the mapping. 5x5 with 4 to win has 172 million indexes, 70 million of them
+ * reachable, in a 43 MB file.
+ * <p>
+ * The file is a 32 byte header (the bytes "CXTB", a version int, rows, columns, numToWin, a padding int and the
+ * long number of indexes) followed by the packed results. Lookups only use absolute reads of the mapping, so one
+ * tablebase can be shared by every thread.
+ * @invariants fits(rows, columns) AND size = index.size
+ */
+public class Tablebase {
+    /**
+     * Result of an index that is not a reachable position
+     */
+    public static final int UNKNOWN = 0;
+    /**
+     * The player to move wins with perfect play
+     */
+    public static final int WIN = 1;
+    /**
+     * The player to move loses with perfect play
+     */
+    public static final int LOSS = 2;
+    /**
+     * The game is drawn with perfect play
+     */
+    public static final int DRAW = 3;
+
+    private static final int MAGIC = 'C' << 24 | 'X' << 16 | 'T' << 8 | 'B';
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+
+    private ByteBuffer results;
+    private TablebaseIndex index;
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private long size;
+
+    private Tablebase(ByteBuffer results, TablebaseIndex index, int numToWin)
+    {
+        this.results = results;
+        this.index = index;
+        this.rows = index.rows;
+        this.columns = index.columns;
+        this.numToWin = numToWin;
+        this.size = index.size;
+    }
+
+    /**
+     * Maps a tablebase file
+     * @pre file != null
+     * @post [open() = the tablebase stored in file; the file stays mapped until it is garbage collected]
+     * @param file tablebase to open
+     * @return tablebase
+     * @throws IOException if the file cannot be read, is not a tablebase or is larger than 2 GB
+     */
+    public static Tablebase open(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long length = channel.size();
+            if(length < HEADER_BYTES || length > Integer.MAX_VALUE)
+            {
+                throw new StreamCorruptedException("Not a tablebase: " + file);
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            {
+                throw new StreamCorruptedException("Not a tablebase: " + file);
+            }
+            int rows = map.getInt(8);
+            int columns = map.getInt(12);
+            long size = map.getLong(24);
+            if(!fits(rows, columns))
+            {
+                throw new StreamCorruptedException("Not a tablebase: " + file);
+            }
+            TablebaseIndex index = new TablebaseIndex(rows, columns);
+            if(size != index.size || HEADER_BYTES + bytesFor(size) != length)
+            {
+                throw new StreamCorruptedException("Tablebase is truncated: " + file);
+            }
+            return new Tablebase(map, index, map.getInt(16));
+        }
+    }
+
+    /**
+     * Opens the tablebase for a shape, if one has been generated
+     * @pre directory != null
+     * @post [find() = the tablebase named fileName(rows, columns, numToWin) in directory, or null if there is no
+     *       such file]
+     * @param directory directory holding tablebases
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @return tablebase or null
+     * @throws IOException if the tablebase exists but cannot be read
+     */
+    public static Tablebase find(Path directory, int rows, int columns, int numToWin) throws IOException
+    {
+        Path file = directory.resolve(fileName(rows, columns, numToWin));
+        return Files.isRegularFile(file) ? open(file) : null;
+    }
+
+    /**
+     * Gets the name a tablebase is stored under
+     * @post [fileName() = "<rows>x<columns>-<numToWin>.cxtb"]
+     * @return file name of the tablebase
+     */
+    public static String fileName(int rows, int columns, int numToWin)
+    {
+        return rows + "x" + columns + "-" + numToWin + ".cxtb";
+    }
+
+    /**
+     * Writes a tablebase file
+     * @pre fits(rows, columns) AND packed.length = bytesFor(size(rows, columns))
+     * @post [file holds the tablebase of the shape with the results of packed]
+     * @param file file to write; replaced if it exists
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param packed results, four 2 bit results to a byte, lowest bits first
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, int rows, int columns, int numToWin, byte[] packed) throws IOException
+    {
+        try(OutputStream stream = Files.newOutputStream(file);
+            DataOutputStream out = new DataOutputStream(stream))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(numToWin);
+            out.writeInt(0);
+            out.writeLong(size(rows, columns));
+            out.write(packed);
+        }
+    }
+
+    /**
+     * Checks if a shape can have a tablebase
+     * @post [fits() = true iff the shape fits a 64 bit board with a spare bit per column and its indexes fit an
+     *       int]
+     * @return true if a tablebase of the shape can be built
+     */
+    public static boolean fits(int rows, int columns)
+    {
+        return TablebaseIndex.fits(rows, columns);
+    }
+
+    /**
+     * Gets the number of indexes of a shape
+     * @pre fits(rows, columns)
+     * @post [size() = number of positions TablebaseIndex numbers for the shape]
+     */
+    static long size(int rows, int columns)
+    {
+        return (long) TablebaseIndex.count(rows, columns);
+    }
+
+    static long bytesFor(long size)
+    {
+        return (size + 3) / 4;
+    }
+
+    /**
+     * Looks up the result of the position on a board
+     * @pre [board has this tablebase's shape]
+     * @post board = #board AND [probe() = WIN, LOSS or DRAW for the player to move, or UNKNOWN if first does not
+     *       hold as many tokens as a first player of two would]
+     * @param board position to look up
+     * @param first token of the player who moved first
+     * @return result for the player to move
+     */
+    public int probe(IGameBoard board, char first)
+    {
+        int key = 0;
+        long pattern = 0;
+        int tokens = 0;
+        for(int column = 0; column < columns; column++)
+        {
+            int height = board.getColumnHeight(column);
+            key += height * index.heightPower[column];
+            for(int row = 0; row < height; row++)
+            {
+                if(board.whatsAtPos(row, column) == first)
+                {
+                    pattern |= 1L << tokens;
+                }
+                tokens++;
+            }
+        }
+        if(Long.bitCount(pattern) != (tokens + 1) / 2)
+        {
+            return UNKNOWN;
+        }
+        return probe(index.index(key, pattern));
+    }
+
+    /**
+     * Finds a move that keeps the best result for the player to move
+     * @pre [board has this tablebase's shape, is not won or tied, and is played by players[0] and players[1]
+     *      alternately]
+     * @post board = #board AND [bestMove() = a free column whose result is the position's result, with a score of
+     *       NegamaxEngine.WIN_SCORE, -NegamaxEngine.WIN_SCORE or 0 and depth and nodes 0]
+     * @param board position to move from
+     * @param players tokens of the two players in turn order
+     * @return perfect move
+     */
+    public SearchResult bestMove(IGameBoard board, char[] players)
+    {
+        long start = System.nanoTime();
+        int toMove = board.getNumMoves() % 2;
+        int bestColumn = -1;
+        int best = UNKNOWN;
+        for(int column : NegamaxEngine.centerFirst(columns))
+        {
+            if(!board.checkIfFree(column))
+            {
+                continue;
+            }
+            board.placeToken(players[toMove], column);
+            //a move that wins at once is not a position to look up but the best result there is
+            int result = board.checkForWin(column) ? WIN : flip(probe(board, players[0]));
+            board.removeToken(column);
+            if(bestColumn < 0 || rank(result) > rank(best))
+            {
+                bestColumn = column;
+                best = result;
+            }
+            if(best == WIN)
+            {
+                break;
+            }
+        }
+        int score = best == WIN ? NegamaxEngine.WIN_SCORE : best == LOSS ? -NegamaxEngine.WIN_SCORE : 0;
+        return new SearchResult(bestColumn, score, 0, 0, System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the result at an index
+     * @pre 0 <= index < size
+     * @post [probe() = UNKNOWN, WIN, LOSS or DRAW]
+     */
+    int probe(long index)
+    {
+        int b = results.get(HEADER_BYTES + (int) (index >>> 2));
+        return (b >>> ((int) (index & 3) << 1)) & 3;
+    }
+
+    public int getNumRows() { return rows; }
+
+    public int getNumColumns() { return columns; }
+
+    public int getNumToWin() { return numToWin; }
+
+    public long size() { return size; }
+
+    @Override
+    public String toString()
+    {
+        return rows + "x" + columns + ", " + numToWin + " to win, " + size + " indexes";
+    }
+
+    /**
+     * Turns a result for one player into the result for the other
+     */
+    static int flip(int result)
+    {
+        return result == WIN ? LOSS : result == LOSS ? WIN : result;
+    }
+
+    private static int rank(int result)
+    {
+        return result == WIN ? 3 : result == DRAW ? 2 : result == LOSS ? 1 : 0;
+    }
+}
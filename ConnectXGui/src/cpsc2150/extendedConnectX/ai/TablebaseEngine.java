@@ -0,0 +1,41 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+/**
+ * A computer player that plays perfectly from a Tablebase in two player games of its shape and asks another
+ * engine otherwise.
+ * @invariants tablebase != null AND engine != null
+ */
+public class TablebaseEngine implements IMoveEngine {
+    private Tablebase tablebase;
+    private IMoveEngine engine;
+
+    /**
+     * Constructs a player
+     * @pre tablebase != null AND engine != null
+     * @post [player answers from tablebase when it covers the game, otherwise from engine]
+     * @param tablebase results of every position of one shape
+     * @param engine player used for games the tablebase does not cover
+     */
+    public TablebaseEngine(Tablebase tablebase, IMoveEngine engine)
+    {
+        this.tablebase = tablebase;
+        this.engine = engine;
+    }
+
+    public SearchResult search(IGameBoard board, char[] players, int toMove)
+    {
+        if(players.length == 2 && board.getNumRows() == tablebase.getNumRows()
+                && board.getNumColumns() == tablebase.getNumColumns()
+                && board.getNumToWin() == tablebase.getNumToWin())
+        {
+            return tablebase.bestMove(board, players);
+        }
+        return engine.search(board, players, toMove);
+    }
+
+    public Tablebase getTablebase() { return tablebase; }
+
+    public IMoveEngine getEngine() { return engine; }
+}
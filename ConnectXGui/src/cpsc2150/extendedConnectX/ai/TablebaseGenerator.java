@@ -0,0 +1,364 @@
+package cpsc2150.extendedConnectX.ai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Solves every reachable two player position of a small board shape and builds its Tablebase.
+ * <p>
+ * Positions are numbered by TablebaseIndex, and while one is worked on it is two long bitboards, the occupied
+ * cells and the first player's tokens, with rows + 1 bits per column so no line of tokens can run from one
+ * column into the next. The solver works by ply, on each ply's range of indexes:
+ * <ol>
+ * <li>forwards from the empty board, each reached open position marks its children reached; a position the last
+ * move won is a loss for the player to move and a full board is a draw, and neither is expanded</li>
+ * <li>backwards from the last ply, each reached open position takes the best result of its children, which are
+ * all solved already: a win if some child is a loss for the opponent, else a draw if some child is a draw, else
+ * a loss</li>
+ * </ol>
+ * Memory is the 2 bit results and a reached bit for every index, nothing per position; heapBytes gives the total
+ * and main refuses a shape that would not fit the heap. 5x5 with 4 to win needs 61 MB and solves in 14 s.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.ai.TablebaseGenerator --rows 4 --columns 5 --win 4 [--out file]};
+ * the tablebase is written to OpeningBook.DEFAULT_DIRECTORY under Tablebase.fileName unless --out is given.
+ * @invariants Tablebase.fits(rows, columns) AND numToWin > 0
+ */
+public class TablebaseGenerator {
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private int cells;
+    private TablebaseIndex index;
+
+    private byte[] packed;
+    private long[] reached;
+
+    private long[] results = new long[4];
+    private long elapsedNanos;
+
+    /**
+     * Constructs a generator
+     * @pre Tablebase.fits(rows, columns) AND numToWin > 0
+     * @post [generator solves the rows x columns shape with numToWin in a row to win]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     */
+    public TablebaseGenerator(int rows, int columns, int numToWin)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        this.cells = rows * columns;
+        this.index = new TablebaseIndex(rows, columns);
+    }
+
+    /**
+     * Gets the heap generate needs for a shape
+     * @pre Tablebase.fits(rows, columns)
+     * @post [heapBytes() = bytes of the results and reached bits of every index of the shape]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return bytes of heap used by generate
+     */
+    public static long heapBytes(int rows, int columns)
+    {
+        long size = Tablebase.size(rows, columns);
+        return Tablebase.bytesFor(size) + (size + 63) / 64 * 8;
+    }
+
+    /**
+     * Solves every reachable position
+     * @pre [the heap has heapBytes(rows, columns) free]
+     * @post [generate() = the results of every index of the shape, four to a byte as Tablebase.write takes them,
+     *       UNKNOWN for indexes that are not reachable] AND [getPositions(), getResults() and getElapsedNanos()
+     *       describe this run]
+     * @return packed results
+     */
+    public byte[] generate()
+    {
+        long start = System.nanoTime();
+        packed = new byte[(int) Tablebase.bytesFor(index.size)];
+        reached = new long[(int) ((index.size + 63) >>> 6)];
+        Arrays.fill(results, 0);
+
+        //the empty board is the only position of ply 0
+        reached[0] = 1;
+        for(int ply = 0; ply < cells; ply++)
+        {
+            expand(ply);
+        }
+        for(int ply = cells - 1; ply >= 0; ply--)
+        {
+            solve(ply);
+        }
+        reached = null;
+        elapsedNanos = System.nanoTime() - start;
+        return packed;
+    }
+
+    /**
+     * Gets the number of positions solved by the last generate
+     * @post [getPositions() = number of reachable positions, counting won and full boards]
+     * @return positions solved
+     */
+    public long getPositions()
+    {
+        return results[Tablebase.WIN] + results[Tablebase.LOSS] + results[Tablebase.DRAW];
+    }
+
+    /**
+     * Gets how many positions of the last generate have a result
+     * @pre result is Tablebase.WIN, LOSS or DRAW
+     * @post [getResults() = number of reachable positions with that result for the player to move]
+     * @param result result to count
+     * @return positions with the result
+     */
+    public long getResults(int result) { return results[result]; }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * Finds the positions one move after the open positions of a ply
+     * @post [every child of a reached open position of ply is reached, and solved if it is won or full]
+     */
+    private void expand(int ply)
+    {
+        boolean firstMoves = ply % 2 == 0;
+        int[] heights = new int[columns];
+        int[] starts = new int[columns];
+        long position = index.plyStart(ply);
+        long patterns = index.patternsOf(ply);
+        for(int key : index.heightKeys(ply))
+        {
+            long mask = decode(key, heights, starts);
+            long pattern = TablebaseIndex.firstPattern(ply);
+            for(long i = 0; i < patterns; i++, position++)
+            {
+                if(i > 0)
+                {
+                    pattern = TablebaseIndex.nextPattern(pattern);
+                }
+                if(!isReached(position) || get(position) != Tablebase.UNKNOWN)
+                {
+                    continue;
+                }
+                long first = firstTokens(pattern, heights, starts);
+                for(int column = 0; column < columns; column++)
+                {
+                    int height = heights[column];
+                    if(height == rows)
+                    {
+                        continue;
+                    }
+                    long child = index.index(key + index.heightPower[column],
+                            insert(pattern, starts[column] + height, firstMoves));
+                    if(isReached(child))
+                    {
+                        continue;
+                    }
+                    reached[(int) (child >>> 6)] |= 1L << child;
+                    long move = 1L << (column * (rows + 1) + height);
+                    long mover = firstMoves ? first | move : (mask | move) & ~first;
+                    if(wins(mover))
+                    {
+                        set(child, Tablebase.LOSS);
+                    }
+                    else if(ply + 1 == cells)
+                    {
+                        set(child, Tablebase.DRAW);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves the open positions of a ply from their solved children
+     * @pre [every child of a reached open position of ply is solved]
+     * @post [every reached position of ply is solved]
+     */
+    private void solve(int ply)
+    {
+        boolean firstMoves = ply % 2 == 0;
+        int[] heights = new int[columns];
+        int[] starts = new int[columns];
+        long position = index.plyStart(ply);
+        long patterns = index.patternsOf(ply);
+        for(int key : index.heightKeys(ply))
+        {
+            decode(key, heights, starts);
+            long pattern = TablebaseIndex.firstPattern(ply);
+            for(long i = 0; i < patterns; i++, position++)
+            {
+                if(i > 0)
+                {
+                    pattern = TablebaseIndex.nextPattern(pattern);
+                }
+                if(!isReached(position) || get(position) != Tablebase.UNKNOWN)
+                {
+                    continue;
+                }
+                int best = Tablebase.LOSS;
+                for(int column = 0; column < columns && best != Tablebase.WIN; column++)
+                {
+                    int height = heights[column];
+                    if(height == rows)
+                    {
+                        continue;
+                    }
+                    int result = get(index.index(key + index.heightPower[column],
+                            insert(pattern, starts[column] + height, firstMoves)));
+                    if(result == Tablebase.LOSS)
+                    {
+                        best = Tablebase.WIN;
+                    }
+                    else if(result == Tablebase.DRAW)
+                    {
+                        best = Tablebase.DRAW;
+                    }
+                }
+                set(position, best);
+            }
+        }
+    }
+
+    /**
+     * Decodes the column heights of a heights key
+     * @post [heights holds the height of every column] AND [starts holds the bit of each column's lowest token
+     *       in a pattern] AND [decode() = bitboard of the occupied cells]
+     */
+    private long decode(int key, int[] heights, int[] starts)
+    {
+        long mask = 0;
+        int tokens = 0;
+        for(int column = 0; column < columns; column++)
+        {
+            int height = index.heightOf(key, column);
+            heights[column] = height;
+            starts[column] = tokens;
+            tokens += height;
+            mask |= ((1L << height) - 1) << (column * (rows + 1));
+        }
+        return mask;
+    }
+
+    /**
+     * Places the first player's tokens of a pattern on the board
+     * @post [firstTokens() = bitboard of the first player's tokens]
+     */
+    private long firstTokens(long pattern, int[] heights, int[] starts)
+    {
+        long first = 0;
+        for(int column = 0; column < columns; column++)
+        {
+            first |= ((pattern >>> starts[column]) & ((1L << heights[column]) - 1)) << (column * (rows + 1));
+        }
+        return first;
+    }
+
+    /**
+     * Makes room for a token at bit at of a pattern, set if it is the first player's
+     */
+    private static long insert(long pattern, int at, boolean firstPlayer)
+    {
+        long below = pattern & ((1L << at) - 1);
+        return below | (firstPlayer ? 1L << at : 0) | (pattern >>> at) << (at + 1);
+    }
+
+    /**
+     * Checks for numToWin tokens in a row in any direction
+     */
+    private boolean wins(long tokens)
+    {
+        int[] directions = {1, rows + 1, rows, rows + 2};
+        for(int direction : directions)
+        {
+            long run = tokens;
+            for(int i = 1; i < numToWin && run != 0; i++)
+            {
+                //a shift of 64 or more would wrap around, and no line is that long
+                run = i * direction < 64 ? run & tokens >>> (i * direction) : 0;
+            }
+            if(run != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReached(long index)
+    {
+        return (reached[(int) (index >>> 6)] & 1L << index) != 0;
+    }
+
+    private int get(long index)
+    {
+        return (packed[(int) (index >>> 2)] >>> ((int) (index & 3) << 1)) & 3;
+    }
+
+    private void set(long index, int result)
+    {
+        packed[(int) (index >>> 2)] |= (byte) (result << ((int) (index & 3) << 1));
+        results[result]++;
+    }
+
+    /**
+     * Generates a tablebase and writes it to a file
+     *
+     * @param args see the class comment
+     * @throws IOException if the tablebase cannot be written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int rows = 4;
+        int columns = 5;
+        int numToWin = 4;
+        String out = null;
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            String value = args[i + 1];
+            switch(args[i])
+            {
+                case "--rows": rows = Integer.parseInt(value); break;
+                case "--columns": columns = Integer.parseInt(value); break;
+                case "--win": numToWin = Integer.parseInt(value); break;
+                case "--out": out = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if(!Tablebase.fits(rows, columns))
+        {
+            throw new IllegalArgumentException(rows + "x" + columns + " is too large for a tablebase");
+        }
+        long heap = heapBytes(rows, columns);
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if(heap > free)
+        {
+            throw new IllegalArgumentException(rows + "x" + columns + " needs " + (heap >> 20) + " MB of heap but "
+                    + (free >> 20) + " MB is free; run with a larger -Xmx");
+        }
+        Path file = out != null ? Paths.get(out)
+                : Paths.get(OpeningBook.DEFAULT_DIRECTORY, Tablebase.fileName(rows, columns, numToWin));
+        if(file.getParent() != null)
+        {
+            Files.createDirectories(file.getParent());
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(rows, columns, numToWin);
+        byte[] packed = generator.generate();
+        Tablebase.write(file, rows, columns, numToWin, packed);
+        long positions = generator.getPositions();
+        double seconds = generator.getElapsedNanos() / 1e9;
+        System.out.printf("%dx%d, %d to win: %d positions of %d indexes (%d wins, %d losses, %d draws for the "
+                        + "player to move) in %.2f s, %.0f positions/s, %d bytes written to %s%n",
+                rows, columns, numToWin, positions, Tablebase.size(rows, columns), generator.getResults(Tablebase.WIN),
+                generator.getResults(Tablebase.LOSS), generator.getResults(Tablebase.DRAW), seconds,
+                positions / seconds, Files.size(file), file);
+    }
+}
@@ -0,0 +1,200 @@
+package cpsc2150.extendedConnectX.ai;
+
+/**
+ * Numbers the two player positions of one board shape densely, so a tablebase has a slot for every position
+ * that could come up in a game and few others.
+ * <p>
+ * A position is its column heights and which of its n tokens are the first player's, who always has (n + 1) / 2
+ * of them. Heights are a key in base rows + 1, column 0 lowest. The tokens are a pattern of n bits, one per
+ * occupied cell, column 0 first and each column bottom first, set for the first player's; its rank among the
+ * patterns with the same number of bits set is the colex rank, the sum of C(b, i) over its i-th set bit b
+ * counting from 1, so counting patterns up in value counts ranks up by one. The index of a position is the
+ * offset of its heights plus that rank. Heights are given offsets ply by ply, so the positions of one ply are
+ * one range of indexes.
+ * <p>
+ * This still counts positions a game cannot reach, such as ones where a player had already won, but 4x6 has
+ * 160 million indexes to the 888 million of numbering every column's tokens as a binary code.
+ * @invariants [indexes of ply n are plyStart[n] to plyStart[n + 1] - 1] AND size = plyStart[rows * columns + 1]
+ */
+class TablebaseIndex {
+    final int rows;
+    final int columns;
+    final int cells;
+    //heightPower[c] = (rows + 1)^c, the change of the heights key when column c grows
+    final int[] heightPower;
+    final long size;
+
+    private final long[][] binomial;
+    private final long[] offsets;
+    private final int[][] heightKeys;
+    private final long[] plyStart;
+
+    /**
+     * Numbers the positions of a shape
+     * @pre fits(rows, columns)
+     * @post [every position of the shape has an index in 0..size-1, and no two share one]
+     */
+    TablebaseIndex(int rows, int columns)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = rows * columns;
+        heightPower = new int[columns + 1];
+        heightPower[0] = 1;
+        for(int column = 1; column <= columns; column++)
+        {
+            heightPower[column] = heightPower[column - 1] * (rows + 1);
+        }
+        binomial = new long[cells + 1][cells + 1];
+        for(int n = 0; n <= cells; n++)
+        {
+            binomial[n][0] = 1;
+            for(int k = 1; k <= n; k++)
+            {
+                binomial[n][k] = binomial[n - 1][k - 1] + binomial[n - 1][k];
+            }
+        }
+
+        //bucket every heights key by its number of tokens, keeping keys in order within a ply
+        int numKeys = heightPower[columns];
+        int[] plyOf = new int[numKeys];
+        int[] keysPerPly = new int[cells + 1];
+        for(int key = 0; key < numKeys; key++)
+        {
+            int tokens = 0;
+            for(int column = 0; column < columns; column++)
+            {
+                tokens += heightOf(key, column);
+            }
+            plyOf[key] = tokens;
+            keysPerPly[tokens]++;
+        }
+        heightKeys = new int[cells + 1][];
+        for(int ply = 0; ply <= cells; ply++)
+        {
+            heightKeys[ply] = new int[keysPerPly[ply]];
+            keysPerPly[ply] = 0;
+        }
+        for(int key = 0; key < numKeys; key++)
+        {
+            heightKeys[plyOf[key]][keysPerPly[plyOf[key]]++] = key;
+        }
+        offsets = new long[numKeys];
+        plyStart = new long[cells + 2];
+        long next = 0;
+        for(int ply = 0; ply <= cells; ply++)
+        {
+            plyStart[ply] = next;
+            for(int key : heightKeys[ply])
+            {
+                offsets[key] = next;
+                next += patternsOf(ply);
+            }
+        }
+        plyStart[cells + 1] = next;
+        size = next;
+    }
+
+    /**
+     * Checks if a shape can be numbered
+     * @post [fits() = true iff the shape fits a 64 bit board with a spare bit per column and its indexes fit an
+     *       int]
+     * @return true if the positions of the shape can be indexed
+     */
+    static boolean fits(int rows, int columns)
+    {
+        return rows > 0 && columns > 0 && (rows + 1) * columns <= 64 && count(rows, columns) <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts the indexes of a shape without numbering it, in floating point so any shape can be asked about
+     * @pre rows > 0 AND columns > 0
+     * @post [count() = sum over every choice of column heights of C(n, (n + 1) / 2), n the heights' sum]
+     */
+    static double count(int rows, int columns)
+    {
+        //heights[n] = ways to choose column heights holding n tokens
+        double[] heights = {1};
+        for(int column = 0; column < columns; column++)
+        {
+            double[] more = new double[heights.length + rows];
+            for(int tokens = 0; tokens < heights.length; tokens++)
+            {
+                for(int height = 0; height <= rows; height++)
+                {
+                    more[tokens + height] += heights[tokens];
+                }
+            }
+            heights = more;
+        }
+        double count = 0;
+        for(int n = 0; n < heights.length; n++)
+        {
+            int k = (n + 1) / 2;
+            double patterns = 1;
+            for(int i = 1; i <= k; i++)
+            {
+                patterns = patterns * (n - k + i) / i;
+            }
+            count += heights[n] * patterns;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the index of a position
+     * @pre key is a heights key of the shape AND pattern has heightsSum(key) bits, (heightsSum(key) + 1) / 2 set
+     * @post [index() = offset of key + colex rank of pattern]
+     */
+    long index(int key, long pattern)
+    {
+        long rank = 0;
+        int i = 0;
+        while(pattern != 0)
+        {
+            rank += binomial[Long.numberOfTrailingZeros(pattern)][++i];
+            pattern &= pattern - 1;
+        }
+        return offsets[key] + rank;
+    }
+
+    /**
+     * Gets the heights keys of a ply, in index order
+     * @pre 0 <= ply <= cells
+     * @post [heightKeys() = every key whose heights hold ply tokens, the first starting at plyStart(ply)]
+     */
+    int[] heightKeys(int ply) { return heightKeys[ply]; }
+
+    long plyStart(int ply) { return plyStart[ply]; }
+
+    /**
+     * Counts the token patterns of one set of heights
+     * @post [patternsOf() = C(ply, (ply + 1) / 2)]
+     */
+    long patternsOf(int ply) { return binomial[ply][(ply + 1) / 2]; }
+
+    int heightOf(int key, int column)
+    {
+        return key / heightPower[column] % (rows + 1);
+    }
+
+    /**
+     * Gets the lowest pattern of a ply, the first player's tokens in its first cells
+     * @post [firstPattern() = (2^((ply + 1) / 2)) - 1]
+     */
+    static long firstPattern(int ply)
+    {
+        return (1L << (ply + 1) / 2) - 1;
+    }
+
+    /**
+     * Gets the next pattern up with as many bits set
+     * @pre pattern != 0 AND [a higher pattern of the same length exists]
+     */
+    static long nextPattern(long pattern)
+    {
+        long lowest = pattern & -pattern;
+        long ripple = pattern + lowest;
+        return (((ripple ^ pattern) >>> 2) / lowest) | ripple;
+    }
+}
@@ -0,0 +1,25 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+import cpsc2150.extendedConnectX.models.InstrumentedBoard;
+import cpsc2150.extendedConnectX.models.ThreatTrackingBoard;
+
+/**
+ * Scores a position by its open windows like WindowEvaluator, but in constant time when the board is a
+ * ThreatTrackingBoard, which keeps the window scores up to date as moves are made. Any other board is
+ * scanned by a WindowEvaluator, so the two always give the same score. A ThreatTrackingBoard inside an
+ * InstrumentedBoard is found as well.
+ */
+public class ThreatEvaluator implements IBoardEvaluator {
+    private WindowEvaluator scanner = new WindowEvaluator();
+
+    public int evaluate(IGameBoard board, char[] players, int player)
+    {
+        IGameBoard tracked = InstrumentedBoard.unwrap(board);
+        if(tracked instanceof ThreatTrackingBoard)
+        {
+            return (int) ((ThreatTrackingBoard) tracked).evaluate(players[player]);
+        }
+        return scanner.evaluate(board, players, player);
+    }
+}
@@ -0,0 +1,173 @@
+package cpsc2150.extendedConnectX.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size transposition table of search results keyed by Zobrist key, stored in one long[].
+ * <p>
+ * Each entry takes two longs: the key XOR the data, and the data. Readers and writers never lock;
+ * an entry torn by two threads writing the same slot at once fails the key check on the next probe
+ * and reads as a miss. Replacement is depth-preferred: an entry is only overwritten by a result for the
+ * same position or one searched at least as deep.
+ * <p>
+ * Data packs the score (32 bits), the search depth (8 bits), the bound type (2 bits, never 0 so valid data is
+ * never 0) and the best column (8 bits, 255 meaning none).
+ * @invariants table.length = 2 * [number of entries] AND [number of entries is a power of two]
+ */
+public class TranspositionTable {
+    /**
+     * Size used when no size is given, in megabytes
+     */
+    public static final int DEFAULT_MEGABYTES = 16;
+
+    /**
+     * The score is the exact value of the position
+     */
+    public static final int EXACT = 1;
+    /**
+     * The score is a lower bound; the search failed high
+     */
+    public static final int LOWER_BOUND = 2;
+    /**
+     * The score is an upper bound; the search failed low
+     */
+    public static final int UPPER_BOUND = 3;
+
+    private static final int NO_MOVE = 0xFF;
+
+    private final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs an empty table using at most the given memory
+     * @pre megabytes >= 1
+     * @post [table holds the largest power of two entries that fits in megabytes] AND [all counters are 0]
+     * @param megabytes memory to use
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long entries = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / 16));
+        entries = Math.min(entries, 1L << 29);
+        table = new long[(int) entries * 2];
+        mask = (int) entries - 1;
+    }
+
+    /**
+     * Looks up a position
+     * @pre none
+     * @post [probe() = data stored for key, or 0 if there is none] AND [hits, misses or collisions is counted]
+     * @param key Zobrist key of the position
+     * @return packed data, read with scoreOf, depthOf, boundOf and columnOf, or 0 on a miss
+     */
+    public long probe(long key)
+    {
+        int slot = index(key);
+        long check = table[slot];
+        long data = table[slot + 1];
+        if(data != 0 && (check ^ data) == key)
+        {
+            hits.increment();
+            return data;
+        }
+        if(data != 0)
+        {
+            collisions.increment();
+        }
+        else
+        {
+            misses.increment();
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result, unless the slot holds a deeper result for another position
+     * @pre 0 <= depth < 256 AND bound is EXACT, LOWER_BOUND or UPPER_BOUND AND -1 <= column < 255
+     * @post [the slot of key holds this result if it was empty, held key, or held a result of depth <= depth]
+     * @param key Zobrist key of the position
+     * @param depth depth the position was searched to
+     * @param bound whether score is exact or a bound
+     * @param score score of the position
+     * @param column best column found, or -1 if none
+     */
+    public void store(long key, int depth, int bound, int score, int column)
+    {
+        int slot = index(key);
+        long oldData = table[slot + 1];
+        if(oldData != 0 && (table[slot] ^ oldData) != key && depthOf(oldData) > depth)
+        {
+            rejected.increment();
+            return;
+        }
+        long data = (long) score << 32 | (long) depth << 16 | (long) bound << 8 | (column < 0 ? NO_MOVE : column);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+        stores.increment();
+    }
+
+    /**
+     * Empties the table and resets the counters
+     * @post [every entry is empty] AND [all counters are 0]
+     */
+    public void clear()
+    {
+        Arrays.fill(table, 0);
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+        stores.reset();
+        rejected.reset();
+    }
+
+    public static int scoreOf(long data) { return (int) (data >> 32); }
+
+    public static int depthOf(long data) { return (int) (data >>> 16) & 0xFF; }
+
+    public static int boundOf(long data) { return (int) (data >>> 8) & 0x3; }
+
+    /**
+     * Reads the best column of an entry
+     * @pre data was returned by probe and is not 0
+     * @post [columnOf() = best column stored, or -1 if none]
+     * @param data packed data
+     * @return best column or -1
+     */
+    public static int columnOf(long data)
+    {
+        int column = (int) data & 0xFF;
+        return column == NO_MOVE ? -1 : column;
+    }
+
+    public int getCapacity() { return mask + 1; }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public long getCollisions() { return collisions.sum(); }
+
+    public long getStores() { return stores.sum(); }
+
+    public long getRejectedStores() { return rejected.sum(); }
+
+    @Override
+    public String toString()
+    {
+        long hit = getHits();
+        long probes = hit + getMisses() + getCollisions();
+        return "entries " + getCapacity() + " probes " + probes + " hits " + hit + " misses " + getMisses()
+                + " collisions " + getCollisions() + " stores " + getStores() + " rejected " + getRejectedStores()
+                + " hit rate " + (probes == 0 ? 0 : 100 * hit / probes) + "%";
+    }
+
+    private int index(long key)
+    {
+        return ((int) (key ^ (key >>> 32)) & mask) << 1;
+    }
+}
@@ -0,0 +1,119 @@
+package cpsc2150.extendedConnectX.ai;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+/**
+ * Scores a position by its open windows: every run of win cells along a row, column or diagonal.
+ * A window holding tokens of only one player can still be completed by that player and is worth
+ * n * n for n tokens, added for the scored player and subtracted for any single opponent.
+ * Windows holding tokens of two or more players are dead and worth nothing.
+ * <p>
+ * Each line of the board is scanned once with a sliding window, so one evaluation is
+ * O(rows * columns) whatever the number to win.
+ */
+public class WindowEvaluator implements IBoardEvaluator {
+
+    public int evaluate(IGameBoard board, char[] players, int player)
+    {
+        int rows = board.getNumRows();
+        int columns = board.getNumColumns();
+        int numToWin = board.getNumToWin();
+        int[] counts = new int[players.length];
+        int score = 0;
+        for(int row = 0; row < rows; row++)
+        {
+            score += scoreLine(board, players, player, counts, numToWin, row, 0, 0, 1, columns);
+        }
+        for(int column = 0; column < columns; column++)
+        {
+            //nothing above the column height, so windows starting above it are all empty
+            int height = board.getColumnHeight(column);
+            if(height > 0)
+            {
+                score += scoreLine(board, players, player, counts, numToWin, 0, column, 1, 0,
+                        Math.min(rows, height + numToWin - 1));
+            }
+        }
+        for(int start = -(rows - 1); start < columns; start++)
+        {
+            //diagonals going up and right start on the left or bottom edge
+            int row = Math.max(0, -start);
+            int column = Math.max(0, start);
+            score += scoreLine(board, players, player, counts, numToWin, row, column, 1, 1,
+                    Math.min(rows - row, columns - column));
+            //diagonals going up and left start on the right or bottom edge
+            column = columns - 1 - column;
+            score += scoreLine(board, players, player, counts, numToWin, row, column, 1, -1,
+                    Math.min(rows - row, column + 1));
+        }
+        return score;
+    }
+
+    /**
+     * Scores every window along one line
+     * @pre [row, column is on the board] AND [the length cells from row, column along (rowStep, columnStep)
+     *      are on the board] AND counts.length = players.length
+     * @post board = #board AND [scoreLine() = sum of window scores along the line]
+     */
+    private int scoreLine(IGameBoard board, char[] players, int player, int[] counts, int numToWin,
+                          int row, int column, int rowStep, int columnStep, int length)
+    {
+        if(length < numToWin)
+        {
+            return 0;
+        }
+        for(int i = 0; i < counts.length; i++)
+        {
+            counts[i] = 0;
+        }
+        int score = 0;
+        int tokens = 0;
+        int owners = 0;
+        for(int i = 0; i < length; i++)
+        {
+            int entering = indexOf(players, board.whatsAtPos(row + i * rowStep, column + i * columnStep));
+            if(entering >= 0)
+            {
+                tokens++;
+                if(counts[entering]++ == 0)
+                {
+                    owners++;
+                }
+            }
+            if(i >= numToWin)
+            {
+                int leaving = indexOf(players,
+                        board.whatsAtPos(row + (i - numToWin) * rowStep, column + (i - numToWin) * columnStep));
+                if(leaving >= 0)
+                {
+                    tokens--;
+                    if(--counts[leaving] == 0)
+                    {
+                        owners--;
+                    }
+                }
+            }
+            if(i >= numToWin - 1 && owners == 1)
+            {
+                score += counts[player] > 0 ? tokens * tokens : -tokens * tokens;
+            }
+        }
+        return score;
+    }
+
+    private static int indexOf(char[] players, char token)
+    {
+        if(token == ' ')
+        {
+            return -1;
+        }
+        for(int i = 0; i < players.length; i++)
+        {
+            if(players[i] == token)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,259 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.ThreatEvaluator;
+import cpsc2150.extendedConnectX.models.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the {@link IGameBoard} implementations.
+ * <p>
+ * Measures placeToken, checkForWin, checkTie, whatsAtPos, toString, appendTo and a window evaluation
+ * ({@link ThreatEvaluator}) for every board implementation, and for a {@link ThreatTrackingBoard} around a
+ * GameBoardBit, across square board sizes from 3x3 to 100x100 and fill levels from empty to full. Each
+ * measurement is warmed up first, then timed in batches, and reports the mean time per operation together
+ * with the bytes allocated per operation, the allocation rate and the number of garbage collections seen while
+ * measuring (the same numbers {@code -prof gc} gives under JMH).
+ * <p>
+ * A full run on one core (Java 17) decides the cutoff of CutoffBoardStrategy, at fill 0.50:
+ * <pre>
+ *            placeToken ns/op (B/op)           checkForWin ns/op        estimateBytes
+ *  size     GameBoard  GameBoardMem  GameBoardBit    Board   Mem   Bit    Board    Mem   Bit
+ *  10x10   18.7 (8.5)   31.7 (32.8)   22.6 (8.5)      32.0  52.7  32.0      560    800   216
+ *  20x20   20.7 (10.1)  29.9 (35.7)   16.7 (10.1)     33.3  68.7  29.0     1360   2760   336
+ *  50x50   18.3 (13.3)  40.2 (46.2)   22.8 (13.3)     34.5  49.7  31.5     6480  20800   984
+ * 100x100  20.2 (13.3)  64.8 (46.1)   25.7 (13.3)     45.0 102.6  41.7    22480  82440  3072
+ * </pre>
+ * GameBoardMem is slower than GameBoard at every size and allocates three times as much per move, and it is
+ * only smaller than GameBoard on boards less than about a quarter full, so a cell cutoff trades move time for
+ * heap on sparse boards only. GameBoardBit is as fast as GameBoard and the smallest at every size and fill.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.BoardBenchmark [--quick]}, or
+ * {@code mvn verify -Pbenchmark}
+ */
+public class BoardBenchmark {
+
+    /**
+     * A benchmarked operation; returns a value so the JIT cannot drop the call
+     */
+    interface Op {
+        long run(IGameBoard board, int iteration);
+    }
+
+    /**
+     * Creates an empty board of one implementation
+     */
+    interface BoardMaker {
+        IGameBoard make(int rows, int columns, int numToWin);
+    }
+
+    private static final String[] IMPL_NAMES = {"GameBoard", "GameBoardMem", "GameBoardBit", "Threat(Bit)"};
+    private static final BoardMaker[] IMPLS = {GameBoard::new, GameBoardMem::new, GameBoardBit::new,
+            (rows, columns, numToWin) -> new ThreatTrackingBoard(new GameBoardBit(rows, columns, numToWin))};
+    private static final ThreatEvaluator EVALUATOR = new ThreatEvaluator();
+    private static final int[] SIZES = {3, 5, 7, 10, 15, 20, 50, 100};
+    private static final double[] FILLS = {0.0, 0.25, 0.5, 0.75, 1.0};
+    private static final char[] TOKENS = {'X', 'O'};
+
+    private static long warmupNanos = 200_000_000L;
+    private static long measureNanos = 500_000_000L;
+    private static volatile long sink;
+
+    /**
+     * Runs every benchmark and prints one line per measurement
+     *
+     * @param args {@code --quick} shortens warmup and measurement time
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--quick")) {
+            warmupNanos = 20_000_000L;
+            measureNanos = 50_000_000L;
+        }
+        System.out.printf("%-13s %7s %5s %-12s %14s %12s %10s %5s%n",
+                "impl", "size", "fill", "op", "ns/op", "B/op", "MB/s", "gcs");
+        for (int size : SIZES) {
+            int numToWin = Math.max(3, Math.min(size - 1, 5));
+            int[] moves = fillOrder(size, size, new Random(size));
+            for (double fill : FILLS) {
+                int tokens = (int) Math.round(fill * size * size);
+                for (int impl = 0; impl < IMPLS.length; impl++) {
+                    BoardMaker maker = IMPLS[impl];
+                    String prefix = String.format("%-13s %7s %5.2f", IMPL_NAMES[impl], size + "x" + size, fill);
+                    if (tokens > 0) {
+                        report(prefix, "placeToken", measurePlace(maker, size, numToWin, moves, tokens));
+                    }
+                    IGameBoard board = filled(maker, size, numToWin, moves, tokens);
+                    int lastColumn = tokens > 0 ? moves[tokens - 1] : 0;
+                    report(prefix, "checkForWin", measure(board, (b, i) -> b.checkForWin(lastColumn) ? 1 : 0));
+                    report(prefix, "checkTie", measure(board, (b, i) -> b.checkTie() ? 1 : 0));
+                    report(prefix, "whatsAtPos", measure(board,
+                            (b, i) -> b.whatsAtPos(i % size, (i / size) % size)));
+                    report(prefix, "toString", measure(board, (b, i) -> b.toString().length()));
+                    StringBuilder text = new StringBuilder();
+                    report(prefix, "appendTo", measure(board, (b, i) -> {
+                        text.setLength(0);
+                        appendTo(b, text);
+                        return text.length();
+                    }));
+                    report(prefix, "evaluate", measure(board, (b, i) -> EVALUATOR.evaluate(b, TOKENS, i & 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Result of one measurement
+     */
+    static class Result {
+        final double nanosPerOp;
+        final double bytesPerOp;
+        final long gcs;
+
+        Result(double nanosPerOp, double bytesPerOp, long gcs) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.gcs = gcs;
+        }
+    }
+
+    private static void report(String prefix, String op, Result result) {
+        //what -prof gc reports as gc.alloc.rate; an op too fast to time allocates nothing measurable
+        double megabytesPerSecond = result.nanosPerOp > 0 ? result.bytesPerOp / result.nanosPerOp * 1e9 / (1 << 20) : 0;
+        System.out.printf("%s %-12s %14.1f %12.1f %10.1f %5d%n", prefix, op, result.nanosPerOp, result.bytesPerOp,
+                megabytesPerSecond, result.gcs);
+    }
+
+    /**
+     * Times a read-only operation against one board
+     */
+    private static Result measure(IGameBoard board, Op op) {
+        long acc = 0;
+        int iteration = 0;
+        int batch = 1;
+        long end = System.nanoTime() + warmupNanos;
+        long now;
+        do {
+            //grow the batch until one batch takes long enough that reading the clock is noise
+            long batchStart = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                acc += op.run(board, iteration++);
+            }
+            now = System.nanoTime();
+            if (now - batchStart < 50_000 && batch < (1 << 20)) {
+                batch *= 2;
+            }
+        } while (now < end);
+        long ops = 0;
+        long gcStart = gcCount();
+        long bytesStart = allocatedBytes();
+        long start = System.nanoTime();
+        now = start;
+        end = start + measureNanos;
+        while (now < end) {
+            for (int i = 0; i < batch; i++) {
+                acc += op.run(board, iteration++);
+            }
+            ops += batch;
+            now = System.nanoTime();
+        }
+        long bytes = allocatedBytes() - bytesStart;
+        sink += acc;
+        return new Result((double) (now - start) / ops, (double) bytes / ops, gcCount() - gcStart);
+    }
+
+    /**
+     * Times placing tokens into fresh boards; the boards are created before each timed batch
+     */
+    private static Result measurePlace(BoardMaker maker, int size, int numToWin, int[] moves, int tokens) {
+        int batch = Math.max(1, 4096 / tokens);
+        IGameBoard[] boards = new IGameBoard[batch];
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long ops = 0;
+        long gcStart = 0;
+        boolean warm = false;
+        long phaseStart = System.nanoTime();
+        while (true) {
+            for (int b = 0; b < batch; b++) {
+                boards[b] = maker.make(size, size, numToWin);
+            }
+            long bytesStart = allocatedBytes();
+            long start = System.nanoTime();
+            for (int b = 0; b < batch; b++) {
+                IGameBoard board = boards[b];
+                for (int move = 0; move < tokens; move++) {
+                    board.placeToken(TOKENS[move & 1], moves[move]);
+                }
+            }
+            long now = System.nanoTime();
+            if (warm) {
+                totalNanos += now - start;
+                totalBytes += allocatedBytes() - bytesStart;
+                ops += (long) batch * tokens;
+                if (now - phaseStart >= measureNanos) {
+                    break;
+                }
+            } else if (now - phaseStart >= warmupNanos) {
+                warm = true;
+                gcStart = gcCount();
+                phaseStart = now;
+            }
+        }
+        sink += boards[0].getColumnHeight(0);
+        return new Result((double) totalNanos / ops, (double) totalBytes / ops, gcCount() - gcStart);
+    }
+
+    private static IGameBoard filled(BoardMaker maker, int size, int numToWin, int[] moves, int tokens) {
+        IGameBoard board = maker.make(size, size, numToWin);
+        for (int move = 0; move < tokens; move++) {
+            board.placeToken(TOKENS[move & 1], moves[move]);
+        }
+        return board;
+    }
+
+    /**
+     * A random order of columns in which every column appears exactly rows times
+     */
+    static int[] fillOrder(int rows, int columns, Random random) {
+        int[] moves = new int[rows * columns];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = i % columns;
+        }
+        for (int i = moves.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = moves[i];
+            moves[i] = moves[j];
+            moves[j] = tmp;
+        }
+        return moves;
+    }
+
+    private static void appendTo(IGameBoard board, StringBuilder text) {
+        try {
+            board.appendTo(text);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
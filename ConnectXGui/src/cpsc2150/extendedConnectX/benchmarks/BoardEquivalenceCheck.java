@@ -0,0 +1,228 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.ThreatEvaluator;
+import cpsc2150.extendedConnectX.ai.WindowEvaluator;
+import cpsc2150.extendedConnectX.models.*;
+
+import java.util.Random;
+
+/**
+ * Checks that every {@link IGameBoard} implementation behaves exactly like {@link GameBoard}.
+ * <p>
+ * Random games are played on a GameBoard and, move for move, on a GameBoardMem, a GameBoardBit, a
+ * {@link ThreatTrackingBoard} around each of those two and an {@link InstrumentedBoard}, across random shapes
+ * from 3x3 to 100x100, win lengths and player counts. Moves are sometimes taken back with undoLastMove or
+ * removeToken, boards are sometimes replaced by their copy, and finished boards are cleared and reused. After
+ * every step each board must agree with the GameBoard on checkIfFree and getColumnHeight of every column,
+ * checkForWin and the win in each direction through a placed token, checkTie, the number of moves, the last move
+ * and both Zobrist keys. The whole history, whatsAtPos and isPlayerAtPos of every cell and toString are compared
+ * every few steps (more steps apart on larger boards) and at the end of
+ * each game, when ThreatEvaluator on the tracked boards must also score every player as WindowEvaluator scores
+ * the GameBoard.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.BoardEquivalenceCheck [--games 3000] [--seed 1]};
+ * it throws IllegalStateException at the first difference, naming the implementation, the call and the game.
+ */
+public class BoardEquivalenceCheck {
+
+    /**
+     * Creates an empty board of one implementation
+     */
+    interface BoardMaker {
+        IGameBoard make(int rows, int columns, int numToWin);
+    }
+
+    private static final String[] IMPL_NAMES = {"GameBoardMem", "GameBoardBit", "Threat(Mem)", "Threat(Bit)",
+            "Instrumented(GameBoard)"};
+    private static final BoardMaker[] IMPLS = {GameBoardMem::new, GameBoardBit::new,
+            (rows, columns, numToWin) -> new ThreatTrackingBoard(new GameBoardMem(rows, columns, numToWin)),
+            (rows, columns, numToWin) -> new ThreatTrackingBoard(new GameBoardBit(rows, columns, numToWin)),
+            (rows, columns, numToWin) -> new InstrumentedBoard(new GameBoard(rows, columns, numToWin))};
+    private static final int FULL_COMPARE_STEPS = 37;
+
+    private static final WindowEvaluator SCANNER = new WindowEvaluator();
+    private static final ThreatEvaluator TRACKED = new ThreatEvaluator();
+
+    /**
+     * Plays the games and prints a summary
+     *
+     * @param args see the class comment
+     */
+    public static void main(String[] args) {
+        int games = 3000;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--games": games = Integer.parseInt(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Random random = new Random(seed);
+        long steps = 0;
+        for (int game = 0; game < games; game++) {
+            // most games are small enough to fill up; a few are large
+            int maxSize = game % 50 == 0 ? 100 : 10;
+            int rows = 3 + random.nextInt(maxSize - 2);
+            int columns = 3 + random.nextInt(maxSize - 2);
+            int numToWin = 3 + random.nextInt(Math.min(Math.min(rows, columns), 25) - 2);
+            int players = 2 + random.nextInt(GameEngine.PLAYER_TOKENS.length - 1);
+            steps += play(random, game, rows, columns, numToWin, players);
+        }
+        System.out.printf("%d games, %d steps: every implementation matched GameBoard%n", games, steps);
+    }
+
+    /**
+     * Plays one game, and the same moves again after clearing the boards
+     *
+     * @return number of steps compared
+     */
+    private static long play(Random random, int game, int rows, int columns, int numToWin, int numPlayers) {
+        IGameBoard expected = new GameBoard(rows, columns, numToWin);
+        IGameBoard[] boards = new IGameBoard[IMPLS.length];
+        for (int impl = 0; impl < IMPLS.length; impl++) {
+            boards[impl] = IMPLS[impl].make(rows, columns, numToWin);
+        }
+        char[] players = new char[numPlayers];
+        System.arraycopy(GameEngine.PLAYER_TOKENS, 0, players, 0, numPlayers);
+        String where = "game " + game + " (" + rows + "x" + columns + ", " + numToWin + " to win, " + numPlayers
+                + " players)";
+
+        // comparing every cell costs about as much as a move per cell, so it is spread out on large boards
+        int fullCompareSteps = Math.max(FULL_COMPARE_STEPS, rows * columns / 8);
+        long steps = 0;
+        for (int round = 0; round < 2; round++) {
+            boolean over = false;
+            while (!over) {
+                steps++;
+                int choice = random.nextInt(100);
+                int column;
+                boolean placed = false;
+                if (expected.getNumMoves() > 0 && choice < 8) {
+                    column = expected.undoLastMove();
+                    for (IGameBoard board : boards) {
+                        board.undoLastMove();
+                    }
+                } else if (expected.getNumMoves() > 0 && choice < 12) {
+                    // any column with a token, not only the last one played
+                    column = random.nextInt(columns);
+                    while (expected.getColumnHeight(column) == 0) {
+                        column = (column + 1) % columns;
+                    }
+                    expected.removeToken(column);
+                    for (IGameBoard board : boards) {
+                        board.removeToken(column);
+                    }
+                } else {
+                    column = random.nextInt(columns);
+                    while (!expected.checkIfFree(column)) {
+                        column = (column + 1) % columns;
+                    }
+                    char token = players[expected.getNumMoves() % numPlayers];
+                    int row = expected.placeToken(token, column);
+                    for (int impl = 0; impl < boards.length; impl++) {
+                        check(boards[impl].placeToken(token, column) == row, impl, where, "placeToken row");
+                    }
+                    placed = true;
+                }
+                if (choice == 99) {
+                    for (int impl = 0; impl < boards.length; impl++) {
+                        boards[impl] = boards[impl].copy();
+                    }
+                }
+
+                boolean won = placed && expected.checkForWin(column);
+                int row = expected.getColumnHeight(column) - 1;
+                char token = placed ? expected.whatsAtPos(row, column) : ' ';
+                boolean tie = expected.checkTie();
+                int[] scores = steps % fullCompareSteps == 0 ? windowScores(expected, players) : null;
+                for (int impl = 0; impl < boards.length; impl++) {
+                    IGameBoard board = boards[impl];
+                    if (placed) {
+                        check(board.checkForWin(column) == won, impl, where, "checkForWin(" + column + ")");
+                        String at = "(" + row + ", " + column + ", " + token + ")";
+                        check(board.checkHorizWin(row, column, token) == expected.checkHorizWin(row, column, token),
+                                impl, where, "checkHorizWin" + at);
+                        check(board.checkVertWin(row, column, token) == expected.checkVertWin(row, column, token),
+                                impl, where, "checkVertWin" + at);
+                        check(board.checkDiagWin(row, column, token) == expected.checkDiagWin(row, column, token),
+                                impl, where, "checkDiagWin" + at);
+                    }
+                    check(board.checkTie() == tie, impl, where, "checkTie");
+                    compareState(expected, board, impl, where);
+                    if (scores != null) {
+                        compareCells(expected, board, players, scores, impl, where);
+                    }
+                }
+                over = won || tie;
+            }
+            int[] scores = windowScores(expected, players);
+            for (int impl = 0; impl < boards.length; impl++) {
+                compareCells(expected, boards[impl], players, scores, impl, where);
+            }
+            expected.clear();
+            for (IGameBoard board : boards) {
+                board.clear();
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Compares the state kept up to date on every move
+     */
+    private static void compareState(IGameBoard expected, IGameBoard board, int impl, String where) {
+        check(board.getNumMoves() == expected.getNumMoves(), impl, where, "getNumMoves");
+        int last = expected.getNumMoves() - 1;
+        check(last < 0 || board.getMove(last) == expected.getMove(last), impl, where, "getMove(" + last + ")");
+        for (int c = 0; c < expected.getNumColumns(); c++) {
+            check(board.getColumnHeight(c) == expected.getColumnHeight(c), impl, where, "getColumnHeight(" + c + ")");
+            check(board.checkIfFree(c) == expected.checkIfFree(c), impl, where, "checkIfFree(" + c + ")");
+        }
+        check(board.getZobristKey() == expected.getZobristKey(), impl, where, "getZobristKey");
+        check(board.getMirroredKey() == expected.getMirroredKey(), impl, where, "getMirroredKey");
+    }
+
+    /**
+     * Compares the whole move history, every cell, the text and, on a tracked board, the window scores
+     */
+    private static void compareCells(IGameBoard expected, IGameBoard board, char[] players, int[] scores, int impl,
+                                     String where) {
+        for (int i = 0; i < expected.getNumMoves(); i++) {
+            check(board.getMove(i) == expected.getMove(i), impl, where, "getMove(" + i + ")");
+        }
+        for (int r = 0; r < expected.getNumRows(); r++) {
+            for (int c = 0; c < expected.getNumColumns(); c++) {
+                check(board.whatsAtPos(r, c) == expected.whatsAtPos(r, c), impl, where,
+                        "whatsAtPos(" + r + ", " + c + ")");
+                // the empty token, and a player who may or may not be at the cell
+                char player = players[(r + c) % players.length];
+                check(board.isPlayerAtPos(r, c, ' ') == expected.isPlayerAtPos(r, c, ' '), impl, where,
+                        "isPlayerAtPos(" + r + ", " + c + ", ' ')");
+                check(board.isPlayerAtPos(r, c, player) == expected.isPlayerAtPos(r, c, player), impl, where,
+                        "isPlayerAtPos(" + r + ", " + c + ", " + player + ")");
+            }
+        }
+        check(board.toString().equals(expected.toString()), impl, where, "toString");
+        if (InstrumentedBoard.unwrap(board) instanceof ThreatTrackingBoard) {
+            for (int player = 0; player < players.length; player++) {
+                check(TRACKED.evaluate(board, players, player) == scores[player], impl, where,
+                        "window score of " + players[player]);
+            }
+        }
+    }
+
+    private static int[] windowScores(IGameBoard board, char[] players) {
+        int[] scores = new int[players.length];
+        for (int player = 0; player < players.length; player++) {
+            scores[player] = SCANNER.evaluate(board, players, player);
+        }
+        return scores;
+    }
+
+    private static void check(boolean same, int impl, String where, String what) {
+        if (!same) {
+            throw new IllegalStateException(IMPL_NAMES[impl] + " differs from GameBoard in " + what + ", " + where);
+        }
+    }
+}
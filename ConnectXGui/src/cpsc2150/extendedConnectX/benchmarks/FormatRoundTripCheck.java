@@ -0,0 +1,415 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.OpeningBook;
+import cpsc2150.extendedConnectX.ai.SearchResult;
+import cpsc2150.extendedConnectX.ai.Tablebase;
+import cpsc2150.extendedConnectX.ai.TablebaseGenerator;
+import cpsc2150.extendedConnectX.ai.TranspositionTable;
+import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Checks that everything written in one of the repo's formats reads back exactly as it was written.
+ * <ul>
+ * <li>game records: random games on random shapes up to 100x100 with 2 to 10 players are written with
+ * {@link GameRecordWriter}; {@link GameRecordReader} must read back equal records and replay boards that hold the
+ * same cells. A stream cut between two games must read as the games before the cut, and one cut anywhere else
+ * must throw an IOException after reading the same whole games.</li>
+ * <li>opening books: random positions are written with {@link OpeningBook#write}; the opened book must answer
+ * each of them and their mirror images with the stored column and score, answer nothing for positions it does
+ * not hold or another shape, and refuse a truncated file.</li>
+ * <li>board profiles: random latencies saved by {@link CostModelBoardStrategy#save} must load with the same
+ * predictions, expected fill and board choices.</li>
+ * <li>transposition table: every score, depth, bound and column stored must be probed back unchanged, unless
+ * the store was rejected for a deeper entry.</li>
+ * <li>tablebase: a 4x4 tablebase built by {@link TablebaseGenerator} is written and opened; random positions
+ * and their mirror images must probe as a full search solves them, its best moves must keep that result, and a
+ * truncated file must be refused.</li>
+ * </ul>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.FormatRoundTripCheck [--seed 1]}; it prints one line
+ * per format and throws IllegalStateException at the first value that does not survive the round trip.
+ */
+public class FormatRoundTripCheck {
+
+    private static final int GAMES = 2000;
+    private static final int BOOK_POSITIONS = 20_000;
+    private static final int PROFILES = 200;
+    private static final int TABLE_STORES = 1_000_000;
+    private static final int TABLEBASE_POSITIONS = 300;
+
+    /**
+     * Runs every check
+     *
+     * @param args see the class comment
+     * @throws IOException if a temporary file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 1 && args[0].equals("--seed") ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        Path directory = Files.createTempDirectory("connectx-format-check");
+        try {
+            gameRecords(random);
+            openingBook(random, directory.resolve("book.cxob"));
+            boardProfile(random, directory.resolve("board.properties"));
+            transpositionTable(random);
+            tablebase(random, directory.resolve("tablebase.cxtb"));
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+        System.out.println("every format round trip matched");
+    }
+
+    /**
+     * Writes random games, reads them back both ways and reads every truncation of the stream
+     */
+    private static void gameRecords(Random random) throws IOException {
+        List<GameRecord> records = new ArrayList<>();
+        List<IGameBoard> boards = new ArrayList<>();
+        // ends.get(g) is where the g-th game ends, and ends.get(0) where the stream header ends
+        List<Integer> ends = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameRecordWriter writer = new GameRecordWriter(bytes)) {
+            writer.flush();
+            ends.add(bytes.size());
+            for (int game = 0; game < GAMES; game++) {
+                int maxSize = game % 50 == 0 ? 100 : 12;
+                int rows = 3 + random.nextInt(maxSize - 2);
+                int columns = 3 + random.nextInt(maxSize - 2);
+                int numToWin = 3 + random.nextInt(Math.min(Math.min(rows, columns), 25) - 2);
+                int players = 2 + random.nextInt(GameEngine.PLAYER_TOKENS.length - 1);
+                IGameBoard board = randomGame(random, new GameBoardBit(rows, columns, numToWin), players,
+                        random.nextInt(rows * columns + 1));
+                GameRecord record = GameRecord.of(board, players);
+                // half the games are written from the record and half straight from the board
+                if (game % 2 == 0) {
+                    writer.write(record);
+                } else {
+                    writer.write(board, players);
+                }
+                writer.flush();
+                ends.add(bytes.size());
+                records.add(record);
+                boards.add(board);
+            }
+        }
+        byte[] stream = bytes.toByteArray();
+
+        try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(stream))) {
+            for (int game = 0; game < GAMES; game++) {
+                check(records.get(game).equals(reader.read()), "game record " + game + " read back differently");
+            }
+            check(reader.read() == null, "game record stream did not end after the last game");
+        }
+        try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(stream))) {
+            for (int game = 0; game < GAMES; game++) {
+                IGameBoard replayed = reader.replayNext(GameBoardMem::new);
+                check(replayed.toString().equals(boards.get(game).toString())
+                                && replayed.getZobristKey() == boards.get(game).getZobristKey(),
+                        "game record " + game + " replayed onto a different board");
+            }
+        }
+
+        int cuts = 0;
+        for (int keep = 0; keep < stream.length; keep += 1 + random.nextInt(Math.max(1, stream.length / 500))) {
+            cuts++;
+            int wholeGames = 0;
+            while (wholeGames < GAMES && ends.get(wholeGames + 1) <= keep) {
+                wholeGames++;
+            }
+            int read = 0;
+            boolean failed = false;
+            try (GameRecordReader reader = new GameRecordReader(
+                    new ByteArrayInputStream(Arrays.copyOf(stream, keep)))) {
+                for (GameRecord record = reader.read(); record != null; record = reader.read()) {
+                    check(record.equals(records.get(read)), "truncated stream read a game that was not written");
+                    read++;
+                }
+            } catch (IOException e) {
+                failed = true;
+            }
+            // a cut between two games is a shorter stream; any other cut must be reported
+            boolean betweenGames = ends.contains(keep);
+            check(read == wholeGames && failed != betweenGames, "stream cut at " + keep + " of " + stream.length
+                    + " bytes read " + read + " games, " + (failed ? "with" : "without") + " an error");
+        }
+        System.out.printf("game records: %d games in %d bytes read and replayed, %d cuts read to their last whole "
+                + "game%n", GAMES,
+                stream.length, cuts);
+    }
+
+    /**
+     * Writes a book of random positions and looks each of them up
+     */
+    private static void openingBook(Random random, Path file) throws IOException {
+        int rows = 6;
+        int columns = 7;
+        int numToWin = 4;
+        int players = 2;
+        SortedMap<Long, SearchResult> entries = new TreeMap<>();
+        List<IGameBoard> positions = new ArrayList<>();
+        while (positions.size() < BOOK_POSITIONS) {
+            IGameBoard board = randomGame(random, new GameBoardBit(rows, columns, numToWin), players,
+                    random.nextInt(rows * columns / 2));
+            int column = freeColumn(random, board);
+            if (column < 0 || entries.containsKey(board.getCanonicalKey())) {
+                continue;
+            }
+            entries.put(board.getCanonicalKey(),
+                    new SearchResult(board.canonicalColumn(column), random.nextInt(), 0, 0, 0));
+            positions.add(board);
+        }
+        OpeningBook.write(file, rows, columns, numToWin, players, entries);
+        OpeningBook book = OpeningBook.open(file);
+        check(book.size() == BOOK_POSITIONS && book.getNumRows() == rows && book.getNumColumns() == columns
+                && book.getNumToWin() == numToWin && book.getNumPlayers() == players, "book header read back as "
+                + book);
+
+        for (IGameBoard board : positions) {
+            SearchResult stored = entries.get(board.getCanonicalKey());
+            SearchResult found = book.lookup(board, players);
+            check(found != null && found.getBestColumn() == board.canonicalColumn(stored.getBestColumn())
+                    && found.getScore() == stored.getScore(), "book lookup of " + board.getZobristKey());
+            // a position that is its own mirror image is answered with the same column, not the mirrored one
+            IGameBoard mirror = mirror(board, players);
+            int column = board.canonicalColumn(stored.getBestColumn());
+            int mirrored = mirror.getZobristKey() == board.getZobristKey() ? column : columns - 1 - column;
+            found = book.lookup(mirror, players);
+            check(found != null && found.getBestColumn() == mirrored && found.getScore() == stored.getScore(),
+                    "book lookup of a mirror image");
+            check(book.lookup(board, players + 1) == null, "book answered for another number of players");
+        }
+        int absent = 0;
+        for (int i = 0; i < BOOK_POSITIONS; i++) {
+            IGameBoard board = randomGame(random, new GameBoardBit(rows, columns, numToWin), players,
+                    random.nextInt(rows * columns));
+            if (!entries.containsKey(board.getCanonicalKey())) {
+                check(book.lookup(board, players) == null, "book answered a position it does not hold");
+                absent++;
+            }
+        }
+        check(book.lookup(new GameBoardBit(rows, columns + 1, numToWin), players) == null,
+                "book answered for another shape");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        boolean refused = false;
+        try {
+            OpeningBook.open(file);
+        } catch (StreamCorruptedException e) {
+            refused = true;
+        }
+        check(refused, "a truncated book was opened");
+        System.out.printf("opening book: %d positions and their mirror images found, %d absent positions not "
+                + "found, truncated file refused%n", BOOK_POSITIONS, absent);
+    }
+
+    /**
+     * Saves random board profiles and loads them back
+     */
+    private static void boardProfile(Random random, Path file) throws IOException {
+        BoardType[] types = BoardType.values();
+        int[] sizes = CostModelBoardStrategy.CALIBRATION_SIZES;
+        for (int profile = 0; profile < PROFILES; profile++) {
+            long[][] p99Nanos = new long[types.length][sizes.length];
+            for (long[] latencies : p99Nanos) {
+                for (int size = 0; size < sizes.length; size++) {
+                    // up to 2^40 ns, so predictLatency's interpolation through a double stays exact
+                    latencies[size] = random.nextInt(4) == 0 ? random.nextLong() & (1L << 40) - 1
+                            : random.nextInt(1_000_000);
+                }
+            }
+            long target = 1 + random.nextInt(1_000_000);
+            CostModelBoardStrategy saved = new CostModelBoardStrategy(p99Nanos, target, random.nextDouble());
+            saved.save(file);
+            CostModelBoardStrategy loaded = CostModelBoardStrategy.load(file, target);
+            check(loaded.getExpectedFill() == saved.getExpectedFill(), "profile expected fill");
+            for (BoardType type : types) {
+                for (int size : sizes) {
+                    check(loaded.predictLatency(type, size, size) == p99Nanos[type.ordinal()][
+                            Arrays.binarySearch(sizes, size)], "profile latency of " + type + " at " + size);
+                }
+            }
+            for (int shape = 0; shape < 20; shape++) {
+                int rows = 3 + random.nextInt(98);
+                int columns = 3 + random.nextInt(98);
+                int players = 2 + random.nextInt(GameEngine.PLAYER_TOKENS.length - 1);
+                check(loaded.selectBoard(rows, columns, players, 3) == saved.selectBoard(rows, columns, players, 3),
+                        "profile board choice for " + rows + "x" + columns);
+            }
+        }
+        Files.write(file, Arrays.asList("expectedFill=0.5"));
+        boolean refused = false;
+        try {
+            CostModelBoardStrategy.load(file, 1);
+        } catch (IOException e) {
+            refused = true;
+        }
+        check(refused, "a profile without latencies was loaded");
+        System.out.printf("board profile: %d profiles saved and loaded, incomplete profile refused%n", PROFILES);
+    }
+
+    /**
+     * Stores random entries and probes each straight back
+     */
+    private static void transpositionTable(Random random) {
+        TranspositionTable table = new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES);
+        int[] bounds = {TranspositionTable.EXACT, TranspositionTable.LOWER_BOUND, TranspositionTable.UPPER_BOUND};
+        for (int i = 0; i < TABLE_STORES; i++) {
+            long key = random.nextLong();
+            int depth = random.nextInt(256);
+            int bound = bounds[random.nextInt(bounds.length)];
+            int score = i % 8 == 0 ? (i % 16 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE) : random.nextInt();
+            int column = random.nextInt(256) - 1;
+            long rejected = table.getRejectedStores();
+            table.store(key, depth, bound, score, column);
+            long data = table.probe(key);
+            if (table.getRejectedStores() > rejected) {
+                continue;
+            }
+            check(data != 0 && TranspositionTable.scoreOf(data) == score && TranspositionTable.depthOf(data) == depth
+                    && TranspositionTable.boundOf(data) == bound && TranspositionTable.columnOf(data) == column,
+                    "transposition entry (" + depth + ", " + bound + ", " + score + ", " + column + ")");
+        }
+        System.out.printf("transposition table: %d entries stored, %d rejected for deeper ones, the rest probed "
+                + "back unchanged%n", TABLE_STORES, table.getRejectedStores());
+    }
+
+    /**
+     * Builds a small tablebase and checks random positions of it against a full search
+     */
+    private static void tablebase(Random random, Path file) throws IOException {
+        int rows = 4;
+        int columns = 4;
+        int numToWin = 3;
+        char[] players = {GameEngine.PLAYER_TOKENS[0], GameEngine.PLAYER_TOKENS[1]};
+        TablebaseGenerator generator = new TablebaseGenerator(rows, columns, numToWin);
+        Tablebase.write(file, rows, columns, numToWin, generator.generate());
+        Tablebase tablebase = Tablebase.open(file);
+        check(tablebase.getNumRows() == rows && tablebase.getNumColumns() == columns
+                && tablebase.getNumToWin() == numToWin, "tablebase header read back as " + tablebase);
+
+        int checked = 0;
+        while (checked < TABLEBASE_POSITIONS) {
+            // a few moves in, so the full search stays small
+            IGameBoard board = randomGame(random, new GameBoardBit(rows, columns, numToWin), 2,
+                    6 + random.nextInt(rows * columns - 6));
+            int last = board.getMove(board.getNumMoves() - 1);
+            if (board.checkForWin(last) || board.checkTie()) {
+                continue;
+            }
+            int result = solve(board, players);
+            check(tablebase.probe(board, players[0]) == result, "tablebase result of " + board.getZobristKey());
+            check(tablebase.probe(mirror(board, 2), players[0]) == result, "tablebase result of a mirror image");
+            check(tablebase.probe(board, players[1]) == Tablebase.UNKNOWN || board.getNumMoves() % 2 == 0,
+                    "tablebase answered for the wrong first player");
+            int column = tablebase.bestMove(board, players).getBestColumn();
+            board.placeToken(players[board.getNumMoves() % 2], column);
+            int after = board.checkForWin(column) ? Tablebase.WIN
+                    : board.checkTie() ? Tablebase.DRAW : flip(solve(board, players));
+            check(after == result, "tablebase best move " + column + " gave up its result");
+            checked++;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        boolean refused = false;
+        try {
+            Tablebase.open(file);
+        } catch (StreamCorruptedException e) {
+            refused = true;
+        }
+        check(refused, "a truncated tablebase was opened");
+        System.out.printf("tablebase: %d of %d indexes solved, %d positions and their mirror images matched a full "
+                + "search, truncated file refused%n", generator.getPositions(), tablebase.size(), checked);
+    }
+
+    /**
+     * Solves a two player position that is not over by searching every move to the end
+     */
+    private static int solve(IGameBoard board, char[] players) {
+        char token = players[board.getNumMoves() % 2];
+        int best = Tablebase.LOSS;
+        for (int column = 0; column < board.getNumColumns() && best != Tablebase.WIN; column++) {
+            if (!board.checkIfFree(column)) {
+                continue;
+            }
+            board.placeToken(token, column);
+            int result = board.checkForWin(column) ? Tablebase.WIN
+                    : board.checkTie() ? Tablebase.DRAW : flip(solve(board, players));
+            board.removeToken(column);
+            if (result == Tablebase.WIN || result == Tablebase.DRAW) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private static int flip(int result) {
+        return result == Tablebase.WIN ? Tablebase.LOSS : result == Tablebase.LOSS ? Tablebase.WIN : result;
+    }
+
+    /**
+     * Plays random moves on an empty board until moves have been played or the game is over
+     */
+    private static IGameBoard randomGame(Random random, IGameBoard board, int players, int moves) {
+        for (int move = 0; move < moves; move++) {
+            int column = freeColumn(random, board);
+            if (column < 0) {
+                break;
+            }
+            board.placeToken(GameEngine.PLAYER_TOKENS[board.getNumMoves() % players], column);
+            if (board.checkForWin(column)) {
+                break;
+            }
+        }
+        return board;
+    }
+
+    private static int freeColumn(Random random, IGameBoard board) {
+        if (board.checkTie()) {
+            return -1;
+        }
+        int column = random.nextInt(board.getNumColumns());
+        while (!board.checkIfFree(column)) {
+            column = (column + 1) % board.getNumColumns();
+        }
+        return column;
+    }
+
+    private static IGameBoard mirror(IGameBoard board, int players) {
+        IGameBoard mirror = new GameBoardBit(board.getNumRows(), board.getNumColumns(), board.getNumToWin());
+        for (int i = 0; i < board.getNumMoves(); i++) {
+            mirror.placeToken(GameEngine.PLAYER_TOKENS[i % players], board.getNumColumns() - 1 - board.getMove(i));
+        }
+        return mirror;
+    }
+
+    private static void check(boolean same, String what) {
+        if (!same) {
+            throw new IllegalStateException("Round trip failed: " + what);
+        }
+    }
+}
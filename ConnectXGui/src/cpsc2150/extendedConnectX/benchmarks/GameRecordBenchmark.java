@@ -0,0 +1,179 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.RandomPlayer;
+import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput of the binary game record format.
+ * <p>
+ * Plays random games on a few board shapes, then times writing them with {@link GameRecordWriter}, reading
+ * them back with {@link GameRecordReader}, and replaying them onto every board implementation, both in memory
+ * and through a temporary file. Also reports the size of a record against the characters of storing a
+ * toString snapshot after every move.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.GameRecordBenchmark [--quick]}
+ */
+public class GameRecordBenchmark {
+
+    private static final int[][] SHAPES = {{6, 7, 4}, {20, 20, 5}, {100, 100, 5}};
+    private static final int[] GAMES = {200_000, 20_000, 500};
+    private static final int ROUNDS = 5;
+    private static final char[] PLAYERS = {'X', 'O'};
+
+    private static volatile long sink;
+
+    /**
+     * Runs every benchmark and prints one line per measurement
+     *
+     * @param args {@code --quick} plays a tenth of the games
+     */
+    public static void main(String[] args) throws IOException {
+        int divisor = args.length > 0 && args[0].equals("--quick") ? 10 : 1;
+        System.out.printf("%-10s %8s %10s %10s %-14s %14s %12s%n",
+                "shape", "games", "B/game", "B/move", "op", "games/s", "MB/s");
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            int rows = SHAPES[shape][0];
+            int columns = SHAPES[shape][1];
+            int numToWin = SHAPES[shape][2];
+            List<GameRecord> records = play(rows, columns, numToWin, Math.max(1, GAMES[shape] / divisor));
+            byte[] bytes = write(records);
+            long moves = 0;
+            for (GameRecord record : records) {
+                moves += record.getNumMoves();
+            }
+            String prefix = String.format("%-10s %8d %10.1f %10.2f", rows + "x" + columns, records.size(),
+                    (double) bytes.length / records.size(), (double) bytes.length / moves);
+            System.out.printf("%s %-14s %14s %12s  (%.0f chars/move as toString snapshots)%n", prefix,
+                    "snapshot", "-", "-", snapshotCharsPerMove(records));
+
+            report(prefix, "write", records.size(), bytes.length, best(() -> write(records).length));
+            report(prefix, "read", records.size(), bytes.length, best(() -> read(bytes)));
+            for (BoardType type : BoardType.values()) {
+                report(prefix, "replay " + type, records.size(), bytes.length,
+                        best(() -> replay(bytes, type::make)));
+            }
+            Path file = Files.createTempFile("connectx", ".cxgr");
+            try {
+                report(prefix, "file write", records.size(), bytes.length, best(() -> writeFile(records, file)));
+                report(prefix, "file read", records.size(), bytes.length, best(() -> readFile(file)));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * A timed step; returns a value so the JIT cannot drop the work
+     */
+    interface Step {
+        long run() throws IOException;
+    }
+
+    /**
+     * Runs a step ROUNDS times and returns the fastest time in nanoseconds
+     */
+    private static long best(Step step) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            sink += step.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(String prefix, String op, int games, long bytes, long nanos) {
+        System.out.printf("%s %-14s %14.0f %12.1f%n", prefix, op, games * 1e9 / nanos,
+                bytes * 1e9 / nanos / (1 << 20));
+    }
+
+    private static List<GameRecord> play(int rows, int columns, int numToWin, int games) {
+        List<GameRecord> records = new ArrayList<>(games);
+        RandomPlayer player = new RandomPlayer(rows * 31 + columns);
+        for (int game = 0; game < games; game++) {
+            GameEngine engine = new GameEngine(new GameBoardBit(rows, columns, numToWin), PLAYERS.length);
+            while (!engine.isGameOver()) {
+                engine.play(player.chooseMove(engine.getBoard(), PLAYERS, engine.getCurrentPlayer()));
+            }
+            records.add(GameRecord.of(engine.getBoard(), PLAYERS.length));
+        }
+        return records;
+    }
+
+    private static byte[] write(List<GameRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GameRecordWriter writer = new GameRecordWriter(bytes)) {
+            for (GameRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long read(byte[] bytes) throws IOException {
+        long moves = 0;
+        try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes))) {
+            GameRecord record;
+            while ((record = reader.read()) != null) {
+                moves += record.getNumMoves();
+            }
+        }
+        return moves;
+    }
+
+    private static long replay(byte[] bytes, GameRecordReader.BoardMaker maker) throws IOException {
+        long moves = 0;
+        try (GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(bytes))) {
+            IGameBoard board;
+            while ((board = reader.replayNext(maker)) != null) {
+                moves += board.getNumMoves();
+            }
+        }
+        return moves;
+    }
+
+    private static long writeFile(List<GameRecord> records, Path file) throws IOException {
+        try (GameRecordWriter writer = new GameRecordWriter(Files.newOutputStream(file))) {
+            for (GameRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return Files.size(file);
+    }
+
+    private static long readFile(Path file) throws IOException {
+        long moves = 0;
+        try (GameRecordReader reader = new GameRecordReader(Files.newInputStream(file))) {
+            GameRecord record;
+            while ((record = reader.read()) != null) {
+                moves += record.getNumMoves();
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Characters per move of storing the board's toString after every move, measured on a sample of the games
+     */
+    private static double snapshotCharsPerMove(List<GameRecord> records) {
+        long chars = 0;
+        long moves = 0;
+        for (int i = 0; i < Math.min(records.size(), 20); i++) {
+            GameRecord record = records.get(i);
+            IGameBoard board = new GameBoard(record.getNumRows(), record.getNumColumns(), record.getNumToWin());
+            for (int move = 0; move < record.getNumMoves(); move++) {
+                board.placeToken(PLAYERS[move % PLAYERS.length], record.getMove(move));
+                chars += board.toString().length();
+            }
+            moves += record.getNumMoves();
+        }
+        return (double) chars / moves;
+    }
+}
@@ -0,0 +1,227 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.RandomPlayer;
+import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append throughput and recovery time of {@link MoveJournal}.
+ * <p>
+ * Random 6x7 games are played up front, then journaled three ways:
+ * <ul>
+ * <li>async: one thread appends every move of many interleaved games and syncs once at the end, so the
+ * writer thread batches as much as it can</li>
+ * <li>durable: each of several threads plays its own games and waits for every move to be on disk before
+ * the next, as a server acknowledging moves would, so concurrent moves share an fsync</li>
+ * <li>recover: for several snapshot intervals, the journal is filled, opened again (which snapshots it) and
+ * given half an interval of entries, so it is closed with that many after its last snapshot; opening it once
+ * more times the snapshot load and the replay of those entries</li>
+ * </ul>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.JournalBenchmark [--moves 1000000] [--threads 8]
+ * [--dir directory]}; the journal goes in a temporary directory under dir (the system temporary directory
+ * by default), which should be on the disk being measured.
+ */
+public class JournalBenchmark {
+
+    private static final int ROWS = 6;
+    private static final int COLUMNS = 7;
+    private static final int NUM_TO_WIN = 4;
+    private static final char[] PLAYERS = {'X', 'O'};
+    private static final int INTERLEAVED_GAMES = 1000;
+    private static final int[] SNAPSHOT_ENTRIES = {10_000, 100_000, 1_000_000};
+
+    /**
+     * Runs every benchmark and prints one line per measurement
+     *
+     * @param args see the class comment
+     * @throws IOException if the journal cannot be written
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long moves = 1_000_000;
+        int threads = 8;
+        Path parent = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--moves": moves = Long.parseLong(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--dir": parent = Paths.get(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        List<GameRecord> games = play(moves);
+        System.out.printf("%-9s %10s %12s %10s %12s %12s %10s%n",
+                "op", "moves", "moves/s", "fsyncs", "moves/fsync", "MB written", "ms");
+
+        Path directory = parent == null ? Files.createTempDirectory("connectx-journal")
+                : Files.createTempDirectory(parent, "connectx-journal");
+        try {
+            async(directory, games, moves);
+            delete(directory);
+            durable(directory, games, Math.max(1, moves / 20), threads);
+            for (int snapshotEntries : SNAPSHOT_ENTRIES) {
+                delete(directory);
+                recover(directory, games, moves, snapshotEntries);
+            }
+        } finally {
+            delete(directory);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Plays random games until they hold the given number of moves
+     */
+    private static List<GameRecord> play(long moves) {
+        List<GameRecord> games = new ArrayList<>();
+        RandomPlayer player = new RandomPlayer(42);
+        for (long played = 0; played < moves; ) {
+            GameEngine engine = new GameEngine(new GameBoardBit(ROWS, COLUMNS, NUM_TO_WIN), PLAYERS.length);
+            while (!engine.isGameOver()) {
+                engine.play(player.chooseMove(engine.getBoard(), PLAYERS, engine.getCurrentPlayer()));
+            }
+            games.add(GameRecord.of(engine.getBoard(), PLAYERS.length));
+            played += engine.getBoard().getNumMoves();
+        }
+        return games;
+    }
+
+    /**
+     * Appends the moves of INTERLEAVED_GAMES games at a time, one move of each in turn, from one thread
+     */
+    private static void async(Path directory, List<GameRecord> games, long moves) throws IOException {
+        try (MoveJournal journal = new MoveJournal(directory)) {
+            long start = System.nanoTime();
+            long written = appendInterleaved(journal, games, moves);
+            journal.sync();
+            report("async", written, journal, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Appends the moves of a share of the games from each thread, waiting for each move to be on disk
+     */
+    private static void durable(Path directory, List<GameRecord> games, long moves, int threads)
+            throws IOException, InterruptedException {
+        try (MoveJournal journal = new MoveJournal(directory)) {
+            AtomicLong written = new AtomicLong();
+            List<Thread> workers = new ArrayList<>();
+            List<IOException> failures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                Thread worker = new Thread(() -> {
+                    try {
+                        for (int g = first; g < games.size() && written.get() < moves; g += threads) {
+                            GameRecord game = games.get(g);
+                            long id = journal.startGame(ROWS, COLUMNS, NUM_TO_WIN, PLAYERS.length);
+                            for (int i = 0; i < game.getNumMoves(); i++) {
+                                journal.sync(journal.move(id, game.getMove(i)));
+                            }
+                            journal.sync(journal.endGame(id));
+                            written.addAndGet(game.getNumMoves());
+                        }
+                    } catch (IOException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (!failures.isEmpty()) {
+                throw failures.get(0);
+            }
+            report("durable", written.get(), journal, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Fills a journal, leaves it with a known number of entries after its last snapshot and times opening it
+     *
+     * @throws IllegalStateException if opening the journal did not replay exactly those entries
+     */
+    private static void recover(Path directory, List<GameRecord> games, long moves, int snapshotEntries)
+            throws IOException {
+        try (MoveJournal journal = new MoveJournal(directory, snapshotEntries)) {
+            appendInterleaved(journal, games, moves);
+        }
+        //opening snapshots everything so far and the writer only snapshots again after snapshotEntries entries,
+        //so all of the entries appended now are left to replay; the game starts and ends among them are what
+        //the INTERLEAVED_GAMES fewer moves leave room for
+        long tail;
+        try (MoveJournal journal = new MoveJournal(directory, snapshotEntries)) {
+            long first = journal.getSequence();
+            appendInterleaved(journal, games, Math.max(1, snapshotEntries / 2 - INTERLEAVED_GAMES));
+            tail = journal.getSequence() - first;
+        }
+        try (MoveJournal journal = new MoveJournal(directory, snapshotEntries)) {
+            if (tail >= snapshotEntries || journal.getRecoveredEntries() != tail) {
+                throw new IllegalStateException("Recovery replayed " + journal.getRecoveredEntries()
+                        + " entries, not the " + tail + " appended after the last snapshot");
+            }
+            System.out.printf("%-9s %10d %12s %10s %12s %12s %10.1f  (snapshot every %d entries, %d games)%n",
+                    "recover", journal.getRecoveredEntries(), "-", "-", "-", "-",
+                    journal.getRecoveryNanos() / 1e6, snapshotEntries, journal.getGames().size());
+        }
+    }
+
+    /**
+     * Appends moves of up to INTERLEAVED_GAMES games at once, starting a game when one finishes
+     *
+     * @return number of moves appended
+     */
+    private static long appendInterleaved(MoveJournal journal, List<GameRecord> games, long moves)
+            throws IOException {
+        long[] ids = new long[INTERLEAVED_GAMES];
+        int[] gameOf = new int[INTERLEAVED_GAMES];
+        int[] next = new int[INTERLEAVED_GAMES];
+        int nextGame = 0;
+        for (int slot = 0; slot < INTERLEAVED_GAMES && nextGame < games.size(); slot++) {
+            gameOf[slot] = nextGame++;
+            ids[slot] = journal.startGame(ROWS, COLUMNS, NUM_TO_WIN, PLAYERS.length);
+        }
+        long written = 0;
+        while (written < moves) {
+            for (int slot = 0; slot < INTERLEAVED_GAMES && written < moves; slot++) {
+                GameRecord game = games.get(gameOf[slot]);
+                journal.move(ids[slot], game.getMove(next[slot]++));
+                written++;
+                if (next[slot] == game.getNumMoves()) {
+                    journal.endGame(ids[slot]);
+                    gameOf[slot] = nextGame++ % games.size();
+                    next[slot] = 0;
+                    ids[slot] = journal.startGame(ROWS, COLUMNS, NUM_TO_WIN, PLAYERS.length);
+                }
+            }
+        }
+        return written;
+    }
+
+    private static void report(String op, long moves, MoveJournal journal, long nanos) {
+        long commits = journal.getCommits();
+        System.out.printf("%-9s %10d %12.0f %10d %12.1f %12.1f %10.1f%n", op, moves, moves * 1e9 / nanos,
+                commits, commits == 0 ? 0.0 : (double) moves / commits,
+                journal.getBytesWritten() / (double) (1 << 20), nanos / 1e6);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Checks that {@link MoveJournal} recovers what it promised to keep, the two ways a journal gets damaged.
+ * <ul>
+ * <li>crash: a child JVM plays random games on the journal, syncs, appends a few more entries without
+ * waiting and then halts with {@code Runtime.halt}, so no close or shutdown hook runs. The journal is reopened
+ * and must hold the synced games, plus some prefix of the entries appended after the sync. Each round carries
+ * on from the games the previous round recovered, across snapshots.</li>
+ * <li>tail: a journal is written one synced entry per frame and closed, then copies of it have the last journal
+ * file cut at every frame boundary and at random bytes inside frames, or garbage added after it. Every copy
+ * must open and hold the games as they were after its last whole frame.</li>
+ * </ul>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.JournalCrashCheck [--rounds 5] [--ops 20000]
+ * [--snapshot 5000] [--dir directory]}; it prints one line per check and throws IllegalStateException at the
+ * first journal that does not recover as expected.
+ */
+public class JournalCrashCheck {
+
+    private static final int UNSYNCED_ENTRIES = 50;
+    private static final int TAIL_ENTRIES = 500;
+    private static final int TAIL_CUTS = 200;
+    // "CXJN", the version and the sequence number before the first entry, then frames of a length, a CRC and data
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    /**
+     * Runs every check
+     *
+     * @param args see the class comment
+     * @throws IOException if a journal cannot be written
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(Paths.get(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]), Integer.parseInt(args[4]),
+                    Paths.get(args[5]));
+            return;
+        }
+        int rounds = 5;
+        int ops = 20_000;
+        int snapshotEntries = 5_000;
+        Path parent = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rounds": rounds = Integer.parseInt(args[i + 1]); break;
+                case "--ops": ops = Integer.parseInt(args[i + 1]); break;
+                case "--snapshot": snapshotEntries = Integer.parseInt(args[i + 1]); break;
+                case "--dir": parent = Paths.get(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Path directory = parent == null ? Files.createTempDirectory("connectx-journal-check")
+                : Files.createTempDirectory(parent, "connectx-journal-check");
+        try {
+            crash(directory, rounds, ops, snapshotEntries);
+            tail(directory);
+        } finally {
+            deleteTree(directory);
+        }
+        System.out.println("every journal recovered as expected");
+    }
+
+    /**
+     * Halts a child JVM after a sync each round and checks what the reopened journal holds
+     */
+    private static void crash(Path directory, int rounds, int ops, int snapshotEntries)
+            throws IOException, InterruptedException {
+        Path journal = directory.resolve("crash");
+        Path expected = directory.resolve("expected.txt");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        for (int round = 0; round < rounds; round++) {
+            Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    JournalCrashCheck.class.getName(), "--child", journal.toString(),
+                    Integer.toString(snapshotEntries), Integer.toString(round), Integer.toString(ops),
+                    expected.toString()).inheritIO().start();
+            if (child.waitFor() != 0) {
+                throw new IllegalStateException("Round " + round + ": the child exited with " + child.exitValue());
+            }
+            // line 0 is the synced state, line i the state after i more entries that were not waited for
+            List<String> states = Files.readAllLines(expected);
+            try (MoveJournal reopened = new MoveJournal(journal, snapshotEntries)) {
+                int survived = states.indexOf(describe(reopened.getGames()));
+                if (survived < 0) {
+                    throw new IllegalStateException("Round " + round + ": recovered games are not the synced "
+                            + "state or a later prefix of it");
+                }
+                System.out.printf("crash round %d: %d games, %d entries replayed, synced state plus %d of %d "
+                                + "unsynced entries recovered%n", round, reopened.getGames().size(),
+                        reopened.getRecoveredEntries(), survived, states.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Plays random games on the journal, syncs, writes the expected states and halts
+     */
+    private static void child(Path directory, int snapshotEntries, long seed, int ops, Path expected)
+            throws IOException {
+        MoveJournal journal = new MoveJournal(directory, snapshotEntries);
+        RandomGames games = new RandomGames(journal, new Random(seed));
+        for (int op = 0; op < ops; op++) {
+            games.step();
+        }
+        journal.sync();
+        List<String> states = new ArrayList<>();
+        states.add(games.describe());
+        for (int op = 0; op < UNSYNCED_ENTRIES; op++) {
+            games.step();
+            states.add(games.describe());
+        }
+        Files.write(expected, states);
+        Runtime.getRuntime().halt(0);
+    }
+
+    /**
+     * Cuts the last journal file of a closed journal at many lengths and checks each copy recovers
+     */
+    private static void tail(Path directory) throws IOException {
+        Path journal = directory.resolve("tail");
+        List<String> states = new ArrayList<>();
+        try (MoveJournal written = new MoveJournal(journal, Integer.MAX_VALUE)) {
+            RandomGames games = new RandomGames(written, new Random(42));
+            states.add(games.describe());
+            // waiting for each entry makes every entry its own frame
+            for (int op = 0; op < TAIL_ENTRIES; op++) {
+                games.step();
+                written.sync();
+                states.add(games.describe());
+            }
+        }
+        Path last = lastJournalFile(journal);
+        long length = Files.size(last);
+        // frameEnds.get(k) is where the k-th frame, and so the k-th entry, ends
+        List<Long> frameEnds = new ArrayList<>();
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(last));
+        for (int end = JOURNAL_HEADER_BYTES; end < length; end += FRAME_HEADER_BYTES + bytes.getInt(end)) {
+            frameEnds.add((long) end);
+        }
+        frameEnds.add(length);
+        Random random = new Random(7);
+        Path copy = directory.resolve("tail-copy");
+        for (int cut = 0; cut <= TAIL_CUTS; cut++) {
+            long keep = cut == TAIL_CUTS ? length : (length * cut / TAIL_CUTS + random.nextInt(16)) % length;
+            copyTree(journal, copy);
+            try (FileChannel file = FileChannel.open(copy.resolve(last.getFileName()), StandardOpenOption.WRITE)) {
+                file.truncate(keep);
+            }
+            int wholeFrames = 0;
+            while (wholeFrames < TAIL_ENTRIES && frameEnds.get(wholeFrames + 1) <= keep) {
+                wholeFrames++;
+            }
+            checkRecovered(copy, states.get(wholeFrames), "cut at " + keep + " of " + length + " bytes");
+            deleteTree(copy);
+        }
+        copyTree(journal, copy);
+        try (OutputStream out = Files.newOutputStream(copy.resolve(last.getFileName()), StandardOpenOption.APPEND)) {
+            byte[] garbage = new byte[4096];
+            random.nextBytes(garbage);
+            out.write(garbage);
+        }
+        checkRecovered(copy, states.get(TAIL_ENTRIES), "with garbage after the last frame");
+        deleteTree(copy);
+        System.out.printf("tail: %d cuts of a %d byte journal and one garbage tail recovered to their last whole "
+                + "frame%n", TAIL_CUTS + 1, length);
+    }
+
+    /**
+     * Opens a damaged copy and checks it holds the expected games
+     */
+    private static void checkRecovered(Path copy, String expected, String damage) throws IOException {
+        try (MoveJournal reopened = new MoveJournal(copy, Integer.MAX_VALUE)) {
+            if (!describe(reopened.getGames()).equals(expected)) {
+                throw new IllegalStateException("Journal " + damage + " did not recover to its last whole frame");
+            }
+        }
+    }
+
+    private static Path lastJournalFile(Path journal) throws IOException {
+        Path last = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journal, "journal-*.cxj")) {
+            for (Path file : files) {
+                if (last == null || file.getFileName().toString().compareTo(last.getFileName().toString()) > 0) {
+                    last = file;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Describes games the same way whether they come from the journal or from RandomGames
+     */
+    private static String describe(Map<Long, GameRecord> games) {
+        Map<Long, List<Integer>> moves = new TreeMap<>();
+        for (Map.Entry<Long, GameRecord> game : games.entrySet()) {
+            List<Integer> columns = new ArrayList<>();
+            for (int i = 0; i < game.getValue().getNumMoves(); i++) {
+                columns.add(game.getValue().getMove(i));
+            }
+            moves.put(game.getKey(), columns);
+        }
+        return moves.toString();
+    }
+
+    private static void copyTree(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(from)) {
+            for (Path file : files) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.isDirectory(file)) {
+                    deleteTree(file);
+                } else {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Starts, plays, takes back and ends random games on a journal, keeping its own copy of every game to
+     * compare the recovered journal with
+     */
+    private static class RandomGames {
+        private final MoveJournal journal;
+        private final Random random;
+        private final Map<Long, IGameBoard> boards = new HashMap<>();
+        private final Map<Long, Integer> players = new HashMap<>();
+
+        RandomGames(MoveJournal journal, Random random) {
+            this.journal = journal;
+            this.random = random;
+            for (Map.Entry<Long, GameRecord> game : journal.getGames().entrySet()) {
+                boards.put(game.getKey(), journal.rebuild(game.getKey(), GameBoardBit::new));
+                players.put(game.getKey(), game.getValue().getNumPlayers());
+            }
+        }
+
+        /**
+         * Appends one random entry
+         */
+        void step() throws IOException {
+            int choice = random.nextInt(100);
+            if (boards.size() < 5 || choice < 3) {
+                int rows = 4 + random.nextInt(4);
+                int columns = 4 + random.nextInt(4);
+                int numPlayers = 2 + random.nextInt(2);
+                long id = journal.startGame(rows, columns, 4, numPlayers);
+                boards.put(id, new GameBoardBit(rows, columns, 4));
+                players.put(id, numPlayers);
+                return;
+            }
+            List<Long> ids = new ArrayList<>(boards.keySet());
+            long id = ids.get(random.nextInt(ids.size()));
+            IGameBoard board = boards.get(id);
+            if (choice < 6 || board.checkTie()) {
+                journal.endGame(id);
+                boards.remove(id);
+                players.remove(id);
+            } else if (choice < 15 && board.getNumMoves() > 0) {
+                journal.undo(id);
+                board.undoLastMove();
+            } else {
+                int column = random.nextInt(board.getNumColumns());
+                while (!board.checkIfFree(column)) {
+                    column = (column + 1) % board.getNumColumns();
+                }
+                journal.move(id, column);
+                board.placeToken(GameEngine.PLAYER_TOKENS[board.getNumMoves() % players.get(id)], column);
+            }
+        }
+
+        String describe() {
+            Map<Long, GameRecord> games = new TreeMap<>();
+            for (Map.Entry<Long, IGameBoard> board : boards.entrySet()) {
+                games.put(board.getKey(), GameRecord.of(board.getValue(), players.get(board.getKey())));
+            }
+            return JournalCrashCheck.describe(games);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.*;
+import cpsc2150.extendedConnectX.models.*;
+
+/**
+ * Measures the playouts per second and tree memory of {@link MonteCarloEngine}.
+ * <p>
+ * Searches the empty board of a few shapes for a fixed time on 1, 2, 4, ... threads up to the number of
+ * processors (at least 4), each run with a fresh engine, and reports playouts per second, the deepest node
+ * reached and how many of the tree's nodes were used.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.MonteCarloBenchmark [--quick]}
+ */
+public class MonteCarloBenchmark {
+
+    private static final int[][] SHAPES = {{6, 7, 4}, {20, 20, 4}, {100, 100, 5}};
+    private static final char[] PLAYERS = {'X', 'O'};
+    private static final long SEED = 2150;
+
+    /**
+     * Runs the benchmark and prints one line per shape and thread count
+     *
+     * @param args {@code --quick} searches for 200 ms instead of 2 s
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 && args[0].equals("--quick") ? 200 : 2000;
+        //one untimed search so the JIT has compiled the playouts before anything is measured
+        search(new GameBoardBit(6, 7, 4), 1, millis, false);
+
+        System.out.printf("%d ms per search, %d processors%n", millis, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %7s %12s %12s %6s %7s %14s %8s%n",
+                "shape", "threads", "playouts", "playouts/s", "depth", "column", "tree nodes", "tree MB");
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int[] shape : SHAPES) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                search(new GameBoardBit(shape[0], shape[1], shape[2]), threads, millis, true);
+            }
+        }
+    }
+
+    private static void search(IGameBoard board, int threads, long millis, boolean print) {
+        MonteCarloEngine engine = new MonteCarloEngine(threads, millis, SEED);
+        SearchResult result = engine.search(board, PLAYERS, 0);
+        engine.shutdown();
+        if (!print) {
+            return;
+        }
+        System.out.printf("%-10s %7d %12d %12d %6d %7d %14d %8d%n",
+                board.getNumRows() + "x" + board.getNumColumns(), threads, result.getNodes(),
+                result.getNodesPerSecond(), result.getDepth(), result.getBestColumn(), engine.getTreeNodes(),
+                engine.getTreeBytes() / (1024 * 1024));
+    }
+}
@@ -0,0 +1,100 @@
+package cpsc2150.extendedConnectX.benchmarks;
+
+import cpsc2150.extendedConnectX.ai.*;
+import cpsc2150.extendedConnectX.models.*;
+
+import java.util.Random;
+
+/**
+ * Measures how {@link ParallelRootSearch} scales with the number of threads.
+ * <p>
+ * Searches the same mid-game positions to a fixed depth with the sequential {@link NegamaxEngine} and with
+ * ParallelRootSearch on 1, 2, 4, ... threads up to the number of processors (at least 4), each with a fresh
+ * transposition table, and reports the time, nodes per second and speedup over the sequential engine. Speedup
+ * is below the thread count because the root moves searched in parallel start with a weaker alpha and prune less.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.benchmarks.ParallelSearchBenchmark [--quick]}
+ */
+public class ParallelSearchBenchmark {
+
+    private static final int ROWS = 20;
+    private static final int COLUMNS = 20;
+    private static final int NUM_TO_WIN = 5;
+    private static final int POSITIONS = 4;
+    private static final int TOKENS_PLACED = 40;
+    private static final char[] PLAYERS = {'X', 'O'};
+    private static final long NO_TIME_LIMIT_MILLIS = 3_600_000L;
+
+    /**
+     * Runs the benchmark and prints one line per thread count
+     *
+     * @param args {@code --quick} searches one ply shallower
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 && args[0].equals("--quick") ? 4 : 5;
+        IGameBoard[] positions = new IGameBoard[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            positions[i] = position(new Random(i));
+        }
+        //one untimed pass so the JIT has compiled the search before anything is measured
+        runSequential(positions, depth - 1);
+
+        System.out.printf("%dx%d, %d to win, %d positions, depth %d, %d processors%n",
+                ROWS, COLUMNS, NUM_TO_WIN, POSITIONS, depth, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %10s %14s %12s %8s%n", "engine", "ms", "nodes", "knodes/s", "speedup");
+        long[] sequential = runSequential(positions, depth);
+        report("negamax", sequential, sequential[0]);
+        //at least 4 threads, so the cost of oversubscribing shows on small machines
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ParallelRootSearch engine = new ParallelRootSearch(threads, NO_TIME_LIMIT_MILLIS, depth,
+                    new WindowEvaluator(), new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+            long[] parallel = run(engine, positions);
+            engine.shutdown();
+            report("root x" + threads, parallel, sequential[0]);
+        }
+    }
+
+    private static long[] runSequential(IGameBoard[] positions, int depth) {
+        return run(new NegamaxEngine(NO_TIME_LIMIT_MILLIS, depth, new WindowEvaluator(),
+                new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES)), positions);
+    }
+
+    /**
+     * Searches every position once and returns the total time in nanoseconds and the total nodes
+     */
+    private static long[] run(IMoveEngine engine, IGameBoard[] positions) {
+        long nanos = 0;
+        long nodes = 0;
+        for (IGameBoard position : positions) {
+            SearchResult result = engine.search(position, PLAYERS, position.getNumMoves() % PLAYERS.length);
+            nanos += result.getElapsedNanos();
+            nodes += result.getNodes();
+        }
+        return new long[]{nanos, nodes};
+    }
+
+    private static void report(String name, long[] measured, long sequentialNanos) {
+        System.out.printf("%-12s %10.1f %14d %12.0f %8.2f%n", name, measured[0] / 1e6, measured[1],
+                measured[1] / (measured[0] / 1e6), (double) sequentialNanos / measured[0]);
+    }
+
+    /**
+     * Plays random moves until TOKENS_PLACED tokens are down, avoiding positions that are already won
+     */
+    private static IGameBoard position(Random random) {
+        IGameBoard board = new GameBoardBit(ROWS, COLUMNS, NUM_TO_WIN);
+        while (board.getNumMoves() < TOKENS_PLACED) {
+            //moves near the center, as in a real game
+            int column = COLUMNS / 2 - 4 + random.nextInt(9);
+            if (!board.checkIfFree(column)) {
+                continue;
+            }
+            board.placeToken(PLAYERS[board.getNumMoves() % PLAYERS.length], column);
+            if (board.checkForWin(column)) {
+                board.undoLastMove();
+            }
+        }
+        return board;
+    }
+}
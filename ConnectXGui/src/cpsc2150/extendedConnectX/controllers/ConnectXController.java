@@ -1,8 +1,16 @@
 package cpsc2150.extendedConnectX.controllers;
 
+import cpsc2150.extendedConnectX.ai.*;
 import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
 import cpsc2150.extendedConnectX.views.*;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.SwingUtilities;
+
 /**
  * The controller class will handle communication between our View and our Model ({@link IGameBoard})
  * <p>
@@ -11,6 +19,14 @@ import cpsc2150.extendedConnectX.views.*;
  * You will need to include your {@link IGameBoard} interface
  * and both of the {@link IGameBoard} implementations from Project 4
  * If your code was correct you will not need to make any changes to your {@link IGameBoard} implementation class
+ * <p>
+ * Clicks arrive on the Swing event dispatch thread, but the moves they cause (including every computer move) are
+ * played on a background thread so the window keeps painting while they run. Only one move is processed at a
+ * time: the view's input is disabled until it finishes, and every change to the view is handed back to the event
+ * dispatch thread with {@link SwingUtilities#invokeLater}.
+ * <p>
+ * When a {@link MoveJournal} is given, every move is saved to it before the next one is played, and a game left
+ * unfinished by a crash is picked up again by the next game of the same size and number of players.
  *
  * @version 2.0
  */
@@ -18,10 +34,10 @@ public class ConnectXController {
 
     /**
      * <p>
-     * The current game that is being played
+     * The current game that is being played, holding the board, whose turn it is and whether the game is over
      * </p>
      */
-    private IGameBoard curGame;
+    private GameEngine game;
 
     /**
      * <p>
@@ -31,33 +47,57 @@ public class ConnectXController {
     private ConnectXView screen;
 
     /**
-     * Index of the player characters whose turn it currently is
+     * <p>
+     * Constant for the maximum number of players.
+     * </p>
+     */
+    public static final int MAX_PLAYERS = 10;
+
+    /**
+     * <p>
+     * Which player slots are played by the computer; the computer players are the last ones in turn order.
+     * </p>
      */
-    private int charIndex;
+    private boolean[] computerPlayers;
 
     /**
-     * Indicates if the game has ended
+     * <p>
+     * The engine that chooses moves for the computer players, or null if every player is human.
+     * </p>
      */
-    private boolean gameIsOver = false;
+    private IMoveEngine engine;
 
     /**
      * <p>
-     * Constant for the maximum number of players.
+     * The single background thread that plays moves, so the game is only ever changed by one thread at a time.
      * </p>
      */
-    public static final int MAX_PLAYERS = 10;
+    private final ExecutorService mover = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "ConnectX moves");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * <p>
+     * Whether a move is being processed; only read and written on the event dispatch thread.
+     * </p>
+     */
+    private boolean movePending;
 
     /**
-     * List of possible player tokens
+     * <p>
+     * The journal every move is saved to, or null if moves are not saved.
+     * </p>
      */
-    private static final char[] playerTokens = {'X', 'O', 'W', 'J', 'E', 'Z', 'L', 'H', 'B', 'T'};
-    
+    private MoveJournal journal;
+
     /**
      * <p>
-     * The number of players for this game. Note that our player tokens are hard coded.
+     * The id of the current game in the journal.
      * </p>
      */
-    private int numPlayers;
+    private long journalId;
 
     /**
      * <p>
@@ -72,10 +112,80 @@ public class ConnectXController {
      * @post [ the controller will respond to actions on the view using the model. ]
      */
     public ConnectXController(IGameBoard model, ConnectXView view, int np) {
-        this.curGame = model;
+        this(model, view, np, 0, null);
+    }
+
+    /**
+     * <p>
+     * This creates a controller for running the Extended ConnectX game with some computer players
+     * </p>
+     *
+     * @param model
+     *      The board implementation
+     * @param view
+     *      The screen that is shown
+     * @param np
+     *      The number of players
+     * @param numComputers
+     *      How many of the players, counted from the last one in turn order, are played by engine
+     * @param engine
+     *      The engine choosing moves for the computer players
+     *
+     * @pre 0 <= numComputers < np AND (numComputers = 0 OR engine != null)
+     * @post [ the controller will respond to actions on the view using the model, and play the moves of the last
+     * numComputers players with engine ]
+     */
+    public ConnectXController(IGameBoard model, ConnectXView view, int np, int numComputers, IMoveEngine engine) {
+        this(model, view, np, numComputers, engine, null);
+    }
+
+    /**
+     * <p>
+     * This creates a controller for running the Extended ConnectX game that saves every move to a journal
+     * </p>
+     *
+     * @param model
+     *      The board implementation
+     * @param view
+     *      The screen that is shown
+     * @param np
+     *      The number of players
+     * @param numComputers
+     *      How many of the players, counted from the last one in turn order, are played by engine
+     * @param engine
+     *      The engine choosing moves for the computer players
+     * @param journal
+     *      The journal moves are saved to, or null to not save them
+     *
+     * @pre 0 <= numComputers < np AND (numComputers = 0 OR engine != null) AND model.getNumMoves() = 0
+     * @post [ the controller will respond to actions on the view using the model, play the moves of the last
+     * numComputers players with engine and save every game to journal ]
+     */
+    public ConnectXController(IGameBoard model, ConnectXView view, int np, int numComputers, IMoveEngine engine,
+                              MoveJournal journal) {
+        this.game = new GameEngine(model, np);
         this.screen = view;
-        numPlayers = np;
-        charIndex = 0;
+        computerPlayers = new boolean[np];
+        for (int i = np - numComputers; i < np; i++) {
+            computerPlayers[i] = true;
+        }
+        this.engine = engine;
+        this.journal = journal;
+    }
+
+    /**
+     * <p>
+     * This starts the game once the view is showing, letting the computer move first if it holds the first slot.
+     * </p>
+     *
+     * @post [ an unfinished game of the same size is resumed from the journal if there is one, and any computer
+     * players due to move before the next human have moved ]
+     */
+    public void start() {
+        submit(() -> {
+            resumeOrStartJournalGame();
+            playComputerMoves();
+        });
     }
 
     /**
@@ -87,51 +197,277 @@ public class ConnectXController {
      *      The column of the activated button
      * 
      * @post [ will allow the player to place a token in the column if it is not full, otherwise it will display an error
-     * and allow them to pick again. Will check for a win as well. If a player wins it will allow for them to play another
-     * game hitting any button ]
+     * and allow them to pick again. Will check for a win as well. If a player wins it will allow for them to play a
+     * rematch on the same board by hitting any button. Clicks while a move is still being processed are ignored ]
      */
     public void processButtonClick(int col) {
-        //If game is over, start a new game
-        if(gameIsOver)
+        if(movePending)
+        {
+            return;
+        }
+        //If game is over, play again in the same window
+        if(game.isGameOver())
         {
-            newGame();
+            rematch();
+            return;
         }
-        if(!curGame.checkIfFree(col))
+        if(!game.canPlay(col))
         {
             screen.setMessage("Column is full!");
         }
         else
         {
-            curGame.placeToken(playerTokens[charIndex], col);
-            //Finds the row of the most recently placed token
-            int rowOfPiece = curGame.getNumRows() - 1;
-            for(int row = 0; row < rowOfPiece; row++)
+            submit(() -> {
+                playMove(col, "");
+                playComputerMoves();
+            });
+        }
+    }
+
+    /**
+     * <p>
+     * This processes a click on the undo button.
+     * </p>
+     *
+     * @post [ the last move is taken back, along with any computer moves before it, so that it is a human player's
+     * turn again; if no moves have been played the message says so. Ignored while a move is being processed ]
+     */
+    public void processUndoClick()
+    {
+        if(movePending)
+        {
+            return;
+        }
+        if(game.getBoard().getNumMoves() == 0)
+        {
+            screen.setMessage("There are no moves to undo");
+            return;
+        }
+        submit(() -> {
+            do
             {
-                if(curGame.whatsAtPos(new BoardPosition(row + 1, col)) == ' ')
-                {
-                    rowOfPiece = row;
-                    break;
-                }
+                int col = game.undo();
+                showMarker(game.getBoard().getColumnHeight(col), col, ' ');
+                saveToJournal(() -> journal.sync(journal.undo(journalId)));
+            }
+            while(game.getBoard().getNumMoves() > 0 && computerPlayers[game.getCurrentPlayer()]);
+            showMessage("Move undone. It is " + game.getCurrentToken() + "'s turn");
+            playComputerMoves();
+        });
+    }
+
+    /**
+     * <p>
+     * This processes a click on the new game button.
+     * </p>
+     *
+     * @post [ the setup screen is shown and this window is kept for a later game of the same size. Ignored while a
+     * move is being processed ]
+     */
+    public void processNewGameClick()
+    {
+        if(movePending)
+        {
+            return;
+        }
+        newGame();
+    }
+
+    /**
+     * <p>
+     * This runs a change to the game on the background thread, with the view's input disabled until it is done.
+     * </p>
+     *
+     * @param work
+     *      The moves to play
+     *
+     * @pre [ called on the event dispatch thread ] AND !movePending
+     * @post [ work runs on the mover thread; afterwards input is enabled again on the event dispatch thread ]
+     */
+    private void submit(Runnable work)
+    {
+        movePending = true;
+        screen.setInputEnabled(false);
+        mover.execute(() -> {
+            try
+            {
+                work.run();
             }
-            screen.setMarker(rowOfPiece, col, playerTokens[charIndex]);
-            if(curGame.checkForWin(col))
+            catch(RuntimeException e)
             {
-                screen.setMessage("Player " + playerTokens[charIndex] + " has won! Click any button to start a new game");
-                gameIsOver = true;
+                showMessage("Something went wrong: " + e.getMessage());
             }
-            else if(curGame.checkTie())
+            finally
             {
-                screen.setMessage("There has been a tie! Click any button to start a new game");
-                gameIsOver = true;
+                SwingUtilities.invokeLater(() -> {
+                    movePending = false;
+                    screen.setInputEnabled(true);
+                });
             }
-            else
+        });
+    }
+
+    private void showMarker(int row, int col, char player)
+    {
+        SwingUtilities.invokeLater(() -> screen.setMarker(row, col, player));
+    }
+
+    private void showMessage(String message)
+    {
+        SwingUtilities.invokeLater(() -> screen.setMessage(message));
+    }
+
+    /**
+     * <p>
+     * This places the current player's token and checks for the end of the game.
+     * </p>
+     *
+     * @param col
+     *      The column to play in
+     * @param note
+     *      Text shown before the message about the next turn
+     *
+     * @pre game.canPlay(col) AND [ called on the mover thread ]
+     * @post [ the token is placed and shown, and either the game is over or it is the next player's turn ]
+     */
+    private void playMove(int col, String note)
+    {
+        MoveResult result = game.play(col);
+        showMarker(result.getRow(), col, result.getPlayer());
+        saveToJournal(() -> journal.sync(journal.move(journalId, col)));
+        if(result.isWin())
+        {
+            showMessage(note + "Player " + result.getWinner() + " has won! Click any column to play again");
+        }
+        else if(result.isTie())
+        {
+            showMessage(note + "There has been a tie! Click any column to play again");
+        }
+        else
+        {
+            showMessage(note + "It is " + game.getCurrentToken() + "'s turn");
+        }
+    }
+
+    /**
+     * <p>
+     * This lets the engine move for every computer player whose turn comes before the next human's.
+     * </p>
+     *
+     * @pre [ called on the mover thread ]
+     * @post [ the game is over or it is a human player's turn ]
+     */
+    private void playComputerMoves()
+    {
+        char[] players = game.getPlayers();
+        while(!game.isGameOver() && computerPlayers[game.getCurrentPlayer()])
+        {
+            showMessage("Computer " + game.getCurrentToken() + " is thinking...");
+            SearchResult result = engine.search(game.getBoard(), players, game.getCurrentPlayer());
+            playMove(result.getBestColumn(), "Computer " + game.getCurrentToken() + " played column "
+                    + result.getBestColumn() + " (depth " + result.getDepth() + ", "
+                    + result.getNodesPerSecond() / 1000 + "k nodes/s). ");
+        }
+    }
+
+    /**
+     * <p>
+     * This starts another game with the same players on the same board and screen.
+     * </p>
+     *
+     * @pre game.isGameOver()
+     * @post [ the board and screen are empty and any computer players due to move first have moved ]
+     */
+    private void rematch()
+    {
+        game.restart();
+        screen.clear();
+        submit(() -> {
+            // a finished game stays in the journal until now so its last move can still be undone
+            saveToJournal(() -> journal.endGame(journalId));
+            saveToJournal(() -> journalId = journal.startGame(game.getBoard().getNumRows(),
+                    game.getBoard().getNumColumns(), game.getBoard().getNumToWin(), game.getNumPlayers()));
+            playComputerMoves();
+        });
+    }
+
+    /**
+     * <p>
+     * This picks up the first unfinished game in the journal of the same size and number of players as this one,
+     * or starts a new game in the journal if there is none.
+     * </p>
+     *
+     * @pre [ called on the mover thread ] AND [ no moves have been played ]
+     * @post [ the moves of the resumed game are played and shown, or a new game is started in the journal ]
+     */
+    private void resumeOrStartJournalGame()
+    {
+        if(journal == null)
+        {
+            return;
+        }
+        IGameBoard board = game.getBoard();
+        for(Map.Entry<Long, GameRecord> entry : journal.getGames().entrySet())
+        {
+            GameRecord record = entry.getValue();
+            if(record.getNumMoves() > 0 && record.getNumRows() == board.getNumRows()
+                    && record.getNumColumns() == board.getNumColumns() && record.getNumToWin() == board.getNumToWin()
+                    && record.getNumPlayers() == game.getNumPlayers())
             {
-                //Changes charIndex so the next player can go
-                if (charIndex == numPlayers - 1) charIndex = 0;
-                else charIndex++;
-                screen.setMessage("It is " + playerTokens[charIndex] + "'s turn");
+                journalId = entry.getKey();
+                for(int i = 0; i < record.getNumMoves() && !game.isGameOver(); i++)
+                {
+                    MoveResult result = game.play(record.getMove(i));
+                    showMarker(result.getRow(), result.getColumn(), result.getPlayer());
+                }
+                if(game.isGameOver())
+                {
+                    showMessage("Resumed a finished game. Click any column to play again");
+                }
+                else
+                {
+                    showMessage("Resumed an unfinished game. It is " + game.getCurrentToken() + "'s turn");
+                }
+                return;
             }
         }
+        saveToJournal(() -> journalId = journal.startGame(board.getNumRows(), board.getNumColumns(),
+                board.getNumToWin(), game.getNumPlayers()));
+    }
+
+    /**
+     * A change to the journal
+     */
+    private interface JournalStep {
+        void run() throws IOException;
+    }
+
+    /**
+     * <p>
+     * This makes a change to the journal, if there is one. If the journal cannot be written the game goes on
+     * without it.
+     * </p>
+     *
+     * @param step
+     *      The change to make
+     *
+     * @post [ step has run, or journal = null and the player is told moves are no longer saved ]
+     */
+    private void saveToJournal(JournalStep step)
+    {
+        if(journal == null)
+        {
+            return;
+        }
+        try
+        {
+            step.run();
+        }
+        catch(IOException e)
+        {
+            journal = null;
+            showMessage("Moves can no longer be saved: " + e.getMessage());
+        }
     }
 
     /**
@@ -142,12 +478,15 @@ public class ConnectXController {
      * @post [ a new game gets started ]
      */
     private void newGame() {
-        //close the current screen
-        screen.dispose();
+        //hide the current screen, keeping it and the board for the next game of this size, and let the mover thread end
+        mover.shutdown();
+        // leaving a game on purpose ends it, so it is not resumed like a crashed one
+        saveToJournal(() -> journal.endGame(journalId));
+        GamePool.release(screen, game.getBoard(), game.getNumPlayers());
         
         //start back at the set up menu
         SetupView screen = new SetupView();
         SetupController controller = new SetupController(screen);
         screen.registerObserver(controller);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
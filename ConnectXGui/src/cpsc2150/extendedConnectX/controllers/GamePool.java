@@ -0,0 +1,103 @@
+package cpsc2150.extendedConnectX.controllers;
+
+import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.views.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Windows and boards kept from finished games so a later game of the same shape can reuse them instead of
+ * building a new window with all its widgets.
+ * <p>
+ * Only the few most recently released shapes are kept; older ones are disposed of. Everything here runs on the
+ * event dispatch thread.
+ *
+ * @version 2.0
+ */
+final class GamePool {
+
+    private static final int MAX_VIEWS = 4;
+    private static final int MAX_MODELS = 4;
+
+    // access ordered, so the first entry is the one used longest ago
+    private static final Map<String, ConnectXView> views = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<String, IGameBoard> models = new LinkedHashMap<>(16, 0.75f, true);
+
+    private GamePool() {
+    }
+
+    /**
+     * <p>
+     * This takes a window of the given size out of the pool and shows it.
+     * </p>
+     *
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     *
+     * @return an empty, visible window, or null if none of that size is pooled
+     */
+    static ConnectXView takeView(int rows, int cols) {
+        ConnectXView view = views.remove(rows + "x" + cols);
+        if (view != null) {
+            view.setVisible(true);
+        }
+        return view;
+    }
+
+    /**
+     * <p>
+     * This takes an empty board for the given game out of the pool.
+     * </p>
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param numWin the number of tokens in a row required to win
+     * @param players the number of players
+     * @param tracked whether the board must be a {@link ThreatTrackingBoard}
+     *
+     * @return an empty board, or null if none for that game is pooled
+     */
+    static IGameBoard takeModel(int rows, int cols, int numWin, int players, boolean tracked) {
+        return models.remove(modelKey(rows, cols, numWin, players, tracked));
+    }
+
+    /**
+     * <p>
+     * This hides a window and empties it and its board, keeping both for the next game of the same shape.
+     * </p>
+     *
+     * @param view the window of the finished game
+     * @param model the board of the finished game
+     * @param players the number of players in the finished game
+     *
+     * @post [ view is hidden and empty, model is empty, and both are pooled; the least recently pooled
+     * window is disposed of and board dropped if a pool is full ]
+     */
+    static void release(ConnectXView view, IGameBoard model, int players) {
+        view.setVisible(false);
+        view.clear();
+        model.clear();
+        ConnectXView oldView = views.put(model.getNumRows() + "x" + model.getNumColumns(), view);
+        if (oldView != null) {
+            oldView.dispose();
+        }
+        models.put(modelKey(model.getNumRows(), model.getNumColumns(), model.getNumToWin(), players,
+                InstrumentedBoard.unwrap(model) instanceof ThreatTrackingBoard), model);
+        if (views.size() > MAX_VIEWS) {
+            Iterator<ConnectXView> eldest = views.values().iterator();
+            eldest.next().dispose();
+            eldest.remove();
+        }
+        if (models.size() > MAX_MODELS) {
+            Iterator<IGameBoard> eldest = models.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static String modelKey(int rows, int cols, int numWin, int players, boolean tracked) {
+        return rows + "x" + cols + "/" + numWin + "/" + players + (tracked ? "/tracked" : "");
+    }
+}
\ No newline at end of file
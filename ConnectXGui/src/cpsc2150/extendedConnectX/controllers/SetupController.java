@@ -1,20 +1,24 @@
 package cpsc2150.extendedConnectX.controllers;
 
+import cpsc2150.extendedConnectX.ai.*;
 import cpsc2150.extendedConnectX.models.*;
+import cpsc2150.extendedConnectX.records.*;
+import cpsc2150.extendedConnectX.simulation.BoardMetricsExporter;
 import cpsc2150.extendedConnectX.views.*;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 /**
  * This class is the controller for our setup screen. The {@code processButtonClick} method is called by
- * {@link SetupView} when someone clicks on the submit button. It is passed in the rows, cols, players and
- * the number to win by the view, but it still needs to validate that input. If there are any
+ * {@link SetupView} when someone clicks on the submit button. It is passed in the rows, cols, players,
+ * the number to win and the number of computer players by the view, but it still needs to validate that input. If there are any
  * errors it can use the displayError method in the SetupView class to inform the player of the
  * error, then wait for them to fix it and resubmit.
  * <p>
- * If there are no errors it will create a new {@link IGameBoard} object (the implementation will depend on
- * the size of the game board) to serve as the model, and the {@link ConnectXController} and {@link ConnectXView}.
+ * If there are no errors it will create a new {@link IGameBoard} object (the implementation is chosen by
+ * {@link GameBoardFactory} from the shape of the game) to serve as the model, and the {@link ConnectXController} and {@link ConnectXView}.
  * Control is then passed over the the event dispatch thread that will wait for an event to occur
- * <p>
- * No changes need to be made to this class.
  * 
  * @version 2.0
  */
@@ -29,15 +33,41 @@ public class SetupController {
 
     /**
      * <p>
-     * Constants for minimum size, maximum size, minimum number of
-     * tokens required to win and the board cutoff for automatically
-     * choosing between Gameboard and GameboardMem.
+     * Time each computer player may think about a move, in milliseconds. Can be changed with the
+     * connectx.computerMillis system property.
+     * </p>
+     */
+    private final long COMPUTER_MOVE_MILLIS = Long.getLong("connectx.computerMillis", 1000);
+
+    /**
+     * <p>
+     * The journal every game of this run saves its moves to, opened by the first game; null if it could not be
+     * opened or saving is turned off with the connectx.journal system property.
+     * </p>
+     */
+    private static MoveJournal journal;
+
+    /**
+     * <p>
+     * Whether opening the journal has been tried.
      * </p>
      */
-    private final int MAX_SIZE = 20;
-    private final int MIN_SIZE = 3;
-    private final int MIN_TO_WIN = 3;
-    private final int BOARD_CUTOFF = 100;
+    private static boolean journalTried;
+
+    /**
+     * <p>
+     * Directory board metrics are exported to, from the connectx.metrics system property; null to not measure the
+     * boards.
+     * </p>
+     */
+    private static final String METRICS_DIRECTORY = System.getProperty("connectx.metrics");
+
+    /**
+     * <p>
+     * The exporter writing board metrics snapshots, started by the first game when METRICS_DIRECTORY is set.
+     * </p>
+     */
+    private static BoardMetricsExporter metricsExporter;
 
     /**
      * <p>
@@ -64,45 +94,146 @@ public class SetupController {
      *      Number of players for this game
      * @param numWin
      *      Number of tokens in a row required to win
+     * @param computers
+     *      Number of players, counted from the last in turn order, played by the computer
      */
-    public void processButtonClick(int rows, int cols, int players, int numWin) {
-        String errorMsg = "";
-        if (rows < MIN_SIZE || rows > MAX_SIZE) {
-            errorMsg += "Rows must be between " + MIN_SIZE + " and " + MAX_SIZE;
-        }
+    public void processButtonClick(int rows, int cols, int players, int numWin, int computers) {
+        // the size and number to win rules are shared with the game server
+        String errorMsg = GameEngine.checkSettings(rows, cols, players, numWin);
 
-        if (cols < MIN_SIZE || cols > MAX_SIZE) {
-            errorMsg += "Columns must be between " + MIN_SIZE + " and " + MAX_SIZE;
-        }
-
-        if (numWin > rows) {
-            errorMsg += "Can't have more to win than the number of rows";
-        }
-        if (numWin > cols) {
-            errorMsg += "Can't have more to win than the number of columns";
-        }
-
-        if (numWin < MIN_TO_WIN) {
-            errorMsg += "Number to win must be at least " + MIN_TO_WIN;
+        if (computers >= players) {
+            errorMsg += "At least one player must be human";
         }
 
         if (!errorMsg.equals("")) {
             view.displayError(errorMsg);
         } else {
             view.closeScreen();
-            IGameBoard model;
-            
-            // if the board is too big we'll want the memory efficient version
-            if (rows * cols > BOARD_CUTOFF) {
-                model = new GameBoardMem(rows, cols, numWin);
-            } else {
-                model = new GameBoard(rows, cols, numWin);
+            // windows and boards of earlier games of the same size are reused instead of built again
+            IGameBoard model = GamePool.takeModel(rows, cols, numWin, players, computers > 0);
+            if (model == null) {
+                // the factory picks the implementation with the least heap that still meets the move latency target
+                model = GameBoardFactory.getDefault().makeBoard(rows, cols, players, numWin);
+                if (computers > 0) {
+                    // the computer scores positions in constant time from window counts kept up to date on every move
+                    model = new ThreatTrackingBoard(model);
+                }
+                if (METRICS_DIRECTORY != null && startMetricsExporter()) {
+                    // outermost, so every call the game and the computer make on the board is counted and timed
+                    model = new InstrumentedBoard(model);
+                }
             }
 
-            ConnectXView tview = new ConnectXView(rows, cols);
-            ConnectXController tcontroller = new ConnectXController(model, tview, players);
+            ConnectXView tview = GamePool.takeView(rows, cols);
+            if (tview == null) {
+                tview = new ConnectXView(rows, cols);
+            }
+            IMoveEngine engine = computers > 0 ? new NegamaxEngine(COMPUTER_MOVE_MILLIS) : null;
+            if (engine != null) {
+                engine = withOpeningBook(engine, rows, cols, numWin, players);
+                if (players == 2) {
+                    engine = withTablebase(engine, rows, cols, numWin);
+                }
+            }
+            ConnectXController tcontroller = new ConnectXController(model, tview, players, computers, engine,
+                    journal());
 
             tview.registerObserver(tcontroller);
+            tcontroller.start();
+        }
+    }
+
+    /**
+     * Plays the opening from a book generated by {@link OpeningBookGenerator} for this game, if one is in
+     * {@link OpeningBook#DEFAULT_DIRECTORY}
+     *
+     * @param engine
+     *      The computer player
+     * @param rows
+     *      Number of rows in the game board
+     * @param cols
+     *      Number of columns in the game board
+     * @param numWin
+     *      Number of tokens in a row required to win
+     * @param players
+     *      Number of players for this game
+     *
+     * @return engine answering from the book first, or engine itself when there is no usable book
+     */
+    private IMoveEngine withOpeningBook(IMoveEngine engine, int rows, int cols, int numWin, int players) {
+        try {
+            OpeningBook book = OpeningBook.find(Paths.get(OpeningBook.DEFAULT_DIRECTORY), rows, cols, numWin, players);
+            return book == null ? engine : new BookEngine(book, engine);
+        } catch (IOException e) {
+            // a damaged book only costs search time, so the game goes on without it
+            return engine;
+        }
+    }
+
+    /**
+     * Starts exporting board metrics to METRICS_DIRECTORY the first time it is needed, every connectx.metricsMillis
+     * milliseconds (10 seconds by default)
+     *
+     * @return true if the exporter is running
+     */
+    private static synchronized boolean startMetricsExporter() {
+        if (metricsExporter == null) {
+            try {
+                metricsExporter = new BoardMetricsExporter(Paths.get(METRICS_DIRECTORY),
+                        Long.getLong("connectx.metricsMillis", 10_000));
+            } catch (IOException e) {
+                // measuring is optional, the game is not
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens the journal in {@link MoveJournal#DEFAULT_DIRECTORY} the first time it is needed
+     *
+     * @return the journal, or null if games are not saved
+     */
+    private static synchronized MoveJournal journal() {
+        if (!journalTried) {
+            journalTried = true;
+            if (Boolean.parseBoolean(System.getProperty("connectx.journal", "true"))) {
+                try {
+                    journal = new MoveJournal(Paths.get(MoveJournal.DEFAULT_DIRECTORY));
+                } catch (IOException e) {
+                    // games can still be played, they are just not saved
+                    journal = null;
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Plays perfectly from a tablebase generated by {@link TablebaseGenerator} for this shape, if one is in
+     * {@link OpeningBook#DEFAULT_DIRECTORY}
+     *
+     * @param engine
+     *      The computer player
+     * @param rows
+     *      Number of rows in the game board
+     * @param cols
+     *      Number of columns in the game board
+     * @param numWin
+     *      Number of tokens in a row required to win
+     *
+     * @return engine answering from the tablebase, or engine itself when there is no usable tablebase
+     */
+    private IMoveEngine withTablebase(IMoveEngine engine, int rows, int cols, int numWin) {
+        if (!Tablebase.fits(rows, cols)) {
+            return engine;
+        }
+        try {
+            Tablebase tablebase = Tablebase.find(Paths.get(OpeningBook.DEFAULT_DIRECTORY), rows, cols, numWin);
+            return tablebase == null ? engine : new TablebaseEngine(tablebase, engine);
+        } catch (IOException e) {
+            // as with a book, the game goes on with the search alone
+            return engine;
         }
     }
 }
\ No newline at end of file
@@ -1,10 +1,147 @@
 package cpsc2150.extendedConnectX.models;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
 /**
  * An abstract class for providing classes implementing the IGameBoard interface with
- * an appropriate and general toString method
+ * an appropriate and general toString method, incrementally updated Zobrist keys of the board and its mirror
+ * image and the move history.
+ * <p>
+ * The text of the board is built the first time it is asked for and from then on kept up to date by the
+ * placeToken and removeToken hooks, one character per move, so rendering after every move costs a copy of the
+ * text rather than a whatsAtPos call per cell. Clearing the board drops the text, so a board reused from a pool
+ * holds only its tokens until it is rendered again.
+ * @invariants zobristKey = [XOR of ZobristKeys.keyFor(row, column, token) over every occupied cell] AND
+ *             mirroredKey = [XOR of ZobristKeys.keyFor(row, numColumns - 1 - column, token) over every occupied
+ *             cell] AND
+ *             0 <= numMoves AND [history[0..numMoves-1] are the columns of the tokens on the board in the
+ *             order they were placed] AND [rendering = null OR rendering holds the text of toString]
  */
 public abstract class AbsGameBoard implements IGameBoard {
+    private long zobristKey = 0;
+    private long mirroredKey = 0;
+    private int[] history = new int[16];
+    private int numMoves = 0;
+    private char[] rendering;
+    private int headerLength;
+    private int lineLength;
+
+    @Override
+    //Overridden because the key is kept up to date by placeToken and removeToken
+    public long getZobristKey()
+    {
+        return zobristKey;
+    }
+
+    @Override
+    //Overridden because the key is kept up to date by placeToken and removeToken
+    public long getMirroredKey()
+    {
+        return mirroredKey;
+    }
+
+    public int getNumMoves()
+    {
+        return numMoves;
+    }
+
+    public int getMove(int i)
+    {
+        return history[i];
+    }
+
+    public int undoLastMove()
+    {
+        int c = history[numMoves - 1];
+        removeToken(c);
+        return c;
+    }
+
+    @Override
+    //Overridden so the text built for toString is dropped along with the tokens
+    public void clear()
+    {
+        IGameBoard.super.clear();
+        rendering = null;
+    }
+
+    public IGameBoard copy()
+    {
+        AbsGameBoard copy = newEmptyBoard();
+        int[] heights = new int[getNumColumns()];
+        //replaying the history in order gives the copy the same history and key
+        for(int move = 0; move < numMoves; move++)
+        {
+            int column = history[move];
+            copy.placeToken(whatsAtPos(heights[column]++, column), column);
+        }
+        return copy;
+    }
+
+    /**
+     * Creates an empty board of the same implementation and shape, used by copy
+     * @pre none
+     * @post self = #self AND [newEmptyBoard() = an empty board of the same class with the same rows, columns and win]
+     * @return Empty board
+     */
+    protected abstract AbsGameBoard newEmptyBoard();
+
+    /**
+     * Records a token being placed; implementations call this from placeToken
+     * @pre [token p was just placed on row, column]
+     * @post zobristKey = #zobristKey XOR ZobristKeys.keyFor(row, column, p) AND
+     *       mirroredKey = #mirroredKey XOR ZobristKeys.keyFor(row, numColumns - 1 - column, p) AND
+     *       [column is pushed onto the move history]
+     * @param row row of the cell
+     * @param column column of the cell
+     * @param p token placed
+     */
+    protected void tokenPlaced(int row, int column, char p)
+    {
+        zobristKey ^= ZobristKeys.keyFor(row, column, p);
+        mirroredKey ^= ZobristKeys.keyFor(row, getNumColumns() - 1 - column, p);
+        if(rendering != null)
+        {
+            rendering[cellOffset(row, column)] = p;
+        }
+        if(numMoves == history.length)
+        {
+            history = Arrays.copyOf(history, numMoves * 2);
+        }
+        history[numMoves++] = column;
+    }
+
+    /**
+     * Records a token being removed; implementations call this from removeToken
+     * @pre [token p was just removed from the top of column, at row]
+     * @post zobristKey = #zobristKey XOR ZobristKeys.keyFor(row, column, p) AND
+     *       mirroredKey = #mirroredKey XOR ZobristKeys.keyFor(row, numColumns - 1 - column, p) AND
+     *       [the latest move in column is taken out of the move history]
+     * @param row row of the cell
+     * @param column column of the cell
+     * @param p token removed
+     */
+    protected void tokenRemoved(int row, int column, char p)
+    {
+        zobristKey ^= ZobristKeys.keyFor(row, column, p);
+        mirroredKey ^= ZobristKeys.keyFor(row, getNumColumns() - 1 - column, p);
+        if(rendering != null)
+        {
+            rendering[cellOffset(row, column)] = ' ';
+        }
+        //Almost always the last move, so this only searches when a column other than the last is taken back
+        int move = numMoves - 1;
+        while(history[move] != column)
+        {
+            move--;
+        }
+        System.arraycopy(history, move + 1, history, move, numMoves - move - 1);
+        numMoves--;
+    }
+
     /**
      * Converts board into a string
      * @pre none
@@ -21,27 +158,72 @@ public abstract class AbsGameBoard implements IGameBoard {
     @Override
     public String toString()
     {
-        String returnString = "";
-        for(int column = 0; column < this.getNumColumns(); column++)
+        return new String(rendering());
+    }
+
+    @Override
+    //Overridden because the cached text can be written as it is
+    public void appendTo(Appendable out) throws IOException
+    {
+        char[] text = rendering();
+        if(out instanceof Writer)
+        {
+            ((Writer) out).write(text);
+        }
+        else if(out instanceof StringBuilder)
+        {
+            ((StringBuilder) out).append(text);
+        }
+        else
         {
-            if(column < 10)
+            out.append(CharBuffer.wrap(text));
+        }
+    }
+
+    /**
+     * Gets the text of the board, building it on first use
+     * @post [rendering() = rendering, the text of toString]
+     */
+    private char[] rendering()
+    {
+        if(rendering == null)
+        {
+            StringBuilder header = new StringBuilder();
+            for(int column = 0; column < getNumColumns(); column++)
             {
-                returnString += "| " + column;
+                header.append(column < 10 ? "| " : "|").append(column);
             }
-            else
+            header.append("|\n");
+            headerLength = header.length();
+            lineLength = 3 * getNumColumns() + 2;
+            char[] text = new char[headerLength + getNumRows() * lineLength];
+            header.getChars(0, headerLength, text, 0);
+            for(int line = headerLength; line < text.length; line += lineLength)
             {
-                returnString += "|" + column;
+                for(int i = 0; i < lineLength - 2; i += 3)
+                {
+                    text[line + i] = '|';
+                    text[line + i + 1] = ' ';
+                    text[line + i + 2] = ' ';
+                }
+                text[line + lineLength - 2] = '|';
+                text[line + lineLength - 1] = '\n';
             }
-        }
-        returnString += "|\n";
-        for(int row = this.getNumRows() - 1; row >= 0; row--)
-        {
-            for(int column = 0; column < this.getNumColumns(); column++)
+            //only the occupied cells need a token, found by replaying the history like copy does
+            int[] heights = new int[getNumColumns()];
+            for(int move = 0; move < numMoves; move++)
             {
-                returnString += "|" + whatsAtPos(new BoardPosition(row, column)) + " ";
+                int column = history[move];
+                int row = heights[column]++;
+                text[cellOffset(row, column)] = whatsAtPos(row, column);
             }
-            returnString += "|\n";
+            rendering = text;
         }
-        return returnString;
+        return rendering;
+    }
+
+    private int cellOffset(int row, int column)
+    {
+        return headerLength + (getNumRows() - 1 - row) * lineLength + 3 * column + 1;
     }
 }
@@ -0,0 +1,389 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call counts and latency histograms of the IGameBoard calls made through InstrumentedBoard, kept per board
+ * implementation and shape so the implementations and calls that dominate move time can be compared.
+ * <p>
+ * Every InstrumentedBoard of the same implementation and shape shares one BoardMetrics, so the boards of every
+ * game and every thread add up. Each call's latency goes into a log2 histogram of LongAdders: bucket 0 holds
+ * calls of 0 ns and bucket b holds calls of 2^(b-1) to 2^b - 1 ns, so a percentile read back is at most twice
+ * the true value. Recording never locks or allocates, and reading while boards are in use gives a snapshot
+ * that is at most a few calls out of date.
+ * <p>
+ * Recording is switched on and off for every board at once with setEnabled; while it is off an instrumented
+ * call costs one volatile read more than the call itself. A timed call also pays for two System.nanoTime calls,
+ * which is more than the cheapest calls such as whatsAtPos take themselves, so their latencies are upper bounds.
+ * With a sample interval of n above 1, each board times about one call in n, at random gaps so no pattern of
+ * calls is always skipped, and records it as n calls; counts and totals are then estimates, and recording costs
+ * about 1/n as much.
+ * @invariants [every bucket count and total is >= 0] AND [the metrics of an implementation and shape are
+ *             registered once]
+ */
+public class BoardMetrics {
+    /**
+     * The board calls that are measured
+     */
+    public enum Operation {
+        PLACE_TOKEN("placeToken"),
+        REMOVE_TOKEN("removeToken"),
+        CHECK_FOR_WIN("checkForWin"),
+        CHECK_TIE("checkTie"),
+        WHATS_AT_POS("whatsAtPos"),
+        CHECK_IF_FREE("checkIfFree");
+
+        private final String methodName;
+
+        Operation(String methodName)
+        {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() { return methodName; }
+    }
+
+    /**
+     * Number of histogram buckets; bucket 64 holds latencies of 2^63 ns and up
+     */
+    public static final int BUCKETS = 65;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final ConcurrentHashMap<String, BoardMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private static int configuredInterval = Math.max(1, Integer.getInteger("connectx.metrics.sampleInterval", 1));
+    //read on every instrumented call, so kept as a bare static field; 0 while recording is off
+    static volatile int sampleInterval =
+            Boolean.parseBoolean(System.getProperty("connectx.metrics.enabled", "true")) ? configuredInterval : 0;
+
+    private final String implementation;
+    private final int rows;
+    private final int columns;
+    private final int numToWin;
+    //buckets[operation][bucket]
+    private final LongAdder[][] buckets = new LongAdder[OPERATIONS.length][BUCKETS];
+    private final LongAdder[] totalNanos = new LongAdder[OPERATIONS.length];
+
+    private BoardMetrics(String implementation, int rows, int columns, int numToWin)
+    {
+        this.implementation = implementation;
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        for(int operation = 0; operation < OPERATIONS.length; operation++)
+        {
+            totalNanos[operation] = new LongAdder();
+            for(int bucket = 0; bucket < BUCKETS; bucket++)
+            {
+                buckets[operation][bucket] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Gets the metrics of an implementation and shape, registering them the first time
+     * @pre implementation != null
+     * @post [of() = the one BoardMetrics registered for implementation, rows, columns and numToWin]
+     * @param implementation name of the board implementation
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @return shared metrics
+     */
+    public static BoardMetrics of(String implementation, int rows, int columns, int numToWin)
+    {
+        return REGISTRY.computeIfAbsent(implementation + " " + rows + "x" + columns + " " + numToWin,
+                key -> new BoardMetrics(implementation, rows, columns, numToWin));
+    }
+
+    /**
+     * Gets the metrics of a board's implementation and shape
+     * @pre board != null
+     * @post board = #board AND [of() = of(simple class name of board, its rows, columns and numToWin), where a
+     *       ThreatTrackingBoard is named after the board it wraps as well, e.g. ThreatTrackingBoard/GameBoardBit]
+     * @param board board to be measured
+     * @return shared metrics
+     */
+    public static BoardMetrics of(IGameBoard board)
+    {
+        return of(implementationName(board), board.getNumRows(), board.getNumColumns(), board.getNumToWin());
+    }
+
+    private static String implementationName(IGameBoard board)
+    {
+        if(board instanceof ThreatTrackingBoard)
+        {
+            //its win check is its own but everything else is the wrapped board's, so both are named
+            return "ThreatTrackingBoard/" + implementationName(((ThreatTrackingBoard) board).getBoard());
+        }
+        return board.getClass().getSimpleName();
+    }
+
+    /**
+     * Gets every registered implementation and shape
+     * @post [all() = a new list of every registered BoardMetrics, by implementation, then rows, columns and
+     *       numToWin]
+     * @return registered metrics
+     */
+    public static List<BoardMetrics> all()
+    {
+        List<BoardMetrics> all = new ArrayList<>(REGISTRY.values());
+        all.sort(Comparator.comparing(BoardMetrics::getImplementation).thenComparingInt(BoardMetrics::getNumRows)
+                .thenComparingInt(BoardMetrics::getNumColumns).thenComparingInt(BoardMetrics::getNumToWin));
+        return all;
+    }
+
+    /**
+     * Turns recording on or off for every instrumented board
+     * @post isEnabled() = on
+     * @param on whether calls are recorded
+     */
+    public static synchronized void setEnabled(boolean on)
+    {
+        sampleInterval = on ? configuredInterval : 0;
+    }
+
+    public static boolean isEnabled() { return sampleInterval != 0; }
+
+    /**
+     * Sets how many calls each timed call stands for
+     * @pre interval >= 1
+     * @post getSampleInterval() = interval AND isEnabled() = #isEnabled()
+     * @param interval 1 to time every call, n to time about one call in n
+     */
+    public static synchronized void setSampleInterval(int interval)
+    {
+        configuredInterval = interval;
+        if(sampleInterval != 0)
+        {
+            sampleInterval = interval;
+        }
+    }
+
+    public static synchronized int getSampleInterval() { return configuredInterval; }
+
+    /**
+     * Empties every registered histogram
+     * @post [every count and total is 0; calls being recorded meanwhile may or may not be kept]
+     */
+    public static void resetAll()
+    {
+        for(BoardMetrics metrics : REGISTRY.values())
+        {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Records one timed call standing for weight calls
+     * @pre nanos >= 0 AND weight >= 1
+     * @post [the bucket of nanos for operation is weight higher] AND [totalNanos of operation is nanos * weight
+     *       higher]
+     */
+    void record(Operation operation, long nanos, int weight)
+    {
+        int index = operation.ordinal();
+        buckets[index][64 - Long.numberOfLeadingZeros(nanos)].add(weight);
+        totalNanos[index].add(nanos * weight);
+    }
+
+    /**
+     * Empties this implementation and shape's histograms
+     * @post [every count and total is 0; calls being recorded meanwhile may or may not be kept]
+     */
+    public void reset()
+    {
+        for(int operation = 0; operation < OPERATIONS.length; operation++)
+        {
+            totalNanos[operation].reset();
+            for(LongAdder bucket : buckets[operation])
+            {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * Gets how many calls of an operation were recorded
+     * @post [getCalls() = sum of the buckets of operation]
+     * @param operation call to count
+     * @return number of calls
+     */
+    public long getCalls(Operation operation)
+    {
+        long calls = 0;
+        for(LongAdder bucket : buckets[operation.ordinal()])
+        {
+            calls += bucket.sum();
+        }
+        return calls;
+    }
+
+    public long getTotalNanos(Operation operation) { return totalNanos[operation.ordinal()].sum(); }
+
+    /**
+     * Gets the number of calls in one histogram bucket
+     * @pre 0 <= bucket < BUCKETS
+     * @post [getBucket() = calls of operation that took 2^(bucket-1) to 2^bucket - 1 ns, or 0 ns for bucket 0]
+     * @param operation call to read
+     * @param bucket bucket to read
+     * @return calls in the bucket
+     */
+    public long getBucket(Operation operation, int bucket)
+    {
+        return buckets[operation.ordinal()][bucket].sum();
+    }
+
+    /**
+     * Reads a percentile of an operation's latency
+     * @pre 0 <= percent <= 100
+     * @post [getPercentile() = highest latency of the bucket holding the call at percent, or 0 if there are no
+     *       calls]
+     * @param operation call to read
+     * @param percent the percentile, such as 99.9
+     * @return latency in nanoseconds that percent of the calls are at or below
+     */
+    public long getPercentile(Operation operation, double percent)
+    {
+        long[] counts = new long[BUCKETS];
+        long calls = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            counts[bucket] = getBucket(operation, bucket);
+            calls += counts[bucket];
+        }
+        long rank = (long) Math.ceil(percent / 100 * calls);
+        long seen = 0;
+        for(int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += counts[bucket];
+            if(seen >= rank && seen > 0)
+            {
+                return bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+            }
+        }
+        return 0;
+    }
+
+    public String getImplementation() { return implementation; }
+
+    public int getNumRows() { return rows; }
+
+    public int getNumColumns() { return columns; }
+
+    public int getNumToWin() { return numToWin; }
+
+    /**
+     * Writes every registered implementation and shape as a table, each call with its share of the time spent in
+     * the measured calls of its board
+     * @pre out != null
+     * @post [one heading line per implementation and shape with calls recorded, then one line per call with
+     *       calls recorded giving calls, total time, share, mean and the 50th, 99th and 99.9th percentiles, are
+     *       appended to out]
+     * @param out where to write
+     * @throws IOException if out cannot be written
+     */
+    public static void writeText(Appendable out) throws IOException
+    {
+        for(BoardMetrics metrics : all())
+        {
+            long boardNanos = 0;
+            long boardCalls = 0;
+            for(Operation operation : OPERATIONS)
+            {
+                boardNanos += metrics.getTotalNanos(operation);
+                boardCalls += metrics.getCalls(operation);
+            }
+            if(boardCalls == 0)
+            {
+                continue;
+            }
+            out.append(String.format("%s %dx%d, %d to win: %d calls, %.3f ms%n", metrics.implementation,
+                    metrics.rows, metrics.columns, metrics.numToWin, boardCalls, boardNanos / 1e6));
+            out.append(String.format("  %-12s %12s %12s %7s %10s %10s %10s %10s%n", "call", "calls", "ms",
+                    "share", "mean ns", "p50 ns", "p99 ns", "p99.9 ns"));
+            for(Operation operation : OPERATIONS)
+            {
+                long calls = metrics.getCalls(operation);
+                if(calls == 0)
+                {
+                    continue;
+                }
+                long nanos = metrics.getTotalNanos(operation);
+                out.append(String.format("  %-12s %12d %12.3f %6.1f%% %10.1f %10d %10d %10d%n",
+                        operation.getMethodName(), calls, nanos / 1e6,
+                        boardNanos == 0 ? 0.0 : 100.0 * nanos / boardNanos, (double) nanos / calls,
+                        metrics.getPercentile(operation, 50), metrics.getPercentile(operation, 99),
+                        metrics.getPercentile(operation, 99.9)));
+            }
+        }
+    }
+
+    /**
+     * Gets the header line of writeCsv
+     * @post [csvHeader() = the column names of writeCsv, comma separated, without a line break]
+     * @return header line
+     */
+    public static String csvHeader()
+    {
+        StringBuilder header = new StringBuilder("timestamp_ms,implementation,rows,columns,num_to_win,call,calls,"
+                + "total_ns,mean_ns,p50_ns,p99_ns,p999_ns");
+        for(int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            header.append(",le_").append(bucket == 64 ? "max" : Long.toString((1L << bucket) - 1));
+        }
+        return header.toString();
+    }
+
+    /**
+     * Writes every registered call with calls recorded as CSV rows, without a header
+     * @pre out != null
+     * @post [one row per implementation, shape and call with calls recorded, in the columns of csvHeader(), is
+     *       appended to out]
+     * @param out where to write
+     * @param timestampMillis time the rows are stamped with, such as System.currentTimeMillis()
+     * @throws IOException if out cannot be written
+     */
+    public static void writeCsv(Appendable out, long timestampMillis) throws IOException
+    {
+        StringBuilder row = new StringBuilder();
+        for(BoardMetrics metrics : all())
+        {
+            for(Operation operation : OPERATIONS)
+            {
+                long calls = metrics.getCalls(operation);
+                if(calls == 0)
+                {
+                    continue;
+                }
+                long nanos = metrics.getTotalNanos(operation);
+                row.setLength(0);
+                row.append(timestampMillis).append(',').append(metrics.implementation).append(',')
+                        .append(metrics.rows).append(',').append(metrics.columns).append(',')
+                        .append(metrics.numToWin).append(',').append(operation.getMethodName()).append(',')
+                        .append(calls).append(',').append(nanos).append(',')
+                        .append(String.format(Locale.ROOT, "%.1f", (double) nanos / calls)).append(',')
+                        .append(metrics.getPercentile(operation, 50)).append(',')
+                        .append(metrics.getPercentile(operation, 99)).append(',')
+                        .append(metrics.getPercentile(operation, 99.9));
+                for(int bucket = 0; bucket < BUCKETS; bucket++)
+                {
+                    row.append(',').append(metrics.getBucket(operation, bucket));
+                }
+                out.append(row).append(System.lineSeparator());
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return implementation + " " + rows + "x" + columns + ", " + numToWin + " to win";
+    }
+}
@@ -59,6 +59,17 @@ public class BoardPosition {
         }
     }
 
+    /**
+     * Returns a hash code consistent with equals
+     * @post row = #row AND column = #column AND [hashCode() = 31 * row + column]
+     * @return hash code of this BoardPosition
+     */
+    @Override
+    public int hashCode()
+    {
+        return 31 * row + column;
+    }
+
     /**
      * Returns a string representation of the object in the form <row>,<column>
      * @post row = #row AND column = #column AND [toString() = row and column in
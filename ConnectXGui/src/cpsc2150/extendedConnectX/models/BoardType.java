@@ -0,0 +1,101 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * The IGameBoard implementations a GameBoardFactory can build, with an estimate of how much heap each one
+ * uses for a given board shape.
+ */
+public enum BoardType {
+    /**
+     * GameBoard, a full char grid
+     */
+    FAST
+    {
+        public IGameBoard make(int rows, int columns, int numToWin)
+        {
+            return new GameBoard(rows, columns, numToWin);
+        }
+
+        public long estimateBytes(int rows, int columns, int players, double fill)
+        {
+            return OBJECT_BYTES + arrayBytes(rows, 4) + rows * arrayBytes(columns, 2) + arrayBytes(columns, 4);
+        }
+    },
+    /**
+     * GameBoardMem, a hash table holding only the occupied cells
+     */
+    MEM
+    {
+        public IGameBoard make(int rows, int columns, int numToWin)
+        {
+            return new GameBoardMem(rows, columns, numToWin);
+        }
+
+        public long estimateBytes(int rows, int columns, int players, double fill)
+        {
+            //the table doubles whenever it passes half full, starting at 16 slots
+            long tokens = Math.round(fill * rows * columns);
+            long capacity = 16;
+            while(capacity < 2 * tokens)
+            {
+                capacity *= 2;
+            }
+            return OBJECT_BYTES + arrayBytes(capacity, 4) + arrayBytes(capacity, 1)
+                    + arrayBytes(Math.max(2, players), 2) + arrayBytes(columns, 4);
+        }
+    },
+    /**
+     * GameBoardBit, one packed bitset per player
+     */
+    BIT
+    {
+        public IGameBoard make(int rows, int columns, int numToWin)
+        {
+            return new GameBoardBit(rows, columns, numToWin);
+        }
+
+        public long estimateBytes(int rows, int columns, int players, double fill)
+        {
+            long words = ((long) (rows + 1) * columns + 63) / 64;
+            int slots = 2;
+            while(slots < players)
+            {
+                slots *= 2;
+            }
+            return OBJECT_BYTES + arrayBytes(slots, 4) + slots * arrayBytes(words, 8)
+                    + arrayBytes(slots, 2) + arrayBytes(columns, 4);
+        }
+    };
+
+    private static final long OBJECT_BYTES = 48;
+    private static final long ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * Creates an empty board of this type
+     * @pre 3 <= rows <= 100 AND 3 <= columns <= 100 AND 3 <= numToWin <= 25 AND
+     *      numToWin <= rows AND numToWin <= columns
+     * @post [make() = an empty rows x columns board of this type]
+     * @param rows number of rows the game board will have
+     * @param columns number of columns the game board will have
+     * @param numToWin number of pieces in a row needed to win
+     * @return the new board
+     */
+    public abstract IGameBoard make(int rows, int columns, int numToWin);
+
+    /**
+     * Estimates the heap used by a board of this type
+     * @pre rows > 0 AND columns > 0 AND players > 0 AND 0 <= fill <= 1
+     * @post [estimateBytes() = approximate bytes held by a board of this type with fill * rows * columns tokens,
+     *       not counting the text a board keeps after toString until it is cleared]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param players number of players
+     * @param fill expected fraction of the board that is occupied
+     * @return estimated heap bytes
+     */
+    public abstract long estimateBytes(int rows, int columns, int players, double fill);
+
+    private static long arrayBytes(long length, int elementBytes)
+    {
+        return (ARRAY_HEADER_BYTES + length * elementBytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,303 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Chooses the board implementation that uses the least heap while its predicted p99 move latency stays
+ * under a target. If no implementation meets the target, the one with the lowest predicted latency is used.
+ * <p>
+ * Move latency (placeToken + checkForWin + checkTie) is measured for every BoardType on square boards of
+ * the CALIBRATION_SIZES, either at startup through calibrate or ahead of time and loaded from a profile
+ * written by save. Latency for other shapes is interpolated on the side of the square with the same number
+ * of cells. Heap use comes from BoardType.estimateBytes at the expected fill.
+ * @invariants latencyTargetNanos > 0 AND 0 <= expectedFill <= 1 AND
+ *             p99Nanos.length = [number of BoardTypes] AND
+ *             [each p99Nanos[t].length = CALIBRATION_SIZES.length]
+ */
+public class CostModelBoardStrategy implements IBoardStrategy {
+    /**
+     * Side lengths of the square boards latency is measured on
+     */
+    public static final int[] CALIBRATION_SIZES = {5, 10, 20, 50, 100};
+    /**
+     * Moves timed per board type and calibration size in one repetition; enough that the p99 is a percentile
+     * of hundreds of slow moves rather than the single slowest one
+     */
+    public static final int DEFAULT_CALIBRATION_MOVES = 10_000;
+    /**
+     * Repetitions of every measurement; the median p99 of them is used
+     */
+    public static final int CALIBRATION_REPETITIONS = 5;
+    //untimed passes over every board type and size before anything is measured
+    private static final int WARMUP_PASSES = 3;
+
+    private long[][] p99Nanos;
+    private long latencyTargetNanos;
+    private double expectedFill;
+
+    /**
+     * Constructs a strategy from measured latencies
+     * @pre p99Nanos[t][s] = p99 move latency of BoardType.values()[t] on a CALIBRATION_SIZES[s] square board AND
+     *      latencyTargetNanos > 0 AND 0 <= expectedFill <= 1
+     * @post [this strategy predicts with a copy of p99Nanos] AND this.latencyTargetNanos = latencyTargetNanos AND
+     *       this.expectedFill = expectedFill
+     * @param p99Nanos measured p99 move latency per board type and calibration size
+     * @param latencyTargetNanos p99 move latency every chosen board must stay under
+     * @param expectedFill fraction of the board expected to be filled, used to estimate heap
+     */
+    public CostModelBoardStrategy(long[][] p99Nanos, long latencyTargetNanos, double expectedFill)
+    {
+        this.p99Nanos = new long[p99Nanos.length][];
+        for(int type = 0; type < p99Nanos.length; type++)
+        {
+            this.p99Nanos[type] = Arrays.copyOf(p99Nanos[type], CALIBRATION_SIZES.length);
+        }
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.expectedFill = expectedFill;
+    }
+
+    public BoardType selectBoard(int rows, int columns, int players, int numToWin)
+    {
+        BoardType best = null;
+        long bestBytes = Long.MAX_VALUE;
+        BoardType fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for(BoardType type : BoardType.values())
+        {
+            long nanos = predictLatency(type, rows, columns);
+            if(nanos < fastestNanos)
+            {
+                fastest = type;
+                fastestNanos = nanos;
+            }
+            long bytes = type.estimateBytes(rows, columns, players, expectedFill);
+            if(nanos <= latencyTargetNanos && bytes < bestBytes)
+            {
+                best = type;
+                bestBytes = bytes;
+            }
+        }
+        return best != null ? best : fastest;
+    }
+
+    /**
+     * Predicts the p99 move latency of a board type
+     * @pre rows > 0 AND columns > 0
+     * @post self = #self AND [predictLatency() = p99 latency interpolated between the two calibration sizes
+     *       around sqrt(rows * columns), clamped to the smallest and largest size]
+     * @param type board type
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return predicted p99 move latency in nanoseconds
+     */
+    public long predictLatency(BoardType type, int rows, int columns)
+    {
+        long[] measured = p99Nanos[type.ordinal()];
+        double side = Math.sqrt((double) rows * columns);
+        if(side <= CALIBRATION_SIZES[0])
+        {
+            return measured[0];
+        }
+        for(int size = 1; size < CALIBRATION_SIZES.length; size++)
+        {
+            if(side <= CALIBRATION_SIZES[size])
+            {
+                double t = (side - CALIBRATION_SIZES[size - 1]) / (CALIBRATION_SIZES[size] - CALIBRATION_SIZES[size - 1]);
+                return Math.round(measured[size - 1] + t * (measured[size] - measured[size - 1]));
+            }
+        }
+        return measured[CALIBRATION_SIZES.length - 1];
+    }
+
+    /**
+     * Measures move latency for every board type by playing random two player games
+     * @pre latencyTargetNanos > 0 AND 0 <= expectedFill <= 1 AND movesPerSize > 0
+     * @post [calibrate() = a strategy built from the median over CALIBRATION_REPETITIONS of the p99 latency of
+     *       at least movesPerSize moves per board type and calibration size]
+     * @param latencyTargetNanos p99 move latency every chosen board must stay under
+     * @param expectedFill fraction of the board expected to be filled, used to estimate heap
+     * @param movesPerSize least number of moves timed per board type, calibration size and repetition
+     * @return calibrated strategy
+     */
+    public static CostModelBoardStrategy calibrate(long latencyTargetNanos, double expectedFill, int movesPerSize)
+    {
+        BoardType[] types = BoardType.values();
+        long[][] p99Nanos = new long[types.length][CALIBRATION_SIZES.length];
+        Random random = new Random(2150);
+        //untimed passes so the JIT has compiled the move path of every type before anything is measured
+        for(int pass = 0; pass < WARMUP_PASSES; pass++)
+        {
+            for(BoardType type : types)
+            {
+                for(int size : CALIBRATION_SIZES)
+                {
+                    timeMoves(type, size, movesPerSize, random);
+                }
+            }
+        }
+        //repetitions take turns across types, so a pause or a burst of load is spread instead of landing on one
+        long[][][] repetitions = new long[types.length][CALIBRATION_SIZES.length][CALIBRATION_REPETITIONS];
+        for(int repetition = 0; repetition < CALIBRATION_REPETITIONS; repetition++)
+        {
+            for(BoardType type : types)
+            {
+                for(int size = 0; size < CALIBRATION_SIZES.length; size++)
+                {
+                    repetitions[type.ordinal()][size][repetition] = timeMoves(type, CALIBRATION_SIZES[size],
+                            movesPerSize, random);
+                }
+            }
+        }
+        for(BoardType type : types)
+        {
+            for(int size = 0; size < CALIBRATION_SIZES.length; size++)
+            {
+                long[] measured = repetitions[type.ordinal()][size];
+                Arrays.sort(measured);
+                p99Nanos[type.ordinal()][size] = measured[measured.length / 2];
+            }
+        }
+        return new CostModelBoardStrategy(p99Nanos, latencyTargetNanos, expectedFill);
+    }
+
+    /**
+     * Loads measured latencies from a profile written by save
+     * @pre [profile is a properties file written by save] AND latencyTargetNanos > 0
+     * @post [load() = a strategy built from the latencies and expected fill stored in profile]
+     * @param profile path of the profile
+     * @param latencyTargetNanos p99 move latency every chosen board must stay under
+     * @return strategy using the stored latencies
+     * @throws IOException if the profile cannot be read, is missing a latency, or holds a value that is not a
+     *         number, a negative latency or an expected fill outside 0..1
+     */
+    public static CostModelBoardStrategy load(Path profile, long latencyTargetNanos) throws IOException
+    {
+        Properties properties = new Properties();
+        try(Reader reader = Files.newBufferedReader(profile))
+        {
+            properties.load(reader);
+        }
+        BoardType[] types = BoardType.values();
+        long[][] p99Nanos = new long[types.length][CALIBRATION_SIZES.length];
+        for(BoardType type : types)
+        {
+            for(int size = 0; size < CALIBRATION_SIZES.length; size++)
+            {
+                String key = type.name() + ".p99." + CALIBRATION_SIZES[size];
+                String value = properties.getProperty(key);
+                if(value == null)
+                {
+                    throw new IOException("Board profile " + profile + " is missing " + key);
+                }
+                p99Nanos[type.ordinal()][size] = parseLatency(profile, key, value);
+            }
+        }
+        String fill = properties.getProperty("expectedFill", "0.5");
+        double expectedFill;
+        try
+        {
+            expectedFill = Double.parseDouble(fill.trim());
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IOException("Board profile " + profile + " has expectedFill " + fill + ", not a number", e);
+        }
+        //also refuses NaN
+        if(!(expectedFill >= 0 && expectedFill <= 1))
+        {
+            throw new IOException("Board profile " + profile + " has expectedFill " + fill + ", outside 0..1");
+        }
+        return new CostModelBoardStrategy(p99Nanos, latencyTargetNanos, expectedFill);
+    }
+
+    /**
+     * Writes the measured latencies so they can be loaded later instead of calibrating again
+     * @pre none
+     * @post self = #self AND [profile holds the measured latencies and expected fill]
+     * @param profile path to write to
+     * @throws IOException if the profile cannot be written
+     */
+    public void save(Path profile) throws IOException
+    {
+        Properties properties = new Properties();
+        for(BoardType type : BoardType.values())
+        {
+            for(int size = 0; size < CALIBRATION_SIZES.length; size++)
+            {
+                properties.setProperty(type.name() + ".p99." + CALIBRATION_SIZES[size],
+                        Long.toString(p99Nanos[type.ordinal()][size]));
+            }
+        }
+        properties.setProperty("expectedFill", Double.toString(expectedFill));
+        try(Writer writer = Files.newBufferedWriter(profile))
+        {
+            properties.store(writer, "ConnectX board p99 move latency in nanoseconds");
+        }
+    }
+
+    /**
+     * Reads one latency of a profile
+     */
+    private static long parseLatency(Path profile, String key, String value) throws IOException
+    {
+        long nanos;
+        try
+        {
+            nanos = Long.parseLong(value.trim());
+        }
+        catch(NumberFormatException e)
+        {
+            throw new IOException("Board profile " + profile + " has " + key + " " + value + ", not a number", e);
+        }
+        if(nanos < 0)
+        {
+            throw new IOException("Board profile " + profile + " has " + key + " " + value + ", a negative latency");
+        }
+        return nanos;
+    }
+
+    public long getLatencyTargetNanos() { return latencyTargetNanos; }
+
+    public double getExpectedFill() { return expectedFill; }
+
+    /**
+     * Plays random games on one board type until at least moves moves are timed, and returns the p99 time of a
+     * move
+     */
+    private static long timeMoves(BoardType type, int size, int moves, Random random)
+    {
+        int numToWin = Math.min(size - 1, 5);
+        //the last game may run a whole board past moves
+        long[] samples = new long[moves + size * size];
+        int count = 0;
+        char[] tokens = {'X', 'O'};
+        while(count < moves)
+        {
+            IGameBoard board = type.make(size, size, numToWin);
+            int turn = 0;
+            boolean over = false;
+            while(!over)
+            {
+                int column = random.nextInt(size);
+                if(!board.checkIfFree(column))
+                {
+                    continue;
+                }
+                long start = System.nanoTime();
+                board.placeToken(tokens[turn], column);
+                over = board.checkForWin(column) || board.checkTie();
+                samples[count++] = System.nanoTime() - start;
+                turn = 1 - turn;
+            }
+        }
+        Arrays.sort(samples, 0, count);
+        return samples[Math.min(count - 1, (int) (count * 0.99))];
+    }
+}
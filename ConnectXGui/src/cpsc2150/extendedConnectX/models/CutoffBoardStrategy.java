@@ -0,0 +1,26 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * Chooses GameBoardMem when the board has more cells than a fixed cutoff and GameBoard otherwise.
+ * This is the rule SetupController always used, kept for when a calibrated cost model is not wanted.
+ * @invariants cutoff > 0
+ */
+public class CutoffBoardStrategy implements IBoardStrategy {
+    private int cutoff;
+
+    /**
+     * Constructs a strategy with the given cell cutoff
+     * @pre cutoff > 0
+     * @post this.cutoff = cutoff
+     * @param cutoff largest number of cells that still gets a GameBoard
+     */
+    public CutoffBoardStrategy(int cutoff)
+    {
+        this.cutoff = cutoff;
+    }
+
+    public BoardType selectBoard(int rows, int columns, int players, int numToWin)
+    {
+        return rows * columns > cutoff ? BoardType.MEM : BoardType.FAST;
+    }
+}
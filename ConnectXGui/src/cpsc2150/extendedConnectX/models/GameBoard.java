@@ -11,10 +11,12 @@ package cpsc2150.extendedConnectX.models;
  * @correspondences rows = numRows AND
  *                  columns = numColumns AND
  *                  win = numToWin AND
- *                  grid = board
+ *                  grid = board AND
+ *                  [heights[c] = number of occupied cells in column c]
  */
 public class GameBoard extends AbsGameBoard implements IGameBoard {
     private char[][] board;
+    private int[] heights;
     private int numRows;
     private int numColumns;
     private int numToWin;
@@ -39,6 +41,7 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
         numColumns = columns;
         this.numToWin = numToWin;
         board = new char[numRows][numColumns];
+        heights = new int[numColumns];
         for(int row = 0; row < numRows; row++)
         {
             for(int column = 0; column < numColumns; column++)
@@ -49,24 +52,32 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
     }
 
 
-    public void placeToken(char p, int c)
+    public int placeToken(char p, int c)
     {
-        for(int row = 0; row < numRows; row++)
-        {
-            if(board[row][c] == ' ')
-            {
-                board[row][c] = p;
-                return;
-            }
-        }
+        int row = heights[c]++;
+        board[row][c] = p;
+        tokenPlaced(row, c, p);
+        return row;
+    }
+
+    public void removeToken(int c)
+    {
+        int row = --heights[c];
+        tokenRemoved(row, c, board[row][c]);
+        board[row][c] = ' ';
+    }
+
+    public int getColumnHeight(int c)
+    {
+        return heights[c];
     }
     @Override
-    //Overridden because default must make many BoardPosition objects
+    //Overridden to read the column heights directly
     public boolean checkTie()
     {
-        for(int column = 0; column < getNumColumns(); column++)
+        for(int column = 0; column < numColumns; column++)
         {
-            if(board[numRows - 1][column] == ' ')
+            if(heights[column] < numRows)
             {
                 return false;
             }
@@ -75,18 +86,18 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
     }
 
     @Override
-    //Overridden because default must make many BoardPosition objects
-    public boolean checkHorizWin(BoardPosition pos, char p)
+    //Overridden to read the board array directly instead of through isPlayerAtPos
+    public boolean checkHorizWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while(pos.getColumn() + shift < numColumns && board[pos.getRow()][pos.getColumn() + shift] == p)
+        while(col + shift < numColumns && board[row][col + shift] == p)
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while(pos.getColumn() - shift >= 0 && board[pos.getRow()][pos.getColumn() - shift] == p)
+        while(col - shift >= 0 && board[row][col - shift] == p)
         {
             inRow++;
             shift++;
@@ -95,18 +106,18 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
     }
 
     @Override
-    //Overridden because default must make many BoardPosition objects
-    public boolean checkVertWin(BoardPosition pos, char p)
+    //Overridden to read the board array directly instead of through isPlayerAtPos
+    public boolean checkVertWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while(pos.getRow() + shift < numRows && board[pos.getRow() + shift][pos.getColumn()] == p)
+        while(row + shift < numRows && board[row + shift][col] == p)
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while(pos.getRow() - shift >= 0 && board[pos.getRow() - shift][pos.getColumn()] == p)
+        while(row - shift >= 0 && board[row - shift][col] == p)
         {
             inRow++;
             shift++;
@@ -115,20 +126,20 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
     }
 
     @Override
-    //Overridden because default must make many BoardPosition objects
-    public boolean checkDiagWin(BoardPosition pos, char p)
+    //Overridden to read the board array directly instead of through isPlayerAtPos
+    public boolean checkDiagWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while((pos.getRow() + shift < numRows && pos.getColumn() + shift < numColumns)
-                && board[pos.getRow() + shift][pos.getColumn() + shift] == p)
+        while((row + shift < numRows && col + shift < numColumns)
+                && board[row + shift][col + shift] == p)
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while((pos.getRow() - shift >= 0 && pos.getColumn() - shift >= 0)
-                && board[pos.getRow() - shift][pos.getColumn() - shift] == p)
+        while((row - shift >= 0 && col - shift >= 0)
+                && board[row - shift][col - shift] == p)
         {
             inRow++;
             shift++;
@@ -139,15 +150,15 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
         }
         inRow = 1;
         shift = 1;
-        while((pos.getRow() + shift < numRows && pos.getColumn() - shift >= 0)
-                && board[pos.getRow() + shift][pos.getColumn() - shift] == p)
+        while((row + shift < numRows && col - shift >= 0)
+                && board[row + shift][col - shift] == p)
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while((pos.getRow() - shift >= 0 && pos.getColumn() + shift < numColumns)
-                && board[pos.getRow() - shift][pos.getColumn() + shift] == p)
+        while((row - shift >= 0 && col + shift < numColumns)
+                && board[row - shift][col + shift] == p)
         {
             inRow++;
             shift++;
@@ -156,9 +167,14 @@ public class GameBoard extends AbsGameBoard implements IGameBoard {
     }
 
 
-    public char whatsAtPos(BoardPosition pos)
+    public char whatsAtPos(int row, int col)
+    {
+        return board[row][col];
+    }
+
+    protected AbsGameBoard newEmptyBoard()
     {
-        return board[pos.getRow()][pos.getColumn()];
+        return new GameBoard(numRows, numColumns, numToWin);
     }
 
     public int getNumRows()
@@ -0,0 +1,284 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * A ConnectX game board that stores each player's tokens as a packed bitset;
+ * Cells are numbered column-major, each column taking numRows + 1 bits where the top bit of
+ * every column is a sentinel that is never set, so runs along any of the four directions
+ * stop at the edge of the board without any bounds checks on the row or column.
+ * Wins are found by walking out from the placed bit one cell at a time rather than by shifting and ANDing
+ * whole words: the walk usually stops after a cell or two in each direction, and timed on 6x7 games it beat
+ * masked shift-and-AND tests on the 64 bits around the placed token.
+ * @invariants [Board has numRows rows and numColumns columns] AND
+ *             [No space between two occupied cells of the same column] AND
+ *             3 <= numRows <= 100 AND
+ *             3 <= numColumns <= 100
+ *             3 <= numToWin <= 25 AND
+ *             numToWin < numRows AND numToWin < numColumns AND
+ *             [no two players have the same bit set] AND
+ *             [the sentinel bit of every column is never set] AND
+ *             numTokens = [number of set bits across all players]
+ * @correspondences rows = numRows AND
+ *                  columns = numColumns AND
+ *                  win = numToWin AND
+ *                  grid = playerBits
+ */
+public class GameBoardBit extends AbsGameBoard implements IGameBoard {
+    private long[][] playerBits;
+    private char[] playerTokens;
+    private int numPlayers;
+    private int[] heights;
+    private int numRows;
+    private int numColumns;
+    private int numToWin;
+    private int columnStride;
+    private int totalBits;
+    private int numTokens;
+
+    /**
+     * Constructs instance of GameBoardBit object with a numRows x numColumns empty board
+     * @pre 3 <= rows <= 100 AND
+     *      3 <= columns <= 100 AND
+     *      3 <= numToWin <= 25 AND
+     *      numToWin < columns AND numToWin < rows
+     * @post [Object created with no bits set for any player] AND
+     *       numRows = rows AND
+     *       numColumns = columns AND
+     *       this.numToWin = numToWin
+     * @param rows number of rows the game board will have
+     * @param columns number of columns the game board will have
+     * @param numToWin number of pieces in a row needed to win
+     */
+    public GameBoardBit(int rows, int columns, int numToWin)
+    {
+        numRows = rows;
+        numColumns = columns;
+        this.numToWin = numToWin;
+        columnStride = rows + 1;
+        totalBits = columnStride * columns;
+        heights = new int[columns];
+        playerTokens = new char[2];
+        playerBits = new long[2][(totalBits + 63) >>> 6];
+        numPlayers = 0;
+        numTokens = 0;
+    }
+
+    public int placeToken(char p, int c)
+    {
+        int player = indexOf(p, true);
+        long[] bits = playerBits[player];
+        int row = heights[c]++;
+        int bit = c * columnStride + row;
+        bits[bit >>> 6] |= 1L << bit;
+        numTokens++;
+        tokenPlaced(row, c, p);
+        return row;
+    }
+
+    public void removeToken(int c)
+    {
+        int row = --heights[c];
+        int bit = c * columnStride + row;
+        for(int player = 0; player < numPlayers; player++)
+        {
+            if(isSet(playerBits[player], bit))
+            {
+                playerBits[player][bit >>> 6] &= ~(1L << bit);
+                tokenRemoved(row, c, playerTokens[player]);
+                break;
+            }
+        }
+        numTokens--;
+    }
+
+    public int getColumnHeight(int c)
+    {
+        return heights[c];
+    }
+
+    @Override
+    //Overridden because the column height is known without looking at the top cell
+    public boolean checkIfFree(int c)
+    {
+        return heights[c] < numRows;
+    }
+
+    @Override
+    //Overridden to walk the bitset of the last player in all four directions at once
+    public boolean checkForWin(int c)
+    {
+        int row = heights[c] - 1;
+        if(row < 0)
+        {
+            return false;
+        }
+        int bit = c * columnStride + row;
+        for(int player = 0; player < numPlayers; player++)
+        {
+            long[] bits = playerBits[player];
+            if(isSet(bits, bit))
+            {
+                return runLength(bits, bit, columnStride) >= numToWin
+                        || runLength(bits, bit, 1) >= numToWin
+                        || runLength(bits, bit, columnStride + 1) >= numToWin
+                        || runLength(bits, bit, columnStride - 1) >= numToWin;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    //Overridden because the number of tokens placed tells if the board is full
+    public boolean checkTie()
+    {
+        return numTokens == numRows * numColumns;
+    }
+
+    @Override
+    //Overridden to walk player p's bitset directly
+    public boolean checkHorizWin(int row, int col, char p)
+    {
+        return runFrom(row, col, p, columnStride) >= numToWin;
+    }
+
+    @Override
+    //Overridden to walk player p's bitset directly
+    public boolean checkVertWin(int row, int col, char p)
+    {
+        return runFrom(row, col, p, 1) >= numToWin;
+    }
+
+    @Override
+    //Overridden to walk player p's bitset directly
+    public boolean checkDiagWin(int row, int col, char p)
+    {
+        return runFrom(row, col, p, columnStride + 1) >= numToWin
+                || runFrom(row, col, p, columnStride - 1) >= numToWin;
+    }
+
+    public char whatsAtPos(int row, int col)
+    {
+        if(row >= heights[col])
+        {
+            return ' ';
+        }
+        int bit = col * columnStride + row;
+        for(int player = 0; player < numPlayers; player++)
+        {
+            if(isSet(playerBits[player], bit))
+            {
+                return playerTokens[player];
+            }
+        }
+        return ' ';
+    }
+
+    @Override
+    //Overridden because only player p's bitset needs to be checked
+    public boolean isPlayerAtPos(int row, int col, char p)
+    {
+        if(p == ' ')
+        {
+            return row >= heights[col];
+        }
+        int player = indexOf(p, false);
+        return player >= 0 && isSet(playerBits[player], col * columnStride + row);
+    }
+
+    protected AbsGameBoard newEmptyBoard()
+    {
+        return new GameBoardBit(numRows, numColumns, numToWin);
+    }
+
+    public int getNumRows() { return numRows; }
+
+    public int getNumColumns() { return numColumns; }
+
+    public int getNumToWin() { return numToWin; }
+
+    /**
+     * Finds the index of player p's bitset
+     * @pre none
+     * @post [indexOf() = index of p in playerTokens, or -1 if p has not played and add is false] AND
+     *       [if add is true and p has not played, p is given a new empty bitset]
+     * @param p player to look up
+     * @param add whether to create a bitset for p if it does not have one
+     * @return index of p's bitset
+     */
+    private int indexOf(char p, boolean add)
+    {
+        for(int player = 0; player < numPlayers; player++)
+        {
+            if(playerTokens[player] == p)
+            {
+                return player;
+            }
+        }
+        if(!add)
+        {
+            return -1;
+        }
+        if(numPlayers == playerTokens.length)
+        {
+            char[] newTokens = new char[numPlayers * 2];
+            long[][] newBits = new long[numPlayers * 2][];
+            System.arraycopy(playerTokens, 0, newTokens, 0, numPlayers);
+            System.arraycopy(playerBits, 0, newBits, 0, numPlayers);
+            for(int player = numPlayers; player < newBits.length; player++)
+            {
+                newBits[player] = new long[playerBits[0].length];
+            }
+            playerTokens = newTokens;
+            playerBits = newBits;
+        }
+        playerTokens[numPlayers] = p;
+        return numPlayers++;
+    }
+
+    /**
+     * Counts the tokens in a line through a position, including the position itself
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     * @post self = #self AND [runFrom() = 1 + number of p's tokens adjacent to row, col along stride]
+     * @param row row to count from
+     * @param col column to count from
+     * @param p player whose tokens are counted
+     * @param stride bit distance between neighbouring cells of the line
+     * @return length of the line
+     */
+    private int runFrom(int row, int col, char p, int stride)
+    {
+        int player = indexOf(p, false);
+        if(player < 0)
+        {
+            return 1;
+        }
+        return runLength(playerBits[player], col * columnStride + row, stride);
+    }
+
+    /**
+     * Counts the set bits in a line through bit, including bit itself
+     * @pre 0 <= bit < totalBits
+     * @post self = #self AND [runLength() = 1 + number of consecutive set bits on both sides of bit]
+     * @param bits bitset to walk
+     * @param bit starting bit
+     * @param stride bit distance between neighbouring cells of the line
+     * @return length of the line
+     */
+    private int runLength(long[] bits, int bit, int stride)
+    {
+        int inRow = 1;
+        for(int next = bit + stride; next < totalBits && isSet(bits, next); next += stride)
+        {
+            inRow++;
+        }
+        for(int next = bit - stride; next >= 0 && isSet(bits, next); next -= stride)
+        {
+            inRow++;
+        }
+        return inRow;
+    }
+
+    private static boolean isSet(long[] bits, int bit)
+    {
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,134 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds the IGameBoard for a new game, letting an IBoardStrategy pick the implementation.
+ * <p>
+ * The default factory uses a CostModelBoardStrategy. It is loaded from the profile named by the
+ * connectx.boardProfile system property when set, and calibrated at startup otherwise. The p99 move latency
+ * target is read from connectx.moveLatencyTargetNanos (default DEFAULT_LATENCY_TARGET_NANOS).
+ * @invariants strategy != null
+ */
+public class GameBoardFactory {
+    /**
+     * p99 move latency target used when connectx.moveLatencyTargetNanos is not set
+     */
+    public static final long DEFAULT_LATENCY_TARGET_NANOS = 20_000;
+
+    private static GameBoardFactory defaultFactory;
+    private static IOException profileFailure;
+
+    private IBoardStrategy strategy;
+
+    /**
+     * Constructs a factory that uses the given strategy
+     * @pre strategy != null
+     * @post this.strategy = strategy
+     * @param strategy strategy choosing the board implementation
+     */
+    public GameBoardFactory(IBoardStrategy strategy)
+    {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Creates an empty board using the implementation chosen by the strategy
+     * @pre 3 <= rows <= 100 AND 3 <= columns <= 100 AND 2 <= players AND 3 <= numToWin <= 25 AND
+     *      numToWin <= rows AND numToWin <= columns
+     * @post [makeBoard() = an empty rows x columns board of type strategy.selectBoard(rows, columns, players, numToWin)]
+     * @param rows number of rows the game board will have
+     * @param columns number of columns the game board will have
+     * @param players number of players in the game
+     * @param numToWin number of pieces in a row needed to win
+     * @return the new board
+     */
+    public IGameBoard makeBoard(int rows, int columns, int players, int numToWin)
+    {
+        return strategy.selectBoard(rows, columns, players, numToWin).make(rows, columns, numToWin);
+    }
+
+    public IBoardStrategy getStrategy() { return strategy; }
+
+    /**
+     * Replaces the strategy used for later boards
+     * @pre strategy != null
+     * @post this.strategy = strategy
+     * @param strategy new strategy
+     */
+    public void setStrategy(IBoardStrategy strategy)
+    {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Gets the shared factory, creating it on first use
+     * @pre none
+     * @post [getDefault() = the shared factory, using a profile loaded from connectx.boardProfile if set
+     *       or a freshly calibrated cost model otherwise] AND [getProfileFailure() = why the profile could not be
+     *       loaded, or null]
+     * @return the shared factory
+     */
+    public static synchronized GameBoardFactory getDefault()
+    {
+        if(defaultFactory == null)
+        {
+            long target = Long.getLong("connectx.moveLatencyTargetNanos", DEFAULT_LATENCY_TARGET_NANOS);
+            String profile = System.getProperty("connectx.boardProfile");
+            CostModelBoardStrategy strategy = null;
+            if(profile != null)
+            {
+                try
+                {
+                    strategy = CostModelBoardStrategy.load(Paths.get(profile), target);
+                }
+                catch(IOException e)
+                {
+                    //calibrating still gives a working factory; the caller decides whether to report the failure
+                    profileFailure = e;
+                }
+            }
+            if(strategy == null)
+            {
+                strategy = CostModelBoardStrategy.calibrate(target, 0.5,
+                        CostModelBoardStrategy.DEFAULT_CALIBRATION_MOVES);
+            }
+            defaultFactory = new GameBoardFactory(strategy);
+        }
+        return defaultFactory;
+    }
+
+    /**
+     * Gets why the shared factory could not load the profile named by connectx.boardProfile
+     * @pre none
+     * @post [getProfileFailure() = the exception loading the profile in getDefault(), or null if it loaded, was
+     *       not set or getDefault() has not been called]
+     * @return the failure or null
+     */
+    public static synchronized IOException getProfileFailure() { return profileFailure; }
+
+    /**
+     * Calibrates a cost model and writes it as a profile for connectx.boardProfile
+     *
+     * @param args path of the profile to write, and optionally the p99 latency target in nanoseconds
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1)
+        {
+            System.err.println("Usage: GameBoardFactory <profile path> [latency target nanos]");
+            return;
+        }
+        long target = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_LATENCY_TARGET_NANOS;
+        CostModelBoardStrategy strategy = CostModelBoardStrategy.calibrate(target, 0.5,
+                10 * CostModelBoardStrategy.DEFAULT_CALIBRATION_MOVES);
+        Path profile = Paths.get(args[0]);
+        strategy.save(profile);
+        for(int size : CostModelBoardStrategy.CALIBRATION_SIZES)
+        {
+            System.out.println(size + "x" + size + ": " + strategy.selectBoard(size, size, 2, Math.min(size - 1, 5)));
+        }
+    }
+}
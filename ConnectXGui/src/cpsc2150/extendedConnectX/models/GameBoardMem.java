@@ -1,35 +1,49 @@
 package cpsc2150.extendedConnectX.models;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * A ConnectX game board with a memory efficient implementation;
+ * Only occupied cells are stored, in an open-addressing hash table keyed by
+ * row * numColumns + column with linear probing, so memory grows with the number of tokens played
+ * while placing and looking up a token takes constant expected time.
  * @invariants [Board has numRows rows and numColumns columns] AND
  *             [No space between two occupied cells of the same column]
  *             3 <= rows <= 100 AND
  *             3 <= columns <= 100
  *             3 <= win <= 25 AND
- *             win < rows AND win < columns
+ *             win < rows AND win < columns AND
+ *             [keys.length is a power of two] AND
+ *             size <= keys.length / 2
  * @correspondences rows = numRows AND
  *                  columns = numColumns AND
  *                  win = numToWin
- *                  grid = boardMap
+ *                  grid = [the entries of keys and players, where keys[i] = row * numColumns + column
+ *                          holds token playerTokens[players[i]]] AND
+ *                  [heights[c] = number of occupied cells in column c]
  */
 
 public class GameBoardMem extends AbsGameBoard implements IGameBoard {
-    private HashMap<Character, ArrayList<BoardPosition>> boardMap;
+    private static final int EMPTY_KEY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private byte[] players;
+    private int size;
+    private char[] playerTokens;
+    private int numPlayers;
+    private int[] heights;
     private int numRows;
     private int numColumns;
     private int numToWin;
 
     /**
-     * Constructs instance of GameBoardMem object with an empty HashMap
+     * Constructs instance of GameBoardMem object with an empty table
      * @pre 3 <= rows <= 100 AND
      *      3 <= columns <= 100 AND
      *      3 <= numToWin <= 25 AND
      *      numToWin <= columns AND numToWin <= rows
-     * @post [Object created with an empty HashMap] AND
+     * @post [Object created with an empty table] AND
      *      numRows = row AND
      *      numColumns = column AND
      *      this.numToWin = numToWin
@@ -42,76 +56,168 @@ public class GameBoardMem extends AbsGameBoard implements IGameBoard {
         numRows = row;
         numColumns = column;
         this.numToWin = numToWin;
-        boardMap = new HashMap<Character, ArrayList<BoardPosition>>();
+        keys = new int[INITIAL_CAPACITY];
+        players = new byte[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+        playerTokens = new char[2];
+        numPlayers = 0;
+        heights = new int[numColumns];
     }
 
-    public void placeToken(char p, int c)
+    public int placeToken(char p, int c)
     {
-        //If hashmap does not contain key p, add it
-        if(!boardMap.containsKey(p))
+        //The height of column c is the first empty row, so no need to search the column
+        int row = heights[c]++;
+        if(size + 1 > keys.length / 2)
         {
-            boardMap.put(p, new ArrayList<BoardPosition>());
+            resize(keys.length * 2);
         }
-        //Loop through all possible positions in column c
-        for(int row = 0; row < numRows; row++)
+        int slot = slotOf(row * numColumns + c);
+        keys[slot] = row * numColumns + c;
+        players[slot] = indexOf(p);
+        size++;
+        tokenPlaced(row, c, p);
+        return row;
+    }
+
+    public void removeToken(int c)
+    {
+        int row = --heights[c];
+        int hole = slotOf(row * numColumns + c);
+        int mask = keys.length - 1;
+        tokenRemoved(row, c, playerTokens[players[hole]]);
+        size--;
+        //Backward-shift deletion: pull later entries of the probe run into the hole so lookups
+        //never stop early at an empty slot that used to be occupied
+        for(int next = (hole + 1) & mask; keys[next] != EMPTY_KEY; next = (next + 1) & mask)
         {
-            BoardPosition tempPos = new BoardPosition(row, c);
-            boolean posEmpty = true;
-            for(ArrayList<BoardPosition> players : boardMap.values())
+            int home = homeSlot(keys[next]);
+            if(((next - home) & mask) >= ((next - hole) & mask))
             {
-                for (int listIndex = 0; listIndex < players.size(); listIndex++)
-                {
-                    //If there is a player with a position at tempPos, set posEmpty to false
-                    //and check row above
-                    if (players.get(listIndex).equals(tempPos))
-                    {
-                        posEmpty = false;
-                    }
-                }
-            }
-            //If the position is empty, add the position to player p's hashmap and return
-            if(posEmpty)
-            {
-                boardMap.get(p).add(tempPos);
-                return;
+                keys[hole] = keys[next];
+                players[hole] = players[next];
+                hole = next;
             }
         }
-        return;
+        keys[hole] = EMPTY_KEY;
     }
 
-    public char whatsAtPos(BoardPosition pos)
+    public int getColumnHeight(int c)
     {
-        //Check
-        for(HashMap.Entry<Character, ArrayList<BoardPosition>> entry : boardMap.entrySet())
+        return heights[c];
+    }
+
+    public char whatsAtPos(int row, int col)
+    {
+        //Cells above the column height are never stored, so skip the table for them
+        if(row >= heights[col])
         {
-            for(int arrayIndex = 0; arrayIndex < entry.getValue().size(); arrayIndex++)
-            {
-                if(pos.equals(entry.getValue().get(arrayIndex)))
-                {
-                    return entry.getKey();
-                }
-            }
+            return ' ';
         }
-        return ' ';
+        int slot = slotOf(row * numColumns + col);
+        return keys[slot] == EMPTY_KEY ? ' ' : playerTokens[players[slot]];
     }
 
     @Override
-    //Overridden because HashMap provides a more efficient implementation
-    public boolean isPlayerAtPos(BoardPosition pos, char p)
+    //Overridden so the player table is not consulted when the cell is empty
+    public boolean isPlayerAtPos(int row, int col, char p)
     {
-        if(!boardMap.containsKey(p)) return false;
-        for(int arrayIndex = 0; arrayIndex < boardMap.get(p).size(); arrayIndex++)
+        if(row >= heights[col])
         {
-            if(boardMap.get(p).get(arrayIndex).equals(pos))
-            {
-                return true;
-            }
+            return p == ' ';
         }
-        return false;
+        int slot = slotOf(row * numColumns + col);
+        return keys[slot] != EMPTY_KEY && playerTokens[players[slot]] == p;
     }
+
+    protected AbsGameBoard newEmptyBoard()
+    {
+        return new GameBoardMem(numRows, numColumns, numToWin);
+    }
+
     public int getNumRows() { return numRows; }
 
     public int getNumColumns() { return numColumns; }
 
     public int getNumToWin() { return numToWin; }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would be inserted
+     * @pre key >= 0
+     * @post self = #self AND [slotOf() = index of key in keys, or of the first empty slot on its probe sequence]
+     * @param key position key row * numColumns + column
+     * @return slot index
+     */
+    private int slotOf(int key)
+    {
+        int mask = keys.length - 1;
+        int slot = homeSlot(key);
+        while(keys[slot] != EMPTY_KEY && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Finds the slot a key hashes to before probing
+     * @pre key >= 0
+     * @post self = #self AND [homeSlot() = hash of key masked to the table size]
+     * @param key position key row * numColumns + column
+     * @return first slot of key's probe sequence
+     */
+    private int homeSlot(int key)
+    {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Rehashes every stored token into a table of a new capacity
+     * @pre capacity is a power of two AND capacity >= 2 * size
+     * @post [keys and players have length capacity and hold the same entries as before]
+     * @param capacity new table capacity
+     */
+    private void resize(int capacity)
+    {
+        int[] oldKeys = keys;
+        byte[] oldPlayers = players;
+        keys = new int[capacity];
+        players = new byte[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+        {
+            if(oldKeys[oldSlot] != EMPTY_KEY)
+            {
+                int slot = slotOf(oldKeys[oldSlot]);
+                keys[slot] = oldKeys[oldSlot];
+                players[slot] = oldPlayers[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Finds the index of player p in playerTokens, adding p if it has not played yet
+     * @pre none
+     * @post [indexOf() = index of p in playerTokens] AND [p is in playerTokens]
+     * @param p player to look up
+     * @return index of p
+     */
+    private byte indexOf(char p)
+    {
+        for(int player = 0; player < numPlayers; player++)
+        {
+            if(playerTokens[player] == p)
+            {
+                return (byte) player;
+            }
+        }
+        if(numPlayers == playerTokens.length)
+        {
+            playerTokens = Arrays.copyOf(playerTokens, numPlayers * 2);
+        }
+        playerTokens[numPlayers] = p;
+        return (byte) numPlayers++;
+    }
 }
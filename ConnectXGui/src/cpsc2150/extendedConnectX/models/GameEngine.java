@@ -0,0 +1,195 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.util.Arrays;
+
+/**
+ * The rules of one game of ConnectX, with no user interface: whose turn it is, applying a move to the
+ * IGameBoard and deciding whether it won or tied the game.
+ * <p>
+ * Players take turns in a fixed order, so the player to move is always the number of moves played modulo
+ * the number of players.
+ * @invariants board != null AND 2 <= players.length <= PLAYER_TOKENS.length AND
+ *             toMove = board.getNumMoves() mod players.length AND
+ *             [gameOver = true iff the last move won or tied the game]
+ * @correspondences self = board
+ */
+public class GameEngine {
+    /**
+     * Tokens of the players in turn order
+     */
+    public static final char[] PLAYER_TOKENS = {'X', 'O', 'W', 'J', 'E', 'Z', 'L', 'H', 'B', 'T'};
+    /**
+     * Fewest rows or columns a game may have
+     */
+    public static final int MIN_SIZE = 3;
+    /**
+     * Most rows or columns a game may have
+     */
+    public static final int MAX_SIZE = 20;
+    /**
+     * Fewest tokens in a row a game may need to win
+     */
+    public static final int MIN_TO_WIN = 3;
+
+    private IGameBoard board;
+    private char[] players;
+    private int toMove;
+    private boolean gameOver;
+    private char winner = ' ';
+
+    /**
+     * Constructs a game on an empty board
+     * @pre board.getNumMoves() = 0 AND 2 <= numPlayers <= PLAYER_TOKENS.length
+     * @post this.board = board AND [players are the first numPlayers PLAYER_TOKENS] AND toMove = 0 AND
+     *       gameOver = false
+     * @param board board to play on
+     * @param numPlayers number of players
+     */
+    public GameEngine(IGameBoard board, int numPlayers)
+    {
+        this.board = board;
+        this.players = Arrays.copyOf(PLAYER_TOKENS, numPlayers);
+    }
+
+    /**
+     * Plays the current player's token
+     * @pre 0 <= column < board.getNumColumns() AND board.checkIfFree(column) AND gameOver = false
+     * @post [board = #board with the current player's token on top of column] AND
+     *       [gameOver and the winner are set if the move won or filled the board, otherwise it is the
+     *       next player's turn]
+     * @param column column to play in
+     * @return where the token landed and whether the game is over
+     * @throws IllegalStateException if the game is already over
+     * @throws IllegalArgumentException if column is off the board or full
+     */
+    public MoveResult play(int column)
+    {
+        if(gameOver)
+        {
+            throw new IllegalStateException("The game is over");
+        }
+        if(column < 0 || column >= board.getNumColumns() || !board.checkIfFree(column))
+        {
+            throw new IllegalArgumentException("Column " + column + " cannot be played");
+        }
+        char player = players[toMove];
+        int row = board.placeToken(player, column);
+        boolean won = board.checkForWin(column);
+        boolean tie = !won && board.checkTie();
+        if(won)
+        {
+            winner = player;
+        }
+        gameOver = won || tie;
+        if(!gameOver)
+        {
+            toMove = (toMove + 1) % players.length;
+        }
+        return new MoveResult(row, column, player, won, tie);
+    }
+
+    /**
+     * Takes back the last move
+     * @pre board.getNumMoves() > 0
+     * @post [board = #board without its last move] AND gameOver = false AND
+     *       toMove = board.getNumMoves() mod players.length
+     * @return column of the move taken back
+     */
+    public int undo()
+    {
+        int column = board.undoLastMove();
+        toMove = board.getNumMoves() % players.length;
+        gameOver = false;
+        winner = ' ';
+        return column;
+    }
+
+    /**
+     * Starts a new game on the same board
+     * @pre none
+     * @post [board is empty] AND toMove = 0 AND gameOver = false AND winner = ' '
+     */
+    public void restart()
+    {
+        board.clear();
+        toMove = 0;
+        gameOver = false;
+        winner = ' ';
+    }
+
+    /**
+     * Checks if a move is allowed
+     * @pre none
+     * @post self = #self AND [canPlay() = true iff the game is not over and column is on the board and not full]
+     * @param column column to check
+     * @return true if play(column) would succeed
+     */
+    public boolean canPlay(int column)
+    {
+        return !gameOver && column >= 0 && column < board.getNumColumns() && board.checkIfFree(column);
+    }
+
+    /**
+     * Checks the settings of a new game against the rules of the setup screen
+     * @pre none
+     * @post [checkSettings() = "" if MIN_SIZE <= rows, columns <= MAX_SIZE AND
+     *       2 <= players <= PLAYER_TOKENS.length AND MIN_TO_WIN <= numToWin <= min(rows, columns),
+     *       otherwise a message naming each broken rule]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param players number of players
+     * @param numToWin number in a row needed to win
+     * @return the errors, or "" if the settings are valid
+     */
+    public static String checkSettings(int rows, int columns, int players, int numToWin)
+    {
+        String errorMsg = "";
+        if(rows < MIN_SIZE || rows > MAX_SIZE)
+        {
+            errorMsg += "Rows must be between " + MIN_SIZE + " and " + MAX_SIZE;
+        }
+        if(columns < MIN_SIZE || columns > MAX_SIZE)
+        {
+            errorMsg += "Columns must be between " + MIN_SIZE + " and " + MAX_SIZE;
+        }
+        if(players < 2 || players > PLAYER_TOKENS.length)
+        {
+            errorMsg += "Players must be between 2 and " + PLAYER_TOKENS.length;
+        }
+        if(numToWin > rows)
+        {
+            errorMsg += "Can't have more to win than the number of rows";
+        }
+        if(numToWin > columns)
+        {
+            errorMsg += "Can't have more to win than the number of columns";
+        }
+        if(numToWin < MIN_TO_WIN)
+        {
+            errorMsg += "Number to win must be at least " + MIN_TO_WIN;
+        }
+        return errorMsg;
+    }
+
+    public IGameBoard getBoard() { return board; }
+
+    /**
+     * Gets the tokens of the players
+     * @post [getPlayers() = a copy of the tokens in turn order]
+     * @return tokens of the players in turn order
+     */
+    public char[] getPlayers()
+    {
+        return Arrays.copyOf(players, players.length);
+    }
+
+    public int getNumPlayers() { return players.length; }
+
+    public int getCurrentPlayer() { return toMove; }
+
+    public char getCurrentToken() { return players[toMove]; }
+
+    public boolean isGameOver() { return gameOver; }
+
+    public char getWinner() { return winner; }
+}
@@ -0,0 +1,22 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * Decides which IGameBoard implementation a GameBoardFactory builds for a game.
+ * @defines rows = # of rows
+ *          columns = # of columns
+ *          players = # of players
+ *          win = number in a row to win
+ */
+public interface IBoardStrategy {
+    /**
+     * Chooses the board implementation for a game
+     * @pre 3 <= rows <= 100 AND 3 <= columns <= 100 AND 2 <= players AND 3 <= win <= 25
+     * @post [selectBoard() = the implementation to use for a rows x columns game of players players]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param players number of players
+     * @param numToWin number of pieces in a row needed to win
+     * @return chosen board type
+     */
+    public BoardType selectBoard(int rows, int columns, int players, int numToWin);
+}
@@ -1,5 +1,7 @@
 package cpsc2150.extendedConnectX.models;
 
+import java.io.IOException;
+
 /**
  * A row x column game board used to play ConnectX where 0,0 is the bottom left.
  * Initialization Ensures: grid is a rows x columns empty game board
@@ -24,16 +26,68 @@ public interface IGameBoard {
      */
     default public boolean checkIfFree(int c)
     {
-        return whatsAtPos(new BoardPosition(getNumRows() - 1, c)) == ' ';
+        return getColumnHeight(c) < getNumRows();
     }
     /**
      * Places token in specified column
      * @pre board[rows][c] is empty AND 0 <= c < columns
-     * @post [self = #self except the lowest row in column c is filled by p]
+     * @post [self = #self except the lowest row in column c is filled by p] AND
+     *       placeToken() = #getColumnHeight(c)
      * @param p Player who is placing token
      * @param c Column to place token
+     * @return Row the token landed in
+     */
+    public int placeToken(char p, int c);
+    /**
+     * Removes the top token of a column, undoing the last placeToken in that column
+     * @pre 0 <= c < columns AND getColumnHeight(c) > 0
+     * @post [self = #self except the highest occupied cell of column c is empty]
+     * @param c Column to remove the token from
+     */
+    public void removeToken(int c);
+    /**
+     * Gets the number of moves played, which is the number of tokens on the board
+     * @pre none
+     * @post self = #self AND [getNumMoves() = number of tokens on the board]
+     * @return Number of moves played
+     */
+    public int getNumMoves();
+    /**
+     * Gets a move from the move history
+     * @pre 0 <= i < getNumMoves()
+     * @post self = #self AND [getMove() = column of the i-th token still on the board, in the order placed]
+     * @param i Index of the move, 0 being the first
+     * @return Column the move was played in
      */
-    public void placeToken(char p, int c);
+    public int getMove(int i);
+    /**
+     * Takes back the last move played
+     * @pre getNumMoves() > 0
+     * @post [self = #self except the last token placed is removed] AND getNumMoves() = #getNumMoves() - 1
+     * @return Column the move was taken back from
+     */
+    public int undoLastMove();
+    /**
+     * Empties the board so it can be reused for a new game of the same shape
+     * @pre none
+     * @post [self is an empty rows x columns board] AND getNumMoves() = 0 AND [rows, columns and win are unchanged]
+     */
+    default public void clear()
+    {
+        //taking every move back keeps whatever an implementation derives from its tokens in step
+        while(getNumMoves() > 0)
+        {
+            undoLastMove();
+        }
+    }
+    /**
+     * Gets the number of tokens in a column
+     * @pre 0 <= c < columns
+     * @post self = #self AND [getColumnHeight() = number of occupied cells in column c]
+     * @param c column to check
+     * @return Height of column c, which is also the row the next token in c will land in
+     */
+    public int getColumnHeight(int c);
     /**
      * Checks if a player has won the game
      * @pre [c is last column played]
@@ -43,28 +97,13 @@ public interface IGameBoard {
      */
     default public boolean checkForWin(int c)
     {
-        int row;
-        for(row = getNumRows() - 1; row >= 0; row--)
-        {
-            if(whatsAtPos(new BoardPosition(row, c)) != ' ')
-            {
-                break;
-            }
-        }
-        BoardPosition testPosition = new BoardPosition(row, c);
-        if(checkHorizWin(testPosition, whatsAtPos(testPosition)))
-        {
-            return true;
-        }
-        else if(checkVertWin(testPosition, whatsAtPos(testPosition)))
-        {
-            return true;
-        }
-        else if(checkDiagWin(testPosition, whatsAtPos(testPosition)))
+        int row = getColumnHeight(c) - 1;
+        if(row < 0)
         {
-            return true;
+            return false;
         }
-        return false;
+        char p = whatsAtPos(row, c);
+        return checkHorizWin(row, c, p) || checkVertWin(row, c, p) || checkDiagWin(row, c, p);
     }
     /**
      * Checks if the game has resulted in a tie
@@ -73,10 +112,9 @@ public interface IGameBoard {
      */
     default public boolean checkTie()
     {
-        int row = getNumRows() - 1;
         for(int column = 0; column < getNumColumns(); column++)
         {
-            if(whatsAtPos(new BoardPosition(row, column)) == ' ')
+            if(checkIfFree(column))
             {
                 return false;
             }
@@ -85,7 +123,7 @@ public interface IGameBoard {
     }
 
     /**
-     * Checks if player has 5 tokens horizontally
+     * Checks if player has win tokens vertically
      * @pre 0 <= pos.getRow() < rows AND 0 <= pos.getColumn() < columns
      *      AND [pos is last position played]
      * @post self = #self AND [checkVertWin() = true if player has win tokens vertically, false otherwise]
@@ -94,18 +132,30 @@ public interface IGameBoard {
      * @return If player has won vertically
      */
     default public boolean checkVertWin(BoardPosition pos, char p)
+    {
+        return checkVertWin(pos.getRow(), pos.getColumn(), p);
+    }
+    /**
+     * Checks if player has win tokens vertically
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     *      AND [row, col is last position played]
+     * @post self = #self AND [checkVertWin() = true if player has win tokens vertically, false otherwise]
+     * @param row Row to check from
+     * @param col Column to check from
+     * @param p Player who is being checked
+     * @return If player has won vertically
+     */
+    default public boolean checkVertWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while(pos.getRow() + shift < getNumRows() &&
-                isPlayerAtPos(new BoardPosition(pos.getRow() + shift, pos.getColumn()), p))
+        while(row + shift < getNumRows() && isPlayerAtPos(row + shift, col, p))
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while(pos.getRow() - shift >= 0 &&
-                isPlayerAtPos(new BoardPosition(pos.getRow() - shift, pos.getColumn()), p))
+        while(row - shift >= 0 && isPlayerAtPos(row - shift, col, p))
         {
             inRow++;
             shift++;
@@ -122,18 +172,30 @@ public interface IGameBoard {
      * @return If player has won horizontally
      */
     default public boolean checkHorizWin(BoardPosition pos, char p)
+    {
+        return checkHorizWin(pos.getRow(), pos.getColumn(), p);
+    }
+    /**
+     * Checks if player has win tokens horizontally
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     *      AND [row, col is last position played]
+     * @post self = #self AND [checkHorizWin() = true if player has win tokens horizontally, false otherwise]
+     * @param row Row to check from
+     * @param col Column to check from
+     * @param p Player who is being checked
+     * @return If player has won horizontally
+     */
+    default public boolean checkHorizWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while(pos.getColumn() + shift < getNumColumns() &&
-                isPlayerAtPos(new BoardPosition(pos.getRow(), pos.getColumn() + shift), p))
+        while(col + shift < getNumColumns() && isPlayerAtPos(row, col + shift, p))
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while(pos.getColumn() - shift >= 0 &&
-                isPlayerAtPos(new BoardPosition(pos.getRow(), pos.getColumn() - shift), p))
+        while(col - shift >= 0 && isPlayerAtPos(row, col - shift, p))
         {
             inRow++;
             shift++;
@@ -150,18 +212,32 @@ public interface IGameBoard {
      * @return If player has won diagonally
      */
     default public boolean checkDiagWin(BoardPosition pos, char p)
+    {
+        return checkDiagWin(pos.getRow(), pos.getColumn(), p);
+    }
+    /**
+     * Checks if player has win tokens diagonally
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     *      AND [row, col is last position played]
+     * @post self = #self AND [checkDiagWin() = true if player has win tokens diagonally, false otherwise]
+     * @param row Row to check from
+     * @param col Column to check from
+     * @param p Player who is being checked
+     * @return If player has won diagonally
+     */
+    default public boolean checkDiagWin(int row, int col, char p)
     {
         int inRow = 1;
         int shift = 1;
-        while((pos.getRow() + shift < getNumRows() && pos.getColumn() + shift < getNumColumns())
-                && isPlayerAtPos(new BoardPosition(pos.getRow() + shift, pos.getColumn() + shift), p))
+        while((row + shift < getNumRows() && col + shift < getNumColumns())
+                && isPlayerAtPos(row + shift, col + shift, p))
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while((pos.getRow() - shift >= 0 && pos.getColumn() - shift >= 0)
-                && isPlayerAtPos(new BoardPosition(pos.getRow() - shift, pos.getColumn() - shift), p))
+        while((row - shift >= 0 && col - shift >= 0)
+                && isPlayerAtPos(row - shift, col - shift, p))
         {
             inRow++;
             shift++;
@@ -172,15 +248,15 @@ public interface IGameBoard {
         }
         inRow = 1;
         shift = 1;
-        while((pos.getRow() + shift < getNumRows() && pos.getColumn() - shift >= 0)
-                && isPlayerAtPos(new BoardPosition(pos.getRow() + shift, pos.getColumn() - shift), p))
+        while((row + shift < getNumRows() && col - shift >= 0)
+                && isPlayerAtPos(row + shift, col - shift, p))
         {
             inRow++;
             shift++;
         }
         shift = 1;
-        while((pos.getRow() - shift >= 0 && pos.getColumn() + shift < getNumColumns())
-                && isPlayerAtPos(new BoardPosition(pos.getRow() - shift, pos.getColumn() + shift), p))
+        while((row - shift >= 0 && col + shift < getNumColumns())
+                && isPlayerAtPos(row - shift, col + shift, p))
         {
             inRow++;
             shift++;
@@ -194,7 +270,20 @@ public interface IGameBoard {
      * @param pos BoardPosition to check
      * @return Character at position pos
      */
-    public char whatsAtPos(BoardPosition pos);
+    default public char whatsAtPos(BoardPosition pos)
+    {
+        return whatsAtPos(pos.getRow(), pos.getColumn());
+    }
+
+    /**
+     * Checks if there is a token at a position and returns whose it is
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     * @post self = #self AND [whatsAtPos() = character at row, col]
+     * @param row Row to check
+     * @param col Column to check
+     * @return Character at position row, col
+     */
+    public char whatsAtPos(int row, int col);
 
     /**
      * Checks if player is at BoardPosition pos
@@ -204,9 +293,120 @@ public interface IGameBoard {
      * @param p Player to check
      * @return If player is at pos
      */
-    default public  boolean isPlayerAtPos(BoardPosition pos, char p)
+    default public boolean isPlayerAtPos(BoardPosition pos, char p)
+    {
+        return isPlayerAtPos(pos.getRow(), pos.getColumn(), p);
+    }
+
+    /**
+     * Checks if player is at position row, col
+     * @pre 0 <= row < rows AND 0 <= col < columns
+     * @post self = #self AND [isPlayerAtPos() = true if player is at row, col, false otherwise]
+     * @param row Row to check
+     * @param col Column to check
+     * @param p Player to check
+     * @return If player is at row, col
+     */
+    default public boolean isPlayerAtPos(int row, int col, char p)
+    {
+        return whatsAtPos(row, col) == p;
+    }
+
+    /**
+     * Creates an independent copy of the board
+     * @pre none
+     * @post self = #self AND [copy() = a new board of the same implementation with the same tokens and move history]
+     * @return Copy of the board
+     */
+    public IGameBoard copy();
+
+    /**
+     * Gets the Zobrist key of the current position
+     * @pre none
+     * @post self = #self AND [getZobristKey() = XOR of ZobristKeys.keyFor(row, column, token) over every occupied cell]
+     * @return Zobrist key of the board
+     */
+    default public long getZobristKey()
+    {
+        long key = 0;
+        for(int column = 0; column < getNumColumns(); column++)
+        {
+            for(int row = 0; row < getColumnHeight(column); row++)
+            {
+                key ^= ZobristKeys.keyFor(row, column, whatsAtPos(row, column));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Gets the Zobrist key of the current position mirrored left to right
+     * @pre none
+     * @post self = #self AND [getMirroredKey() = XOR of ZobristKeys.keyFor(row, getNumColumns() - 1 - column, token)
+     *       over every occupied cell]
+     * @return Zobrist key of the mirrored board
+     */
+    default public long getMirroredKey()
+    {
+        long key = 0;
+        for(int column = 0; column < getNumColumns(); column++)
+        {
+            for(int row = 0; row < getColumnHeight(column); row++)
+            {
+                key ^= ZobristKeys.keyFor(row, getNumColumns() - 1 - column, whatsAtPos(row, column));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Gets a key shared by the position and its mirror image, so anything keyed by it stores a position and its
+     * mirror once
+     * @pre none
+     * @post self = #self AND [getCanonicalKey() = the smaller of getZobristKey() and getMirroredKey(), signed]
+     * @return canonical key of the board
+     */
+    default public long getCanonicalKey()
+    {
+        return Math.min(getZobristKey(), getMirroredKey());
+    }
+
+    /**
+     * Checks whether the canonical key is the key of the mirrored board
+     * @pre none
+     * @post self = #self AND [isKeyMirrored() = getMirroredKey() < getZobristKey(), signed]
+     * @return true if moves stored under the canonical key are mirrored
+     */
+    default public boolean isKeyMirrored()
+    {
+        return getMirroredKey() < getZobristKey();
+    }
+
+    /**
+     * Maps a column between the board and the orientation of its canonical key; the mapping is its own inverse,
+     * so it turns a column to store into the canonical orientation and a stored column back into a column of
+     * this board
+     * @pre -1 <= column < getNumColumns()
+     * @post self = #self AND [canonicalColumn() = getNumColumns() - 1 - column if isKeyMirrored() and column >= 0,
+     *       otherwise column]
+     * @param column column to map, or -1 for no column
+     * @return mapped column
+     */
+    default public int canonicalColumn(int column)
+    {
+        return column >= 0 && isKeyMirrored() ? getNumColumns() - 1 - column : column;
+    }
+
+    /**
+     * Writes the board as toString shows it
+     * @pre out != null
+     * @post self = #self AND [toString() is appended to out]
+     * @param out where to write the board
+     * @throws IOException if out cannot be written
+     */
+    default public void appendTo(Appendable out) throws IOException
     {
-        return whatsAtPos(pos) == p;
+        out.append(toString());
     }
 
     /**
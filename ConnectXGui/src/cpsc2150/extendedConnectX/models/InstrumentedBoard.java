@@ -0,0 +1,235 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.io.IOException;
+
+/**
+ * Wraps any IGameBoard and records the count and latency of its placeToken, removeToken, checkForWin, checkTie,
+ * whatsAtPos and checkIfFree calls in the BoardMetrics of its implementation and shape.
+ * <p>
+ * It goes outside every other wrapper, such as a ThreatTrackingBoard, so it measures the calls the game and the
+ * engines make rather than the ones a wrapper makes on their behalf. Code that looks for another wrapper goes
+ * through unwrap.
+ * <p>
+ * While BoardMetrics is disabled each of those calls only reads the sample interval before calling the wrapped
+ * board. Every other call is passed straight to the wrapped board, which must only be changed through this
+ * wrapper. Like the boards it wraps, an InstrumentedBoard is not thread safe, though boards on different threads
+ * can share one BoardMetrics.
+ * @invariants board != null AND metrics != null AND random != 0
+ * @correspondences self = board
+ */
+public class InstrumentedBoard implements IGameBoard {
+    private IGameBoard board;
+    private BoardMetrics metrics;
+    //calls left until the next timed one, and the xorshift state that spaces the timed calls when sampling
+    private int untilSample = 1;
+    private int random;
+
+    /**
+     * Constructs a wrapper recording into the metrics of the board's own implementation and shape
+     * @pre board != null
+     * @post self = board AND [calls are recorded in BoardMetrics.of(board)]
+     * @param board board to wrap; must not be changed except through this wrapper afterwards
+     */
+    public InstrumentedBoard(IGameBoard board)
+    {
+        this(board, BoardMetrics.of(board));
+    }
+
+    /**
+     * Constructs a wrapper recording into the given metrics
+     * @pre board != null AND metrics != null
+     * @post self = board AND [calls are recorded in metrics]
+     * @param board board to wrap; must not be changed except through this wrapper afterwards
+     * @param metrics where calls are recorded
+     */
+    public InstrumentedBoard(IGameBoard board, BoardMetrics metrics)
+    {
+        this.board = board;
+        this.metrics = metrics;
+        this.random = System.identityHashCode(this) | 1;
+    }
+
+    public int placeToken(char p, int c)
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            return board.placeToken(p, c);
+        }
+        long start = System.nanoTime();
+        int row = board.placeToken(p, c);
+        metrics.record(BoardMetrics.Operation.PLACE_TOKEN, System.nanoTime() - start, weight);
+        return row;
+    }
+
+    public void removeToken(int c)
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            board.removeToken(c);
+            return;
+        }
+        long start = System.nanoTime();
+        board.removeToken(c);
+        metrics.record(BoardMetrics.Operation.REMOVE_TOKEN, System.nanoTime() - start, weight);
+    }
+
+    @Override
+    //Overridden to time the wrapped board's own win check
+    public boolean checkForWin(int c)
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            return board.checkForWin(c);
+        }
+        long start = System.nanoTime();
+        boolean won = board.checkForWin(c);
+        metrics.record(BoardMetrics.Operation.CHECK_FOR_WIN, System.nanoTime() - start, weight);
+        return won;
+    }
+
+    @Override
+    //Overridden to time the wrapped board's own tie check
+    public boolean checkTie()
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            return board.checkTie();
+        }
+        long start = System.nanoTime();
+        boolean tie = board.checkTie();
+        metrics.record(BoardMetrics.Operation.CHECK_TIE, System.nanoTime() - start, weight);
+        return tie;
+    }
+
+    public char whatsAtPos(int row, int col)
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            return board.whatsAtPos(row, col);
+        }
+        long start = System.nanoTime();
+        char p = board.whatsAtPos(row, col);
+        metrics.record(BoardMetrics.Operation.WHATS_AT_POS, System.nanoTime() - start, weight);
+        return p;
+    }
+
+    @Override
+    //Overridden to time the wrapped board's own free column check
+    public boolean checkIfFree(int c)
+    {
+        int weight = sample();
+        if(weight == 0)
+        {
+            return board.checkIfFree(c);
+        }
+        long start = System.nanoTime();
+        boolean free = board.checkIfFree(c);
+        metrics.record(BoardMetrics.Operation.CHECK_IF_FREE, System.nanoTime() - start, weight);
+        return free;
+    }
+
+    /**
+     * Decides whether to time the current call
+     * @post [sample() = 0 if recording is off or this call is not timed, otherwise the number of calls the timed
+     *       call stands for]
+     */
+    private int sample()
+    {
+        int interval = BoardMetrics.sampleInterval;
+        if(interval == 0 || --untilSample > 0)
+        {
+            return 0;
+        }
+        if(interval == 1)
+        {
+            untilSample = 1;
+            return 1;
+        }
+        //a random gap with a mean of interval, so a loop of calls with that period is not always timed at one call
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        untilSample = 1 + (random >>> 1) % (2 * interval - 1);
+        return interval;
+    }
+
+    public int undoLastMove()
+    {
+        int c = board.getMove(board.getNumMoves() - 1);
+        removeToken(c);
+        return c;
+    }
+
+    @Override
+    //Overridden so the wrapped board empties itself without a removeToken call per token
+    public void clear()
+    {
+        board.clear();
+    }
+
+    public IGameBoard copy()
+    {
+        return new InstrumentedBoard(board.copy(), metrics);
+    }
+
+    @Override
+    //Overridden so the wrapped board's own key is used
+    public long getZobristKey()
+    {
+        return board.getZobristKey();
+    }
+
+    @Override
+    //Overridden so the wrapped board's own mirrored key is used
+    public long getMirroredKey()
+    {
+        return board.getMirroredKey();
+    }
+
+    public IGameBoard getBoard() { return board; }
+
+    /**
+     * Gets the board behind an InstrumentedBoard, so callers looking for a particular implementation such as
+     * ThreatTrackingBoard find it whether or not the board is measured
+     * @pre board != null
+     * @post [unwrap() = board.getBoard() if board is an InstrumentedBoard, otherwise board]
+     * @param board board that may be instrumented
+     * @return the wrapped board, or board itself
+     */
+    public static IGameBoard unwrap(IGameBoard board)
+    {
+        return board instanceof InstrumentedBoard ? ((InstrumentedBoard) board).getBoard() : board;
+    }
+
+    public BoardMetrics getMetrics() { return metrics; }
+
+    public int getColumnHeight(int c) { return board.getColumnHeight(c); }
+
+    public int getNumMoves() { return board.getNumMoves(); }
+
+    public int getMove(int i) { return board.getMove(i); }
+
+    public int getNumRows() { return board.getNumRows(); }
+
+    public int getNumColumns() { return board.getNumColumns(); }
+
+    public int getNumToWin() { return board.getNumToWin(); }
+
+    @Override
+    public String toString()
+    {
+        return board.toString();
+    }
+
+    @Override
+    //Overridden so the wrapped board's own rendering is used
+    public void appendTo(Appendable out) throws IOException
+    {
+        board.appendTo(out);
+    }
+}
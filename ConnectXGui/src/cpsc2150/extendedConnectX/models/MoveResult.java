@@ -0,0 +1,60 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * What happened when a GameEngine applied one move: where the token landed and whether it ended the game.
+ * @invariants 0 <= row AND 0 <= column AND NOT (won AND tie)
+ */
+public class MoveResult {
+    private int row;
+    private int column;
+    private char player;
+    private boolean won;
+    private boolean tie;
+
+    /**
+     * Constructs a move result
+     * @pre 0 <= row AND 0 <= column AND NOT (won AND tie)
+     * @post this.row = row AND this.column = column AND this.player = player AND this.won = won AND this.tie = tie
+     * @param row row the token landed in
+     * @param column column the token was played in
+     * @param player token that was played
+     * @param won whether the move won the game
+     * @param tie whether the move filled the board without a win
+     */
+    public MoveResult(int row, int column, char player, boolean won, boolean tie)
+    {
+        this.row = row;
+        this.column = column;
+        this.player = player;
+        this.won = won;
+        this.tie = tie;
+    }
+
+    public int getRow() { return row; }
+
+    public int getColumn() { return column; }
+
+    public char getPlayer() { return player; }
+
+    public boolean isWin() { return won; }
+
+    public boolean isTie() { return tie; }
+
+    public boolean isGameOver() { return won || tie; }
+
+    /**
+     * Gets the winner
+     * @post [getWinner() = player if the move won, ' ' otherwise]
+     * @return token of the winner, or ' ' if the move did not win
+     */
+    public char getWinner()
+    {
+        return won ? player : ' ';
+    }
+
+    @Override
+    public String toString()
+    {
+        return player + " at " + row + "," + column + (won ? " wins" : tie ? " ties" : "");
+    }
+}
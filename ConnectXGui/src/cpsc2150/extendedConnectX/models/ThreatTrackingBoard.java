@@ -0,0 +1,372 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Wraps any IGameBoard and keeps counts for every window of numToWin cells, updated as tokens are placed and
+ * removed, so that checking for a win and scoring a position take constant time instead of walking the board.
+ * <p>
+ * A window is open for a player while it holds only that player's tokens. For each window the wrapper keeps
+ * how many tokens of each player it holds, and for each player how many open windows hold 1, 2, ...
+ * numToWin of their tokens. It also keeps a running window score per player: the sum of n * n over the
+ * player's open windows holding n tokens, the same score WindowEvaluator computes by scanning the board.
+ * A cell is marked while it lies in a complete window, so checkForWin only looks at the top cell of the column.
+ * <p>
+ * Placing or removing a token touches only the windows through its cell, at most 4 * numToWin of them.
+ * Everything else is passed to the wrapped board, which must only be changed through this wrapper.
+ * @invariants [counts, owners and scores match the tokens on board] AND
+ *             [completeAt[cell] = number of windows holding cell that hold numToWin tokens of one player]
+ * @correspondences self = board
+ */
+public class ThreatTrackingBoard implements IGameBoard {
+    private static final byte NO_OWNER = -1;
+
+    private IGameBoard board;
+    private WindowLayout layout;
+    private char[] playerTokens;
+    private int numPlayers;
+    //tokens of player p in window w are counts[w * playerTokens.length + p]
+    private byte[] counts;
+    //number of different players in each window, and the player when there is only one
+    private byte[] distinct;
+    private byte[] owners;
+    private int[] completeAt;
+    private long[] scores;
+    private long totalScore;
+    //openWindows[p][n] = windows holding n tokens of player p and no others
+    private int[][] openWindows;
+
+    /**
+     * Constructs a tracker around a board, counting the tokens already on it
+     * @pre board != null
+     * @post [self = board] AND [every count matches the tokens on board]
+     * @param board board to wrap; must not be changed except through this wrapper afterwards
+     */
+    public ThreatTrackingBoard(IGameBoard board)
+    {
+        this.board = board;
+        this.layout = WindowLayout.of(board.getNumRows(), board.getNumColumns(), board.getNumToWin());
+        this.playerTokens = new char[2];
+        this.counts = new byte[layout.getNumWindows() * playerTokens.length];
+        this.distinct = new byte[layout.getNumWindows()];
+        this.owners = new byte[layout.getNumWindows()];
+        Arrays.fill(owners, NO_OWNER);
+        this.completeAt = new int[board.getNumRows() * board.getNumColumns()];
+        this.scores = new long[playerTokens.length];
+        this.openWindows = new int[playerTokens.length][board.getNumToWin() + 1];
+        for(int column = 0; column < board.getNumColumns(); column++)
+        {
+            for(int row = 0; row < board.getColumnHeight(column); row++)
+            {
+                added(row * layout.columns + column, indexOf(board.whatsAtPos(row, column)));
+            }
+        }
+    }
+
+    public int placeToken(char p, int c)
+    {
+        int row = board.placeToken(p, c);
+        added(row * layout.columns + c, indexOf(p));
+        return row;
+    }
+
+    public void removeToken(int c)
+    {
+        int row = board.getColumnHeight(c) - 1;
+        char p = board.whatsAtPos(row, c);
+        board.removeToken(c);
+        removed(row * layout.columns + c, indexOf(p));
+    }
+
+    public int undoLastMove()
+    {
+        int c = board.getMove(board.getNumMoves() - 1);
+        removeToken(c);
+        return c;
+    }
+
+    @Override
+    //Overridden so the wrapped board also drops whatever it keeps for the game besides its tokens
+    public void clear()
+    {
+        IGameBoard.super.clear();
+        board.clear();
+    }
+
+    @Override
+    //Overridden to read whether the top cell of the column lies in a complete window
+    public boolean checkForWin(int c)
+    {
+        int height = board.getColumnHeight(c);
+        return height > 0 && completeAt[(height - 1) * layout.columns + c] > 0;
+    }
+
+    @Override
+    //Overridden so the wrapped board's own tie check is used
+    public boolean checkTie()
+    {
+        return board.checkTie();
+    }
+
+    @Override
+    //Overridden so the wrapped board's own key is used
+    public long getZobristKey()
+    {
+        return board.getZobristKey();
+    }
+
+    @Override
+    //Overridden so the wrapped board's own mirrored key is used
+    public long getMirroredKey()
+    {
+        return board.getMirroredKey();
+    }
+
+    /**
+     * Scores the position for a player the way WindowEvaluator does
+     * @pre none
+     * @post self = #self AND [evaluate() = window score of p minus the window scores of every other player]
+     * @param p token of the player to score for
+     * @return score of the position for p
+     */
+    public long evaluate(char p)
+    {
+        return 2 * getWindowScore(p) - totalScore;
+    }
+
+    /**
+     * Gets the running window score of a player
+     * @pre none
+     * @post self = #self AND [getWindowScore() = sum of n * n over p's open windows holding n tokens]
+     * @param p token of the player
+     * @return window score of p, 0 if p has no tokens on the board
+     */
+    public long getWindowScore(char p)
+    {
+        int player = find(p);
+        return player < 0 ? 0 : scores[player];
+    }
+
+    /**
+     * Counts the open windows of a player holding a number of tokens
+     * @pre 1 <= tokens <= numToWin
+     * @post self = #self AND [getOpenWindows() = number of windows holding exactly tokens tokens of p and no
+     *       tokens of any other player]
+     * @param p token of the player
+     * @param tokens number of p's tokens in the window
+     * @return number of such windows
+     */
+    public int getOpenWindows(char p, int tokens)
+    {
+        int player = find(p);
+        return player < 0 ? 0 : openWindows[player][tokens];
+    }
+
+    /**
+     * Counts a player's threats: open windows one token short of a win
+     * @pre none
+     * @post self = #self AND [getThreats() = getOpenWindows(p, numToWin - 1)]
+     * @param p token of the player
+     * @return number of threats of p
+     */
+    public int getThreats(char p)
+    {
+        return getOpenWindows(p, layout.numToWin - 1);
+    }
+
+    public IGameBoard copy()
+    {
+        return new ThreatTrackingBoard(board.copy());
+    }
+
+    public IGameBoard getBoard() { return board; }
+
+    public int getColumnHeight(int c) { return board.getColumnHeight(c); }
+
+    public int getNumMoves() { return board.getNumMoves(); }
+
+    public int getMove(int i) { return board.getMove(i); }
+
+    public char whatsAtPos(int row, int col) { return board.whatsAtPos(row, col); }
+
+    public int getNumRows() { return board.getNumRows(); }
+
+    public int getNumColumns() { return board.getNumColumns(); }
+
+    public int getNumToWin() { return board.getNumToWin(); }
+
+    @Override
+    public String toString()
+    {
+        return board.toString();
+    }
+
+    @Override
+    //Overridden so the wrapped board's own rendering is used
+    public void appendTo(Appendable out) throws IOException
+    {
+        board.appendTo(out);
+    }
+
+    /**
+     * Updates every window through a cell after a token of player was placed there
+     */
+    private void added(int cell, int player)
+    {
+        int stride = playerTokens.length;
+        int numToWin = layout.numToWin;
+        for(int i = layout.cellStart[cell]; i < layout.cellStart[cell + 1]; i++)
+        {
+            int window = layout.cellWindows[i];
+            int had = counts[window * stride + player]++;
+            if(distinct[window] == 0)
+            {
+                distinct[window] = 1;
+                owners[window] = (byte) player;
+                open(player, 1);
+            }
+            else if(owners[window] == player)
+            {
+                close(player, had);
+                open(player, had + 1);
+                if(had + 1 == numToWin)
+                {
+                    markComplete(window, 1);
+                }
+            }
+            else
+            {
+                if(owners[window] != NO_OWNER)
+                {
+                    //the window held only another player's tokens and is now dead
+                    int other = owners[window];
+                    close(other, counts[window * stride + other]);
+                    owners[window] = NO_OWNER;
+                }
+                if(had == 0)
+                {
+                    distinct[window]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates every window through a cell after a token of player was removed from there
+     */
+    private void removed(int cell, int player)
+    {
+        int stride = playerTokens.length;
+        int numToWin = layout.numToWin;
+        for(int i = layout.cellStart[cell]; i < layout.cellStart[cell + 1]; i++)
+        {
+            int window = layout.cellWindows[i];
+            int left = --counts[window * stride + player];
+            if(owners[window] == player)
+            {
+                close(player, left + 1);
+                if(left + 1 == numToWin)
+                {
+                    markComplete(window, -1);
+                }
+                if(left == 0)
+                {
+                    distinct[window] = 0;
+                    owners[window] = NO_OWNER;
+                }
+                else
+                {
+                    open(player, left);
+                }
+            }
+            else if(left == 0 && --distinct[window] == 1)
+            {
+                //only one player is left in the window, so it is open again for them
+                for(int other = 0; other < numPlayers; other++)
+                {
+                    if(counts[window * stride + other] > 0)
+                    {
+                        owners[window] = (byte) other;
+                        open(other, counts[window * stride + other]);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void open(int player, int tokens)
+    {
+        openWindows[player][tokens]++;
+        scores[player] += tokens * tokens;
+        totalScore += tokens * tokens;
+    }
+
+    private void close(int player, int tokens)
+    {
+        openWindows[player][tokens]--;
+        scores[player] -= tokens * tokens;
+        totalScore -= tokens * tokens;
+    }
+
+    private void markComplete(int window, int change)
+    {
+        for(int i = 0; i < layout.numToWin; i++)
+        {
+            completeAt[layout.windowStart[window] + i * layout.windowStep[window]] += change;
+        }
+    }
+
+    private int find(char p)
+    {
+        for(int player = 0; player < numPlayers; player++)
+        {
+            if(playerTokens[player] == p)
+            {
+                return player;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the index of a player, adding them if they have not played yet
+     * @post [indexOf() = index of p in playerTokens] AND [p is in playerTokens]
+     */
+    private int indexOf(char p)
+    {
+        int player = find(p);
+        if(player >= 0)
+        {
+            return player;
+        }
+        if(numPlayers == playerTokens.length)
+        {
+            grow(playerTokens.length * 2);
+        }
+        playerTokens[numPlayers] = p;
+        return numPlayers++;
+    }
+
+    /**
+     * Makes room for more players, moving every window's counts to the wider stride
+     */
+    private void grow(int capacity)
+    {
+        int oldStride = playerTokens.length;
+        byte[] newCounts = new byte[layout.getNumWindows() * capacity];
+        for(int window = 0; window < layout.getNumWindows(); window++)
+        {
+            System.arraycopy(counts, window * oldStride, newCounts, window * capacity, oldStride);
+        }
+        counts = newCounts;
+        playerTokens = Arrays.copyOf(playerTokens, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        openWindows = Arrays.copyOf(openWindows, capacity);
+        for(int player = oldStride; player < capacity; player++)
+        {
+            openWindows[player] = new int[layout.numToWin + 1];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cpsc2150.extendedConnectX.models;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every window of a board shape: each run of numToWin cells along a row, column or diagonal, and for each cell
+ * the windows that hold it. A layout never changes once built, so one is shared by every board of its shape.
+ * <p>
+ * Cells are numbered row * columns + column. A window is stored as its first cell and the step to the next.
+ * @invariants [windowStart.length = windowStep.length = number of windows] AND
+ *             cellStart.length = rows * columns + 1 AND
+ *             [the windows holding cell are cellWindows[cellStart[cell]] to cellWindows[cellStart[cell + 1] - 1]]
+ */
+class WindowLayout {
+    private static final ConcurrentHashMap<Long, WindowLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+    final int rows;
+    final int columns;
+    final int numToWin;
+    final int[] windowStart;
+    final int[] windowStep;
+    final int[] cellStart;
+    final int[] cellWindows;
+
+    private WindowLayout(int rows, int columns, int numToWin)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        //going right, up, up and right, up and left
+        int[] rowSteps = {0, 1, 1, 1};
+        int[] columnSteps = {1, 0, 1, -1};
+        int numWindows = 0;
+        for(int direction = 0; direction < 4; direction++)
+        {
+            numWindows += countStarts(rowSteps[direction], columnSteps[direction]);
+        }
+        windowStart = new int[numWindows];
+        windowStep = new int[numWindows];
+        int[] cellCounts = new int[rows * columns + 1];
+        int window = 0;
+        for(int direction = 0; direction < 4; direction++)
+        {
+            int rowStep = rowSteps[direction];
+            int columnStep = columnSteps[direction];
+            for(int row = 0; row < rows; row++)
+            {
+                for(int column = 0; column < columns; column++)
+                {
+                    if(fits(row, column, rowStep, columnStep))
+                    {
+                        windowStart[window] = row * columns + column;
+                        windowStep[window] = rowStep * columns + columnStep;
+                        for(int i = 0; i < numToWin; i++)
+                        {
+                            cellCounts[windowStart[window] + i * windowStep[window] + 1]++;
+                        }
+                        window++;
+                    }
+                }
+            }
+        }
+        cellStart = new int[rows * columns + 1];
+        for(int cell = 1; cell <= rows * columns; cell++)
+        {
+            cellStart[cell] = cellStart[cell - 1] + cellCounts[cell];
+        }
+        cellWindows = new int[cellStart[rows * columns]];
+        int[] filled = new int[rows * columns];
+        for(window = 0; window < numWindows; window++)
+        {
+            for(int i = 0; i < numToWin; i++)
+            {
+                int cell = windowStart[window] + i * windowStep[window];
+                cellWindows[cellStart[cell] + filled[cell]++] = window;
+            }
+        }
+    }
+
+    /**
+     * Gets the layout of a board shape, building it the first time the shape is seen
+     * @pre [rows, columns and numToWin are a valid IGameBoard shape]
+     * @post [of() = the shared layout of the shape]
+     */
+    static WindowLayout of(int rows, int columns, int numToWin)
+    {
+        long key = ((long) rows << 40) | ((long) columns << 20) | numToWin;
+        return LAYOUTS.computeIfAbsent(key, k -> new WindowLayout(rows, columns, numToWin));
+    }
+
+    int getNumWindows() { return windowStart.length; }
+
+    private int countStarts(int rowStep, int columnStep)
+    {
+        int starts = 0;
+        for(int row = 0; row < rows; row++)
+        {
+            for(int column = 0; column < columns; column++)
+            {
+                if(fits(row, column, rowStep, columnStep))
+                {
+                    starts++;
+                }
+            }
+        }
+        return starts;
+    }
+
+    private boolean fits(int row, int column, int rowStep, int columnStep)
+    {
+        int lastRow = row + (numToWin - 1) * rowStep;
+        int lastColumn = column + (numToWin - 1) * columnStep;
+        return lastRow < rows && lastColumn >= 0 && lastColumn < columns;
+    }
+}
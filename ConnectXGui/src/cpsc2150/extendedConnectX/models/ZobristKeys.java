@@ -0,0 +1,34 @@
+package cpsc2150.extendedConnectX.models;
+
+/**
+ * Zobrist keys for ConnectX positions: every (row, column, token) triple has a fixed pseudo-random
+ * 64 bit key and a position's key is the XOR of the keys of its occupied cells, so placing or removing
+ * a token updates it with a single XOR.
+ * <p>
+ * Instead of storing a table of random numbers for every cell and every possible token, the key of a
+ * triple is computed by the SplitMix64 finalizer, which gives the same well-mixed, fixed values
+ * without any memory.
+ */
+public final class ZobristKeys {
+
+    private ZobristKeys()
+    {
+    }
+
+    /**
+     * Gets the key of a token on a cell
+     * @pre 0 <= row < 65536 AND 0 <= column < 65536
+     * @post [keyFor() = the fixed key of token p at row, column]
+     * @param row row of the cell
+     * @param column column of the cell
+     * @param p token on the cell
+     * @return Zobrist key
+     */
+    public static long keyFor(int row, int column, char p)
+    {
+        long z = ((long) row << 32 | (long) column << 16 | p) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
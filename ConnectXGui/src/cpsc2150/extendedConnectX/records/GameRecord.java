@@ -0,0 +1,109 @@
+package cpsc2150.extendedConnectX.records;
+
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.util.Arrays;
+
+/**
+ * One played game: the board shape, the number of players and the column of every move in order. Players
+ * take turns in GameEngine.PLAYER_TOKENS order, so the moves alone are enough to rebuild every position.
+ * @invariants rows > 0 AND columns > 0 AND numToWin > 0 AND 2 <= numPlayers <= GameEngine.PLAYER_TOKENS.length
+ *             AND [every move is in 0..columns-1]
+ */
+public class GameRecord {
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private int numPlayers;
+    private int[] moves;
+
+    /**
+     * Constructs a record
+     * @pre rows > 0 AND columns > 0 AND numToWin > 0 AND 2 <= numPlayers <= GameEngine.PLAYER_TOKENS.length AND
+     *      [moves is a legal game on a rows x columns board]
+     * @post [record holds the shape, numPlayers and a copy of moves]
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param numPlayers number of players
+     * @param moves column of every move, in order
+     */
+    public GameRecord(int rows, int columns, int numToWin, int numPlayers, int[] moves)
+    {
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        this.numPlayers = numPlayers;
+        this.moves = Arrays.copyOf(moves, moves.length);
+    }
+
+    /**
+     * Records the moves played so far on a board
+     * @pre 2 <= numPlayers <= GameEngine.PLAYER_TOKENS.length
+     * @post board = #board AND [of() = a record of board's shape and move history]
+     * @param board board to record
+     * @param numPlayers number of players in the game
+     * @return record of the game
+     */
+    public static GameRecord of(IGameBoard board, int numPlayers)
+    {
+        int[] moves = new int[board.getNumMoves()];
+        for(int i = 0; i < moves.length; i++)
+        {
+            moves[i] = board.getMove(i);
+        }
+        return new GameRecord(board.getNumRows(), board.getNumColumns(), board.getNumToWin(), numPlayers, moves);
+    }
+
+    /**
+     * Plays the recorded moves onto a board
+     * @pre [board is empty and has the recorded shape]
+     * @post [board holds every recorded move, played in turn by the first numPlayers PLAYER_TOKENS]
+     * @param board board to play onto
+     */
+    public void replay(IGameBoard board)
+    {
+        for(int i = 0; i < moves.length; i++)
+        {
+            board.placeToken(GameEngine.PLAYER_TOKENS[i % numPlayers], moves[i]);
+        }
+    }
+
+    public int getNumRows() { return rows; }
+
+    public int getNumColumns() { return columns; }
+
+    public int getNumToWin() { return numToWin; }
+
+    public int getNumPlayers() { return numPlayers; }
+
+    public int getNumMoves() { return moves.length; }
+
+    public int getMove(int i) { return moves[i]; }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(!(obj instanceof GameRecord))
+        {
+            return false;
+        }
+        GameRecord other = (GameRecord) obj;
+        return rows == other.rows && columns == other.columns && numToWin == other.numToWin
+                && numPlayers == other.numPlayers && Arrays.equals(moves, other.moves);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * (31 * (31 * (31 * rows + columns) + numToWin) + numPlayers) + Arrays.hashCode(moves);
+    }
+
+    @Override
+    public String toString()
+    {
+        return rows + "x" + columns + " win " + numToWin + " players " + numPlayers + " moves "
+                + Arrays.toString(moves);
+    }
+}
@@ -0,0 +1,215 @@
+package cpsc2150.extendedConnectX.records;
+
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Reads games written by GameRecordWriter, one at a time, either as GameRecords or played straight onto a board
+ * without building a record.
+ * <p>
+ * Every game is checked as it is read: a shape no IGameBoard can have, a player count outside 2 to
+ * GameEngine.PLAYER_TOKENS.length, or a move outside the board is reported as a StreamCorruptedException, before
+ * anything is allocated for the moves.
+ * <p>
+ * Reads are buffered internally. Not thread safe.
+ * @invariants 0 <= position <= limit <= buffer.length
+ */
+public class GameRecordReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    //the largest board an IGameBoard can have
+    private static final int MAX_SIZE = 100;
+
+    /**
+     * Makes the empty board a game is replayed onto
+     */
+    public interface BoardMaker {
+        IGameBoard make(int rows, int columns, int numToWin);
+    }
+
+    private InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int[] moves = new int[64];
+    private int[] heights = new int[MAX_SIZE];
+    //shape and players of the game read last
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private int numPlayers;
+
+    /**
+     * Constructs a reader and checks the stream header
+     * @pre in != null
+     * @post [the header has been read from in]
+     * @param in stream to read from; closed when this reader is closed
+     * @throws IOException if the stream cannot be read or does not start with a game record header
+     */
+    public GameRecordReader(InputStream in) throws IOException
+    {
+        this.in = in;
+        for(byte expected : GameRecordWriter.MAGIC)
+        {
+            if(readByte() != expected)
+            {
+                throw new StreamCorruptedException("Not a game record stream");
+            }
+        }
+        int version = readByte();
+        if(version != GameRecordWriter.VERSION)
+        {
+            throw new StreamCorruptedException("Unsupported game record version " + version);
+        }
+    }
+
+    /**
+     * Reads the next game
+     * @pre none
+     * @post [read() = the next game in the stream, or null if the stream has ended]
+     * @return next game, or null at the end of the stream
+     * @throws IOException if the stream cannot be read, ends inside a game or holds a game that cannot be played
+     */
+    public GameRecord read() throws IOException
+    {
+        if(!hasMore())
+        {
+            return null;
+        }
+        int numMoves = readGame();
+        int[] played = new int[numMoves];
+        System.arraycopy(moves, 0, played, 0, numMoves);
+        return new GameRecord(rows, columns, numToWin, numPlayers, played);
+    }
+
+    /**
+     * Reads the next game and plays it onto a new board
+     * @pre maker != null
+     * @post [replayNext() = a board from maker holding every move of the next game, played in turn by the first
+     *       players of GameEngine.PLAYER_TOKENS, or null if the stream has ended]
+     * @param maker makes the empty board of the game's shape
+     * @return board of the replayed game, or null at the end of the stream
+     * @throws IOException if the stream cannot be read, ends inside a game or holds a game that cannot be played
+     */
+    public IGameBoard replayNext(BoardMaker maker) throws IOException
+    {
+        if(!hasMore())
+        {
+            return null;
+        }
+        int numMoves = readGame();
+        IGameBoard board = maker.make(rows, columns, numToWin);
+        for(int i = 0; i < numMoves; i++)
+        {
+            board.placeToken(GameEngine.PLAYER_TOKENS[i % numPlayers], moves[i]);
+        }
+        return board;
+    }
+
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads the shape, players, move count and moves of a game into rows, columns, numToWin, numPlayers and moves
+     * @post [readGame() = number of moves read] AND [every move is a column of the board that was not full]
+     * @throws StreamCorruptedException if the game could not have been played
+     */
+    private int readGame() throws IOException
+    {
+        rows = readVarint();
+        columns = readVarint();
+        numToWin = readVarint();
+        numPlayers = readVarint();
+        //a varint is read as an int, so a corrupt one may be negative
+        if(rows < 1 || rows > MAX_SIZE || columns < 1 || columns > MAX_SIZE)
+        {
+            throw new StreamCorruptedException("Game record has a " + rows + "x" + columns + " board");
+        }
+        if(numToWin < 1 || numToWin > Math.max(rows, columns))
+        {
+            throw new StreamCorruptedException("Game record needs " + numToWin + " to win on a " + rows + "x"
+                    + columns + " board");
+        }
+        if(numPlayers < 2 || numPlayers > GameEngine.PLAYER_TOKENS.length)
+        {
+            throw new StreamCorruptedException("Game record has " + numPlayers + " players");
+        }
+        int numMoves = readVarint();
+        if(numMoves < 0 || numMoves > rows * columns)
+        {
+            throw new StreamCorruptedException("Game record has " + numMoves + " moves on a " + rows + "x"
+                    + columns + " board");
+        }
+        if(numMoves > moves.length)
+        {
+            moves = new int[Math.max(numMoves, moves.length * 2)];
+        }
+        for(int c = 0; c < columns; c++)
+        {
+            heights[c] = 0;
+        }
+        for(int i = 0; i < numMoves; i++)
+        {
+            int column = readVarint();
+            if(column < 0 || column >= columns || heights[column]++ == rows)
+            {
+                throw new StreamCorruptedException("Game record move " + i + " is in column " + column
+                        + ", which is not a free column of a " + rows + "x" + columns + " board");
+            }
+            moves[i] = column;
+        }
+        return numMoves;
+    }
+
+    private boolean hasMore() throws IOException
+    {
+        return position < limit || fill();
+    }
+
+    private int readVarint() throws IOException
+    {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7)
+        {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Varint is too long");
+    }
+
+    private int readByte() throws IOException
+    {
+        if(position == limit && !fill())
+        {
+            throw new EOFException("Game record stream ended inside a game");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Reads more of the stream into the buffer
+     * @post [fill() = false if the stream has ended, otherwise position < limit]
+     */
+    private boolean fill() throws IOException
+    {
+        int read = in.read(buffer, 0, buffer.length);
+        if(read <= 0)
+        {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package cpsc2150.extendedConnectX.records;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes games in the compact binary record format to a stream.
+ * <p>
+ * A stream starts with the four bytes "CXGR" and a version byte. Each game that follows is a list of unsigned
+ * varints (7 bits per byte, low bits first, high bit set on every byte but the last): rows, columns,
+ * numToWin, number of players, number of moves, then the column of each move. Every value on a board of up to
+ * 128 columns fits in one byte, so a game costs about one byte per move.
+ * <p>
+ * Writes are buffered internally; call flush or close to push them to the stream. Not thread safe.
+ * @invariants 0 <= count <= buffer.length
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+    static final byte[] MAGIC = {'C', 'X', 'G', 'R'};
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    //the longest a varint of an int can be
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private OutputStream out;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    /**
+     * Constructs a writer and writes the stream header
+     * @pre out != null
+     * @post [the header is buffered for out]
+     * @param out stream to write to; closed when this writer is closed
+     */
+    public GameRecordWriter(OutputStream out)
+    {
+        this.out = out;
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        buffer[MAGIC.length] = VERSION;
+        count = MAGIC.length + 1;
+    }
+
+    /**
+     * Writes one game
+     * @pre record != null
+     * @post [record is buffered for out]
+     * @param record game to write
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(GameRecord record) throws IOException
+    {
+        writeHeader(record.getNumRows(), record.getNumColumns(), record.getNumToWin(), record.getNumPlayers(),
+                record.getNumMoves());
+        for(int i = 0; i < record.getNumMoves(); i++)
+        {
+            writeVarint(record.getMove(i));
+        }
+    }
+
+    /**
+     * Writes the game played so far on a board, straight from its move history
+     * @pre 2 <= numPlayers
+     * @post board = #board AND [a record of board's shape and moves is buffered for out]
+     * @param board board whose moves to write
+     * @param numPlayers number of players in the game
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(IGameBoard board, int numPlayers) throws IOException
+    {
+        int numMoves = board.getNumMoves();
+        writeHeader(board.getNumRows(), board.getNumColumns(), board.getNumToWin(), numPlayers, numMoves);
+        for(int i = 0; i < numMoves; i++)
+        {
+            writeVarint(board.getMove(i));
+        }
+    }
+
+    public void flush() throws IOException
+    {
+        drain();
+        out.flush();
+    }
+
+    public void close() throws IOException
+    {
+        try
+        {
+            drain();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private void writeHeader(int rows, int columns, int numToWin, int numPlayers, int numMoves) throws IOException
+    {
+        writeVarint(rows);
+        writeVarint(columns);
+        writeVarint(numToWin);
+        writeVarint(numPlayers);
+        writeVarint(numMoves);
+    }
+
+    /**
+     * Buffers a value as an unsigned varint
+     * @pre value >= 0
+     */
+    private void writeVarint(int value) throws IOException
+    {
+        if(count + MAX_VARINT_BYTES > buffer.length)
+        {
+            drain();
+        }
+        while((value & ~0x7F) != 0)
+        {
+            buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    private void drain() throws IOException
+    {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+}
@@ -0,0 +1,1036 @@
+package cpsc2150.extendedConnectX.records;
+
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A crash-safe store of the games in progress: every game start, move, undo and game end is appended to a
+ * journal shared by all games, and the games are rebuilt from it when the journal is opened again.
+ * <p>
+ * Appends only encode the entry into a memory buffer and update the games held in memory. One background
+ * thread writes the buffer to the journal and forces it to disk, so every append made while the previous
+ * write was being forced goes out in the next write with a single fsync (group commit). sync waits until an
+ * append is on disk; callers that do not wait keep appending at memory speed.
+ * <p>
+ * Appends that are not yet being written are held in memory up to maxPendingBytes. Past that an append waits
+ * for the writer thread to take the buffer, so a stalled disk slows the games down instead of filling the heap.
+ * <p>
+ * The journal is a directory of files named by the sequence number of the last entry before them:
+ * <ul>
+ * <li>{@code snapshot-N.cxsn}: every game in progress after entry N, the bytes "CXSN", a version int, N, the next
+ * game id and the game count, then each game as varints (id, rows, columns, numToWin, players, number of
+ * moves, columns of the moves) and a CRC32C of everything before it</li>
+ * <li>{@code journal-N.cxj}: the bytes "CXJN", a version int and N, then the entries after N in frames of
+ * a length int, a CRC32C int and that many bytes of entries, one frame per write. An entry is a type byte,
+ * the game id and the type's values, all varints</li>
+ * </ul>
+ * After every snapshotEntries entries the writer thread also writes a snapshot, starts a new journal file and
+ * deletes the older files, so opening the journal reads one snapshot and replays at most about snapshotEntries
+ * entries. Snapshots are written to a temporary file and renamed, and a journal file is only started once its
+ * snapshot is on disk, so a crash at any point leaves the latest snapshot and the journal files after it. A
+ * frame torn by a crash fails its length or CRC check and ends the replay.
+ * <p>
+ * While open the journal holds a lock on {@code journal.lock} in its directory, and opening a directory whose
+ * lock is held fails, so a second copy of the program cannot delete the files the first is still writing. The
+ * operating system drops the lock when the process ends, even by a crash.
+ * <p>
+ * Finished games are dropped from the journal when they end. Thread safe.
+ * @invariants 0 <= durable <= sequence AND [games holds every game started and not ended, with the moves of
+ *             its entries up to sequence] AND [the entries up to durable are on disk] AND
+ *             pendingCount <= maxPendingBytes
+ */
+public class MoveJournal implements Closeable {
+    /**
+     * Directory the GUI keeps its journal in, relative to the working directory
+     */
+    public static final String DEFAULT_DIRECTORY = "journal";
+    /**
+     * Entries between snapshots when no other interval is given
+     */
+    public static final int DEFAULT_SNAPSHOT_ENTRIES = 100_000;
+    /**
+     * Bytes of entries held in memory waiting for the writer thread when no other limit is given
+     */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 16 << 20;
+
+    private static final String LOCK_FILE = "journal.lock";
+    //directories of the journals open in this process; closing any channel to a lock file would drop the lock,
+    //so a second journal here must be refused before it opens one
+    private static final Set<Path> LOCKED_DIRECTORIES = new HashSet<>();
+    private static final int JOURNAL_MAGIC = 'C' << 24 | 'X' << 16 | 'J' << 8 | 'N';
+    private static final int SNAPSHOT_MAGIC = 'C' << 24 | 'X' << 16 | 'S' << 8 | 'N';
+    private static final int VERSION = 1;
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int SNAPSHOT_HEADER_BYTES = 28;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+    //a type byte, a long varint and four int varints
+    private static final int MAX_ENTRY_BYTES = 1 + 10 + 4 * 5;
+
+    private static final int START = 1;
+    private static final int MOVE = 2;
+    private static final int UNDO = 3;
+    private static final int END = 4;
+
+    private final Path directory;
+    private final int snapshotEntries;
+    private final int maxPendingBytes;
+
+    private final Map<Long, Game> games = new HashMap<>();
+    private long nextGameId;
+    private long sequence;
+    private long durable;
+    private long entriesSinceSnapshot;
+    private byte[] pending = new byte[BUFFER_SIZE];
+    private int pendingCount;
+    private byte[] spare = new byte[BUFFER_SIZE];
+    private IOException failure;
+    private boolean closed;
+
+    //holds the directory's lock until close
+    private final FileChannel lock;
+    private final Path lockedDirectory;
+    //only used by the writer thread once the journal is open
+    private FileChannel segment;
+    private final CRC32C crc = new CRC32C();
+    private final Thread writer;
+
+    private long commits;
+    private long snapshots;
+    private long stalls;
+    private long bytesWritten;
+    private long recoveredEntries;
+    private long recoveryNanos;
+
+    /**
+     * Opens the journal in a directory with the default snapshot interval
+     * @pre directory != null
+     * @post [see MoveJournal(directory, DEFAULT_SNAPSHOT_ENTRIES)]
+     * @param directory directory of the journal; created if it does not exist
+     * @throws IOException if the journal cannot be read or written
+     */
+    public MoveJournal(Path directory) throws IOException
+    {
+        this(directory, DEFAULT_SNAPSHOT_ENTRIES);
+    }
+
+    /**
+     * Opens the journal in a directory, rebuilding the games in progress from its latest snapshot and the
+     * entries after it
+     * @pre directory != null AND snapshotEntries > 0
+     * @post [getGames() = every game the journal holds up to its last whole frame] AND [a snapshot of them is on
+     *       disk and new entries go to a new journal file] AND [getRecoveredEntries() and getRecoveryNanos()
+     *       describe the replay]
+     * @param directory directory of the journal; created if it does not exist
+     * @param snapshotEntries entries appended between snapshots
+     * @throws IOException if the journal cannot be read or written, or holds no usable snapshot
+     */
+    public MoveJournal(Path directory, int snapshotEntries) throws IOException
+    {
+        this(directory, snapshotEntries, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Opens the journal in a directory, rebuilding the games in progress from its latest snapshot and the
+     * entries after it, and holding at most maxPendingBytes of entries in memory before appends wait
+     * @pre directory != null AND snapshotEntries > 0 AND maxPendingBytes >= BUFFER_SIZE
+     * @post [see MoveJournal(directory, snapshotEntries)] AND this.maxPendingBytes = maxPendingBytes
+     * @param directory directory of the journal; created if it does not exist
+     * @param snapshotEntries entries appended between snapshots
+     * @param maxPendingBytes most bytes of entries waiting for the writer thread
+     * @throws IOException if the journal cannot be read or written, holds no usable snapshot, or is open in
+     *         another journal
+     */
+    public MoveJournal(Path directory, int snapshotEntries, int maxPendingBytes) throws IOException
+    {
+        this.directory = directory;
+        this.snapshotEntries = snapshotEntries;
+        this.maxPendingBytes = maxPendingBytes;
+        Files.createDirectories(directory);
+        lockedDirectory = directory.toRealPath();
+        lock = lockDirectory(lockedDirectory);
+        try
+        {
+            long start = System.nanoTime();
+            recover();
+            recoveryNanos = System.nanoTime() - start;
+
+            //a fresh snapshot and journal file leave any torn frame behind
+            rollOver(sequence, encodeSnapshot());
+        }
+        catch(IOException | RuntimeException e)
+        {
+            unlockDirectory(lockedDirectory, lock);
+            throw e;
+        }
+        durable = sequence;
+        writer = new Thread(this::writeLoop, "ConnectX journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Starts a game
+     * @pre rows > 0 AND columns > 0 AND numToWin > 0 AND 2 <= numPlayers
+     * @post [a new game with no moves is held under startGame()] AND sequence = #sequence + 1
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param numPlayers number of players
+     * @return id of the game
+     * @throws IOException if writing the journal has failed, or the wait for room in memory was interrupted
+     */
+    public synchronized long startGame(int rows, int columns, int numToWin, int numPlayers) throws IOException
+    {
+        int start = reserve();
+        long id = nextGameId;
+        apply(START, id, new int[]{rows, columns, numToWin, numPlayers});
+        pending[pendingCount++] = START;
+        putLong(id);
+        putInt(rows);
+        putInt(columns);
+        putInt(numToWin);
+        putInt(numPlayers);
+        appended(start);
+        return id;
+    }
+
+    /**
+     * Records a move
+     * @pre [game id is held] AND 0 <= column < [its number of columns]
+     * @post [column is the last move of game id] AND sequence = #sequence + 1
+     * @param id game the move is played in
+     * @param column column of the move
+     * @return sequence number of the entry, for sync
+     * @throws IOException if writing the journal has failed, or the wait for room in memory was interrupted
+     */
+    public synchronized long move(long id, int column) throws IOException
+    {
+        int start = reserve();
+        apply(MOVE, id, new int[]{column});
+        pending[pendingCount++] = MOVE;
+        putLong(id);
+        putInt(column);
+        return appended(start);
+    }
+
+    /**
+     * Records the last move of a game being taken back
+     * @pre [game id is held and has a move]
+     * @post [the last move of game id is removed] AND sequence = #sequence + 1
+     * @param id game the move is taken back in
+     * @return sequence number of the entry, for sync
+     * @throws IOException if writing the journal has failed, or the wait for room in memory was interrupted
+     */
+    public synchronized long undo(long id) throws IOException
+    {
+        return append(UNDO, id);
+    }
+
+    /**
+     * Records the end of a game, which is no longer held
+     * @pre [game id is held]
+     * @post [game id is not held] AND sequence = #sequence + 1
+     * @param id game that ended
+     * @return sequence number of the entry, for sync
+     * @throws IOException if writing the journal has failed, or the wait for room in memory was interrupted
+     */
+    public synchronized long endGame(long id) throws IOException
+    {
+        return append(END, id);
+    }
+
+    /**
+     * Waits until an entry is on disk
+     * @pre sequence number was returned by an append of this journal
+     * @post [every entry up to sequence number is on disk]
+     * @param sequenceNumber entry to wait for
+     * @throws IOException if writing the journal has failed, the journal was closed first or the wait was
+     *         interrupted
+     */
+    public synchronized void sync(long sequenceNumber) throws IOException
+    {
+        while(durable < sequenceNumber)
+        {
+            if(failure != null)
+            {
+                throw new IOException("Writing the journal failed", failure);
+            }
+            if(closed && !writer.isAlive())
+            {
+                throw new IOException("Journal is closed");
+            }
+            try
+            {
+                wait();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the journal");
+            }
+        }
+    }
+
+    /**
+     * Waits until every entry appended so far is on disk
+     * @post [every entry up to sequence is on disk]
+     * @throws IOException if writing the journal has failed or the wait was interrupted
+     */
+    public void sync() throws IOException
+    {
+        long last;
+        synchronized(this)
+        {
+            last = sequence;
+        }
+        sync(last);
+    }
+
+    /**
+     * Writes every entry appended so far and closes the journal
+     * @post [every entry appended is on disk, unless writing failed] AND [no more entries can be appended]
+     * @throws IOException if writing the journal failed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized(this)
+        {
+            if(closed)
+            {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try
+        {
+            writer.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted closing the journal");
+        }
+        segment.close();
+        unlockDirectory(lockedDirectory, lock);
+        synchronized(this)
+        {
+            if(failure != null)
+            {
+                throw new IOException("Writing the journal failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Gets the games in progress
+     * @post [getGames() = a new map of every held game's record, by id]
+     * @return games by id
+     */
+    public synchronized Map<Long, GameRecord> getGames()
+    {
+        Map<Long, GameRecord> records = new TreeMap<>();
+        for(Map.Entry<Long, Game> entry : games.entrySet())
+        {
+            records.put(entry.getKey(), entry.getValue().toRecord());
+        }
+        return records;
+    }
+
+    /**
+     * Gets one game in progress
+     * @post [getGame() = the record of game id, or null if it is not held]
+     * @param id game to get
+     * @return record of the game or null
+     */
+    public synchronized GameRecord getGame(long id)
+    {
+        Game game = games.get(id);
+        return game == null ? null : game.toRecord();
+    }
+
+    /**
+     * Rebuilds the board of a game in progress
+     * @pre maker != null
+     * @post [rebuild() = a board made by maker with every move of game id played in turn, or null if the game is
+     *       not held]
+     * @param id game to rebuild
+     * @param maker makes the empty board
+     * @return board of the game or null
+     */
+    public IGameBoard rebuild(long id, GameRecordReader.BoardMaker maker)
+    {
+        GameRecord record = getGame(id);
+        if(record == null)
+        {
+            return null;
+        }
+        IGameBoard board = maker.make(record.getNumRows(), record.getNumColumns(), record.getNumToWin());
+        record.replay(board);
+        return board;
+    }
+
+    public synchronized long getSequence() { return sequence; }
+
+    public synchronized long getDurableSequence() { return durable; }
+
+    public synchronized long getCommits() { return commits; }
+
+    public synchronized long getSnapshots() { return snapshots; }
+
+    /**
+     * Gets how many appends had to wait because maxPendingBytes of entries were already held in memory
+     * @post [getStalls() = number of appends that waited for the writer thread]
+     * @return appends that waited
+     */
+    public synchronized long getStalls() { return stalls; }
+
+    public int getMaxPendingBytes() { return maxPendingBytes; }
+
+    public synchronized long getBytesWritten() { return bytesWritten; }
+
+    public long getRecoveredEntries() { return recoveredEntries; }
+
+    public long getRecoveryNanos() { return recoveryNanos; }
+
+    public Path getDirectory() { return directory; }
+
+    @Override
+    public synchronized String toString()
+    {
+        return directory + ": " + games.size() + " games, " + sequence + " entries, " + commits + " commits, "
+                + snapshots + " snapshots, recovered " + recoveredEntries + " entries in " + recoveryNanos / 1000
+                + " us";
+    }
+
+    /**
+     * The state of one game in progress
+     */
+    private static class Game {
+        private final int rows;
+        private final int columns;
+        private final int numToWin;
+        private final int numPlayers;
+        private int[] moves = new int[16];
+        private int numMoves;
+
+        private Game(int rows, int columns, int numToWin, int numPlayers)
+        {
+            this.rows = rows;
+            this.columns = columns;
+            this.numToWin = numToWin;
+            this.numPlayers = numPlayers;
+        }
+
+        private GameRecord toRecord()
+        {
+            return new GameRecord(rows, columns, numToWin, numPlayers, Arrays.copyOf(moves, numMoves));
+        }
+    }
+
+    /**
+     * Applies an entry to the games held, both when appending and when replaying
+     * @post [games holds the result of the entry] AND nextGameId > every game id started
+     * @throws IllegalArgumentException if the entry does not fit the games held
+     */
+    private void apply(int type, long id, int[] values)
+    {
+        if(type == START)
+        {
+            if(games.containsKey(id))
+            {
+                throw new IllegalArgumentException("Game " + id + " is already started");
+            }
+            games.put(id, new Game(values[0], values[1], values[2], values[3]));
+            nextGameId = Math.max(nextGameId, id + 1);
+            return;
+        }
+        Game game = games.get(id);
+        if(game == null)
+        {
+            throw new IllegalArgumentException("No game " + id);
+        }
+        switch(type)
+        {
+            case MOVE:
+                if(values[0] < 0 || values[0] >= game.columns)
+                {
+                    throw new IllegalArgumentException("Column " + values[0] + " is off the board");
+                }
+                if(game.numMoves == game.moves.length)
+                {
+                    game.moves = Arrays.copyOf(game.moves, game.numMoves * 2);
+                }
+                game.moves[game.numMoves++] = values[0];
+                break;
+            case UNDO:
+                if(game.numMoves == 0)
+                {
+                    throw new IllegalArgumentException("Game " + id + " has no move to undo");
+                }
+                game.numMoves--;
+                break;
+            case END:
+                games.remove(id);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown entry type " + type);
+        }
+    }
+
+    private long append(int type, long id) throws IOException
+    {
+        int start = reserve();
+        apply(type, id, null);
+        pending[pendingCount++] = (byte) type;
+        putLong(id);
+        return appended(start);
+    }
+
+    private void checkOpen() throws IOException
+    {
+        if(failure != null)
+        {
+            throw new IOException("Writing the journal failed", failure);
+        }
+        if(closed)
+        {
+            throw new IllegalStateException("The journal is closed");
+        }
+    }
+
+    /**
+     * Makes room for an entry in the pending buffer, waiting for the writer thread to take the buffer if it
+     * already holds maxPendingBytes; called before an entry is applied, so an append that fails changes nothing
+     * @post [pending has room for MAX_ENTRY_BYTES more] AND pendingCount + MAX_ENTRY_BYTES <= maxPendingBytes AND
+     *       reserve() = pendingCount
+     * @throws IOException if writing the journal has failed or the wait was interrupted
+     */
+    private int reserve() throws IOException
+    {
+        checkOpen();
+        if(pendingCount + MAX_ENTRY_BYTES > maxPendingBytes)
+        {
+            stalls++;
+            do
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for room in the journal");
+                }
+                checkOpen();
+            }
+            while(pendingCount + MAX_ENTRY_BYTES > maxPendingBytes);
+        }
+        if(pendingCount + MAX_ENTRY_BYTES > pending.length)
+        {
+            pending = Arrays.copyOf(pending, Math.min(pending.length * 2, maxPendingBytes));
+        }
+        return pendingCount;
+    }
+
+    private long appended(int start)
+    {
+        entriesSinceSnapshot++;
+        //the writer thread only waits while the buffer is empty, so only the first entry of a batch wakes it
+        if(start == 0)
+        {
+            notifyAll();
+        }
+        return ++sequence;
+    }
+
+    private void putInt(int value)
+    {
+        while((value & ~0x7F) != 0)
+        {
+            pending[pendingCount++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        pending[pendingCount++] = (byte) value;
+    }
+
+    private void putLong(long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            pending[pendingCount++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        pending[pendingCount++] = (byte) value;
+    }
+
+    /**
+     * Writes and forces batches of entries until the journal is closed and every entry is written
+     * @post [every entry appended before close is on disk, or failure is set]
+     */
+    private void writeLoop()
+    {
+        try
+        {
+            while(true)
+            {
+                byte[] batch;
+                int length;
+                long batchSequence;
+                byte[] snapshot = null;
+                synchronized(this)
+                {
+                    while(pendingCount == 0 && !closed)
+                    {
+                        wait();
+                    }
+                    if(pendingCount == 0)
+                    {
+                        return;
+                    }
+                    //appends carry on into the other buffer while this one is written
+                    batch = pending;
+                    length = pendingCount;
+                    batchSequence = sequence;
+                    pending = spare;
+                    pendingCount = 0;
+                    spare = batch;
+                    //appends waiting for room can go on now that the buffer is empty
+                    notifyAll();
+                    if(entriesSinceSnapshot >= snapshotEntries)
+                    {
+                        snapshot = encodeSnapshot();
+                        entriesSinceSnapshot = 0;
+                    }
+                }
+                writeFrame(batch, length);
+                segment.force(false);
+                if(snapshot != null)
+                {
+                    rollOver(batchSequence, snapshot);
+                }
+                synchronized(this)
+                {
+                    durable = batchSequence;
+                    commits++;
+                    bytesWritten += FRAME_HEADER_BYTES + length;
+                    if(snapshot != null)
+                    {
+                        snapshots++;
+                    }
+                    notifyAll();
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            synchronized(this)
+            {
+                failure = e;
+                notifyAll();
+            }
+        }
+        catch(InterruptedException e)
+        {
+            synchronized(this)
+            {
+                failure = new InterruptedIOException("Journal writer interrupted");
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeFrame(byte[] batch, int length) throws IOException
+    {
+        crc.reset();
+        crc.update(batch, 0, length);
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        header.putInt(length).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] buffers = {header, ByteBuffer.wrap(batch, 0, length)};
+        while(buffers[1].hasRemaining())
+        {
+            segment.write(buffers);
+        }
+    }
+
+    /**
+     * Writes the snapshot of the games after an entry, starts the journal file after it and deletes the files
+     * before it
+     * @pre [snapshot holds the games after entry last and every entry up to last is on disk]
+     * @post [snapshot-last and an empty journal-last are on disk and new frames go to journal-last] AND
+     *       [no older snapshot or journal file is left]
+     */
+    private void rollOver(long last, byte[] snapshot) throws IOException
+    {
+        Path snapshotFile = directory.resolve(fileName("snapshot-", last, ".cxsn"));
+        Path temporary = directory.resolve(fileName("snapshot-", last, ".tmp"));
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            while(buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try
+        {
+            Files.move(temporary, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(AtomicMoveNotSupportedException e)
+        {
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory();
+
+        FileChannel next = FileChannel.open(directory.resolve(fileName("journal-", last, ".cxj")),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(last).flip();
+        while(header.hasRemaining())
+        {
+            next.write(header);
+        }
+        next.force(true);
+        forceDirectory();
+        if(segment != null)
+        {
+            segment.close();
+        }
+        segment = next;
+
+        for(long older : list("snapshot-", ".cxsn"))
+        {
+            if(older < last)
+            {
+                Files.deleteIfExists(directory.resolve(fileName("snapshot-", older, ".cxsn")));
+            }
+        }
+        for(long older : list("journal-", ".cxj"))
+        {
+            if(older < last)
+            {
+                Files.deleteIfExists(directory.resolve(fileName("journal-", older, ".cxj")));
+            }
+        }
+    }
+
+    private void forceDirectory()
+    {
+        //makes renames and new files durable where the platform allows opening a directory
+        try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+        {
+            channel.force(true);
+        }
+        catch(IOException e)
+        {
+            //not supported on every platform; the files themselves are already forced
+        }
+    }
+
+    /**
+     * Encodes the games held as a snapshot after the current sequence
+     * @pre [called holding the lock, or before the writer thread starts]
+     */
+    private byte[] encodeSnapshot()
+    {
+        int bytes = SNAPSHOT_HEADER_BYTES + 4;
+        for(Game game : games.values())
+        {
+            bytes += 10 + 5 * (5 + game.numMoves);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(sequence).putLong(nextGameId).putInt(games.size());
+        for(Map.Entry<Long, Game> entry : games.entrySet())
+        {
+            Game game = entry.getValue();
+            putVarint(buffer, entry.getKey());
+            putVarint(buffer, game.rows);
+            putVarint(buffer, game.columns);
+            putVarint(buffer, game.numToWin);
+            putVarint(buffer, game.numPlayers);
+            putVarint(buffer, game.numMoves);
+            for(int i = 0; i < game.numMoves; i++)
+            {
+                putVarint(buffer, game.moves[i]);
+            }
+        }
+        CRC32C check = new CRC32C();
+        check.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) check.getValue());
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value)
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Loads the latest readable snapshot and replays the journal files after it
+     * @post [games, nextGameId and sequence hold the state after the last whole frame] AND
+     *       [recoveredEntries = number of entries replayed]
+     * @throws StreamCorruptedException if no snapshot can be read but the journal does not start from empty
+     */
+    private void recover() throws IOException
+    {
+        List<Long> snapshotNumbers = list("snapshot-", ".cxsn");
+        List<Long> journalNumbers = list("journal-", ".cxj");
+        Collections.reverse(snapshotNumbers);
+        boolean loaded = false;
+        for(long number : snapshotNumbers)
+        {
+            if(loadSnapshot(directory.resolve(fileName("snapshot-", number, ".cxsn")), number))
+            {
+                loaded = true;
+                break;
+            }
+        }
+        if(!loaded && !journalNumbers.isEmpty() && journalNumbers.get(0) != 0)
+        {
+            throw new StreamCorruptedException("No readable snapshot in " + directory);
+        }
+        long base = sequence;
+        for(long number : journalNumbers)
+        {
+            if(number < base)
+            {
+                continue;
+            }
+            if(number != sequence || !replay(directory.resolve(fileName("journal-", number, ".cxj")), number))
+            {
+                //a gap or a torn frame: nothing after it can be trusted
+                break;
+            }
+        }
+        recoveredEntries = sequence - base;
+    }
+
+    /**
+     * @post [loadSnapshot() = true and the games are those of the snapshot, or false and nothing is changed]
+     */
+    private boolean loadSnapshot(Path file, long number) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(file);
+        if(bytes.length < SNAPSHOT_HEADER_BYTES + 4)
+        {
+            return false;
+        }
+        CRC32C check = new CRC32C();
+        check.update(bytes, 0, bytes.length - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if(buffer.getInt(bytes.length - 4) != (int) check.getValue() || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt() != VERSION || buffer.getLong() != number)
+        {
+            return false;
+        }
+        long next = buffer.getLong();
+        int count = buffer.getInt();
+        Map<Long, Game> loaded = new HashMap<>();
+        for(int i = 0; i < count; i++)
+        {
+            long id = getVarint(buffer);
+            Game game = new Game((int) getVarint(buffer), (int) getVarint(buffer), (int) getVarint(buffer),
+                    (int) getVarint(buffer));
+            game.numMoves = (int) getVarint(buffer);
+            game.moves = new int[Math.max(16, game.numMoves)];
+            for(int move = 0; move < game.numMoves; move++)
+            {
+                game.moves[move] = (int) getVarint(buffer);
+            }
+            loaded.put(id, game);
+        }
+        games.clear();
+        games.putAll(loaded);
+        nextGameId = next;
+        sequence = number;
+        return true;
+    }
+
+    /**
+     * Replays the frames of one journal file
+     * @post [every whole frame of the file is applied and counted in sequence] AND
+     *       [replay() = true iff the file ended cleanly after its last frame]
+     */
+    private boolean replay(Path file, long number) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if(bytes.length < JOURNAL_HEADER_BYTES || buffer.getInt() != JOURNAL_MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != number)
+        {
+            return false;
+        }
+        CRC32C check = new CRC32C();
+        int[] values = new int[4];
+        while(buffer.remaining() >= FRAME_HEADER_BYTES)
+        {
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if(length < 0 || length > buffer.remaining())
+            {
+                return false;
+            }
+            check.reset();
+            check.update(bytes, buffer.position(), length);
+            if((int) check.getValue() != expected)
+            {
+                return false;
+            }
+            int end = buffer.position() + length;
+            while(buffer.position() < end)
+            {
+                int type = buffer.get();
+                long id = getVarint(buffer);
+                int count = type == START ? 4 : type == MOVE ? 1 : 0;
+                for(int i = 0; i < count; i++)
+                {
+                    values[i] = (int) getVarint(buffer);
+                }
+                try
+                {
+                    apply(type, id, values);
+                }
+                catch(IllegalArgumentException e)
+                {
+                    throw new StreamCorruptedException("Bad entry in " + file + ": " + e.getMessage());
+                }
+                sequence++;
+            }
+        }
+        return !buffer.hasRemaining();
+    }
+
+    private static long getVarint(ByteBuffer buffer)
+    {
+        long value = 0;
+        for(int shift = 0; ; shift += 7)
+        {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+            {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Takes the lock on a directory's lock file
+     * @pre directory is a real path
+     * @post [lockDirectory() = an open channel to the lock file holding its lock] AND
+     *       LOCKED_DIRECTORIES = #LOCKED_DIRECTORIES union {directory}
+     * @throws IOException if another journal, in this process or another, holds the lock
+     */
+    private static FileChannel lockDirectory(Path directory) throws IOException
+    {
+        synchronized(LOCKED_DIRECTORIES)
+        {
+            if(!LOCKED_DIRECTORIES.add(directory))
+            {
+                throw new IOException("Journal " + directory + " is already open");
+            }
+        }
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            if(channel.tryLock() == null)
+            {
+                throw new IOException("Journal " + directory + " is open in another process");
+            }
+            return channel;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            unlockDirectory(directory, channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases a directory taken by lockDirectory
+     * @post [the lock is released and channel closed, if not null] AND
+     *       LOCKED_DIRECTORIES = #LOCKED_DIRECTORIES - {directory}
+     */
+    private static void unlockDirectory(Path directory, FileChannel channel) throws IOException
+    {
+        try
+        {
+            if(channel != null)
+            {
+                channel.close();
+            }
+        }
+        finally
+        {
+            synchronized(LOCKED_DIRECTORIES)
+            {
+                LOCKED_DIRECTORIES.remove(directory);
+            }
+        }
+    }
+
+    /**
+     * Lists the sequence numbers of the files with a prefix and suffix, in increasing order
+     */
+    private List<Long> list(String prefix, String suffix) throws IOException
+    {
+        List<Long> numbers = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix))
+        {
+            for(Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                }
+                catch(NumberFormatException e)
+                {
+                    //not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private static String fileName(String prefix, long number, String suffix)
+    {
+        //zero padded so a directory listing is in sequence order too
+        return String.format("%s%019d%s", prefix, number, suffix);
+    }
+}
@@ -0,0 +1,250 @@
+package cpsc2150.extendedConnectX.server;
+
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.MoveResult;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the commands of one connection to a GameServer, one line at a time, until the client quits or
+ * disconnects. Replies are only flushed once no more commands are waiting, so a client that sends several
+ * commands at once gets all the replies in one write. A line longer than MAX_LINE characters is answered with
+ * ERR and ends the connection, so no client can make the server buffer an endless line.
+ * @invariants server != null AND socket != null
+ */
+class ClientConnection implements Runnable {
+    /**
+     * Longest command line accepted; the longest real command is under 40 characters
+     */
+    static final int MAX_LINE = 256;
+
+    private GameServer server;
+    private Socket socket;
+    //games this connection created that are still open; a CLOSE from another connection removes one too
+    private Set<Long> createdGames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs the handler of one connection
+     * @pre server != null AND [socket is connected]
+     * @post this.server = server AND this.socket = socket
+     */
+    ClientConnection(GameServer server, Socket socket)
+    {
+        this.server = server;
+        this.socket = socket;
+    }
+
+    public void run()
+    {
+        server.connectionOpened();
+        try(Socket client = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(),
+                    StandardCharsets.US_ASCII)))
+        {
+            StringBuilder line = new StringBuilder();
+            while(readLine(in, line))
+            {
+                if(line.length() > MAX_LINE)
+                {
+                    out.write("ERR line longer than " + MAX_LINE + " characters\n");
+                    break;
+                }
+                String reply = handle(line.toString().trim());
+                out.write(reply);
+                out.write('\n');
+                if(reply.equals("BYE"))
+                {
+                    break;
+                }
+                if(!in.ready())
+                {
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
+        catch(IOException e)
+        {
+            //the client went away; its games are closed below
+        }
+        finally
+        {
+            for(long id : createdGames)
+            {
+                server.closeGame(id);
+            }
+            server.connectionClosed();
+        }
+    }
+
+    /**
+     * Reads one line, stopping as soon as it is longer than MAX_LINE so a line without an end is never held
+     * @pre in != null AND line != null
+     * @post [line = the next line of in without its '\n', or its first MAX_LINE + 1 characters if it is longer]
+     *       AND [readLine() = false iff in ended before any character of a line]
+     */
+    private static boolean readLine(BufferedReader in, StringBuilder line) throws IOException
+    {
+        line.setLength(0);
+        int c;
+        while((c = in.read()) != -1)
+        {
+            if(c == '\n')
+            {
+                return true;
+            }
+            line.append((char) c);
+            if(line.length() > MAX_LINE)
+            {
+                return true;
+            }
+        }
+        return line.length() > 0;
+    }
+
+    /**
+     * Carries out one command
+     * @pre command != null
+     * @post [handle() = the reply to command, ERR and a message if it could not be carried out]
+     */
+    String handle(String command)
+    {
+        String[] words = command.split("\\s+");
+        try
+        {
+            switch(words[0].toUpperCase())
+            {
+                case "NEW": return newGame(words);
+                case "MOVE": return move(words);
+                case "STATE": return state(words);
+                case "CLOSE": return close(words);
+                case "STATS": return stats(words);
+                case "QUIT": return "BYE";
+                default: return "ERR unknown command " + words[0];
+            }
+        }
+        catch(NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            return "ERR bad arguments to " + words[0];
+        }
+    }
+
+    private String newGame(String[] words)
+    {
+        int rows = Integer.parseInt(words[1]);
+        int columns = Integer.parseInt(words[2]);
+        int players = Integer.parseInt(words[3]);
+        int numToWin = Integer.parseInt(words[4]);
+        String errors = GameEngine.checkSettings(rows, columns, players, numToWin);
+        if(!errors.isEmpty())
+        {
+            return "ERR " + errors;
+        }
+        if(createdGames.size() >= server.getMaxGamesPerConnection())
+        {
+            return "ERR connection already has " + createdGames.size() + " games open";
+        }
+        long id = server.createGame(rows, columns, players, numToWin, this);
+        if(id == 0)
+        {
+            return "ERR server is full";
+        }
+        return "GAME " + id;
+    }
+
+    /**
+     * Counts a game against this connection's limit, called by the server before the game is visible
+     * @post createdGames = #createdGames union {id}
+     */
+    void gameOpened(long id) { createdGames.add(id); }
+
+    /**
+     * Stops counting a game once it is closed, whichever connection closed it
+     * @post createdGames = #createdGames - {id}
+     */
+    void gameClosed(long id) { createdGames.remove(id); }
+
+    private String move(String[] words)
+    {
+        long id = Long.parseLong(words[1]);
+        int column = Integer.parseInt(words[2]);
+        GameEngine game = server.getGame(id);
+        if(game == null)
+        {
+            return "ERR no game " + id;
+        }
+        MoveResult result;
+        //players of one game may be on different connections, so moves in a game take turns
+        synchronized(game)
+        {
+            if(!game.canPlay(column))
+            {
+                return game.isGameOver() ? "ERR game " + id + " is over"
+                        : "ERR column " + column + " cannot be played";
+            }
+            result = game.play(column);
+        }
+        server.countMove();
+        if(result.isWin())
+        {
+            return "WIN " + result.getRow() + " " + result.getWinner();
+        }
+        return (result.isTie() ? "TIE " : "PLACED ") + result.getRow();
+    }
+
+    private String state(String[] words)
+    {
+        long id = Long.parseLong(words[1]);
+        GameEngine game = server.getGame(id);
+        if(game == null)
+        {
+            return "ERR no game " + id;
+        }
+        synchronized(game)
+        {
+            int numMoves = game.getBoard().getNumMoves();
+            if(game.getWinner() != ' ')
+            {
+                return "STATE " + game.getWinner() + " " + numMoves + " WON";
+            }
+            return "STATE " + game.getCurrentToken() + " " + numMoves + (game.isGameOver() ? " TIE" : "");
+        }
+    }
+
+    private String close(String[] words)
+    {
+        long id = Long.parseLong(words[1]);
+        if(!server.closeGame(id))
+        {
+            return "ERR no game " + id;
+        }
+        return "CLOSED " + id;
+    }
+
+    private String stats(String[] words)
+    {
+        Runtime runtime = Runtime.getRuntime();
+        if(words.length > 1 && words[1].equalsIgnoreCase("GC"))
+        {
+            //a full GC stops every game, so only a loopback client, such as LoadGenerator, may ask for one
+            if(!socket.getInetAddress().isLoopbackAddress())
+            {
+                return "ERR STATS GC is only accepted over loopback";
+            }
+            System.gc();
+        }
+        return "STATS games " + server.getNumGames() + " connections " + server.getNumConnections()
+                + " moves " + server.getNumMoves() + " heap " + (runtime.totalMemory() - runtime.freeMemory());
+    }
+}
@@ -0,0 +1,296 @@
+package cpsc2150.extendedConnectX.server;
+
+import cpsc2150.extendedConnectX.models.BoardType;
+import cpsc2150.extendedConnectX.models.GameBoardFactory;
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.IGameBoard;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts any number of ConnectX games at once over TCP, each a GameEngine on its own IGameBoard.
+ * <p>
+ * Every connection is served by its own thread: a virtual thread when the JVM has them (Java 21 and later),
+ * otherwise a thread from a cached pool. A connection sends one command per line and gets one reply per line:
+ * <pre>
+ * NEW rows columns players numToWin   GAME id          (settings as checked by GameEngine.checkSettings)
+ * MOVE id column                      PLACED row | WIN row token | TIE row
+ * STATE id                            STATE token numMoves [WON | TIE], token being the player to move,
+ *                                     or the winner once the game is WON
+ * CLOSE id                            CLOSED id
+ * STATS [GC]                          STATS games n connections n moves n heap bytes (after a GC if asked;
+ *                                     GC is only accepted from a loopback client)
+ * QUIT                                BYE
+ * </pre>
+ * Any command that cannot be carried out is answered with ERR and a message. Any connection may move in any
+ * game, so players of one game can share a connection or use one each. Games are closed with CLOSE, from any
+ * connection, or when the connection that created them ends; either way the game stops counting against its
+ * creator's limit. Ids are longs that are never reused, so no id a client holds can come to mean another game. A line longer than ClientConnection.MAX_LINE characters is answered
+ * with ERR and ends the connection.
+ * <p>
+ * NEW is refused once the connection has maxGamesPerConnection games open or the server has maxGames, so no
+ * client can fill the heap with games. The limits default to the connectx.server.maxGamesPerConnection and
+ * connectx.server.maxGames system properties, or DEFAULT_MAX_GAMES_PER_CONNECTION and DEFAULT_MAX_GAMES.
+ * <p>
+ * Boards come from a GameBoardFactory, so each game gets the implementation with the least heap that still
+ * meets the move latency target, unless the server is started with a fixed BoardType.
+ * @invariants games != null AND [every game in games has a unique id > 0] AND
+ *             [owners maps the id of every game in games to the connection that created it] AND
+ *             0 <= openGames <= maxGames
+ */
+public class GameServer {
+    /**
+     * Port used when none is given
+     */
+    public static final int DEFAULT_PORT = 2150;
+    /**
+     * Games the server holds at once when connectx.server.maxGames is not set
+     */
+    public static final int DEFAULT_MAX_GAMES = 1_000_000;
+    /**
+     * Games one connection may have open at once when connectx.server.maxGamesPerConnection is not set
+     */
+    public static final int DEFAULT_MAX_GAMES_PER_CONNECTION = 10_000;
+
+    private ConcurrentHashMap<Long, GameEngine> games = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Long, ClientConnection> owners = new ConcurrentHashMap<>();
+    private AtomicLong nextId = new AtomicLong();
+    private AtomicInteger openGames = new AtomicInteger();
+    private int maxGames = Integer.getInteger("connectx.server.maxGames", DEFAULT_MAX_GAMES);
+    private int maxGamesPerConnection = Integer.getInteger("connectx.server.maxGamesPerConnection",
+            DEFAULT_MAX_GAMES_PER_CONNECTION);
+    private AtomicInteger connections = new AtomicInteger();
+    private LongAdder moves = new LongAdder();
+    private GameBoardFactory factory;
+    private BoardType boardType;
+    private ServerSocket serverSocket;
+    private ExecutorService connectionThreads;
+
+    /**
+     * Constructs a server that lets a factory pick each board
+     * @pre factory != null
+     * @post [server has no games and is not listening] AND this.factory = factory
+     * @param factory factory making the board of each game
+     */
+    public GameServer(GameBoardFactory factory)
+    {
+        this.factory = factory;
+    }
+
+    /**
+     * Constructs a server that plays every game on one board implementation
+     * @pre boardType != null
+     * @post [server has no games and is not listening] AND this.boardType = boardType
+     * @param boardType implementation of every board
+     */
+    public GameServer(BoardType boardType)
+    {
+        this.boardType = boardType;
+    }
+
+    /**
+     * Accepts connections until the server is stopped, first opening the port if start has not been called
+     * @pre none
+     * @post [every connection accepted was handed to its own thread] AND [the server socket is closed]
+     * @param port port to listen on, or 0 for any free port; ignored if start was called
+     * @throws IOException if the port cannot be opened
+     */
+    public void serve(int port) throws IOException
+    {
+        start(port);
+        try
+        {
+            while(!serverSocket.isClosed())
+            {
+                Socket socket;
+                try
+                {
+                    socket = serverSocket.accept();
+                }
+                catch(IOException e)
+                {
+                    //stop closes the socket to end the accept loop
+                    if(serverSocket.isClosed())
+                    {
+                        break;
+                    }
+                    throw e;
+                }
+                socket.setTcpNoDelay(true);
+                connectionThreads.execute(new ClientConnection(this, socket));
+            }
+        }
+        finally
+        {
+            stop();
+        }
+    }
+
+    /**
+     * Opens the server socket without accepting yet, so the port is known before serve is called
+     * @pre none
+     * @post [the server socket is bound to port, unless it was already open]
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public synchronized void start(int port) throws IOException
+    {
+        if(serverSocket == null)
+        {
+            serverSocket = new ServerSocket(port, 1024);
+            connectionThreads = newThreadPerTaskExecutor();
+        }
+    }
+
+    /**
+     * Stops accepting connections and ends the open ones
+     * @pre none
+     * @post [the server socket is closed] AND [connection threads are interrupted]
+     */
+    public synchronized void stop()
+    {
+        try
+        {
+            if(serverSocket != null)
+            {
+                serverSocket.close();
+            }
+        }
+        catch(IOException e)
+        {
+            //closing only fails if it is already closed
+        }
+        if(connectionThreads != null)
+        {
+            connectionThreads.shutdownNow();
+        }
+    }
+
+    public int getPort() { return serverSocket.getLocalPort(); }
+
+    public int getMaxGames() { return maxGames; }
+
+    /**
+     * Limits the games the server holds at once; games already open are kept
+     * @pre maxGames >= 0
+     * @post this.maxGames = maxGames
+     * @param maxGames most games open at once
+     */
+    public void setMaxGames(int maxGames)
+    {
+        this.maxGames = maxGames;
+    }
+
+    public int getMaxGamesPerConnection() { return maxGamesPerConnection; }
+
+    /**
+     * Limits the games one connection may have open at once; games already open are kept
+     * @pre maxGamesPerConnection >= 0
+     * @post this.maxGamesPerConnection = maxGamesPerConnection
+     * @param maxGamesPerConnection most games open at once on one connection
+     */
+    public void setMaxGamesPerConnection(int maxGamesPerConnection)
+    {
+        this.maxGamesPerConnection = maxGamesPerConnection;
+    }
+
+    /**
+     * Starts a game for a connection unless the server already holds maxGames
+     * @pre GameEngine.checkSettings(rows, columns, players, numToWin) = "" AND owner != null
+     * @post [createGame() = id of a new empty game of that shape held by the server and counted by owner, or 0
+     *       if maxGames games were already held]
+     * @return id of the game, or 0 if the server is full
+     */
+    long createGame(int rows, int columns, int players, int numToWin, ClientConnection owner)
+    {
+        if(openGames.incrementAndGet() > maxGames)
+        {
+            openGames.decrementAndGet();
+            return 0;
+        }
+        IGameBoard board = boardType != null ? boardType.make(rows, columns, numToWin)
+                : factory.makeBoard(rows, columns, players, numToWin);
+        //a long counter cannot wrap in the life of a server, so an id is never 0 or handed out twice
+        long id = nextId.incrementAndGet();
+        //the owner counts the game before anyone can see it, so a CLOSE racing the reply still reaches it
+        owners.put(id, owner);
+        owner.gameOpened(id);
+        games.put(id, new GameEngine(board, players));
+        return id;
+    }
+
+    GameEngine getGame(long id) { return games.get(id); }
+
+    /**
+     * Ends a game, whichever connection asks
+     * @post [the game with id is no longer held nor counted by the connection that created it] AND
+     *       [closeGame() = true if it was held]
+     */
+    boolean closeGame(long id)
+    {
+        if(games.remove(id) == null)
+        {
+            return false;
+        }
+        owners.remove(id).gameClosed(id);
+        openGames.decrementAndGet();
+        return true;
+    }
+
+    void countMove() { moves.increment(); }
+
+    void connectionOpened() { connections.incrementAndGet(); }
+
+    void connectionClosed() { connections.decrementAndGet(); }
+
+    public int getNumGames() { return games.size(); }
+
+    public int getNumConnections() { return connections.get(); }
+
+    public long getNumMoves() { return moves.sum(); }
+
+    /**
+     * Makes an executor that runs each task on a new virtual thread, or on a cached platform thread when the JVM
+     * has no virtual threads. Looked up reflectively so the server still builds and runs on Java 17.
+     * @post [newThreadPerTaskExecutor() = an executor starting a thread for each task as needed]
+     */
+    static ExecutorService newThreadPerTaskExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Runs the server until the process is stopped
+     *
+     * @param args the port, and optionally FAST, MEM or BIT to use one board implementation for every game
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = args.length > 1 ? new GameServer(BoardType.valueOf(args[1]))
+                : new GameServer(GameBoardFactory.getDefault());
+        if(GameBoardFactory.getProfileFailure() != null)
+        {
+            System.err.println("Could not load board profile, calibrated instead: "
+                    + GameBoardFactory.getProfileFailure().getMessage());
+        }
+        server.start(port);
+        System.out.println("ConnectX server listening on port " + server.getPort());
+        server.serve(port);
+    }
+}
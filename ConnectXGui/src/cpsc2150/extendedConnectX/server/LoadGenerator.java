@@ -0,0 +1,353 @@
+package cpsc2150.extendedConnectX.server;
+
+import cpsc2150.extendedConnectX.models.BoardType;
+import cpsc2150.extendedConnectX.models.GameBoardFactory;
+import cpsc2150.extendedConnectX.simulation.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays random games against a GameServer to measure how many games it holds per GB of heap and how many
+ * moves per second it serves.
+ * <p>
+ * Each client connection opens a number of games at once and plays them all to the end, one random move in
+ * every unfinished game per round trip, then closes them and starts again. Commands of one round trip are
+ * sent together, so latency is the time from sending a batch to reading each reply.
+ * <p>
+ * Heap per game is measured once: after every connection has opened its first games, the server is asked
+ * for its heap after a GC, and the heap it reported before any game was opened is subtracted.
+ * <p>
+ * Run with {@code java cpsc2150.extendedConnectX.server.LoadGenerator [--server] [options]}; with --server a
+ * GameServer is started in the same JVM on a free port (and its heap then includes the client's), otherwise
+ * --host and --port name a running one.
+ * @invariants connections >= 1 AND gamesPerConnection >= 1 AND batches >= 1
+ */
+public class LoadGenerator {
+    private String host;
+    private int port;
+    private int connections;
+    private int gamesPerConnection;
+    private int batches;
+    private String settings;
+    private AtomicLong moves = new AtomicLong();
+    private AtomicLong games = new AtomicLong();
+    private AtomicLong errors = new AtomicLong();
+
+    /**
+     * Constructs a load generator
+     * @pre connections >= 1 AND gamesPerConnection >= 1 AND batches >= 1 AND
+     *      GameEngine.checkSettings(rows, columns, players, numToWin) = ""
+     * @post [generator plays batches batches of gamesPerConnection games on each of connections connections
+     *       to host:port, every game rows x columns with players players and numToWin to win]
+     */
+    public LoadGenerator(String host, int port, int connections, int gamesPerConnection, int batches,
+                         int rows, int columns, int players, int numToWin)
+    {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.gamesPerConnection = gamesPerConnection;
+        this.batches = batches;
+        this.settings = rows + " " + columns + " " + players + " " + numToWin;
+    }
+
+    /**
+     * Runs the load and prints what was measured
+     * @pre [a GameServer is listening on host:port]
+     * @post [every game opened was played to the end and closed] AND [the results are printed]
+     * @throws Exception if a connection fails
+     */
+    public void run() throws Exception
+    {
+        long baseHeap = heapAfterGc();
+        CountDownLatch opened = new CountDownLatch(connections);
+        CountDownLatch measured = new CountDownLatch(1);
+        ExecutorService threads = GameServer.newThreadPerTaskExecutor();
+        List<Future<LatencyHistogram>> clients = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int client = 0; client < connections; client++)
+        {
+            long seed = client;
+            clients.add(threads.submit(() -> playClient(new Random(seed), opened, measured)));
+        }
+        try
+        {
+            while(!opened.await(100, TimeUnit.MILLISECONDS))
+            {
+                //a client that failed before opening its games would otherwise leave this waiting forever
+                for(Future<LatencyHistogram> client : clients)
+                {
+                    if(client.isDone())
+                    {
+                        client.get();
+                    }
+                }
+            }
+        }
+        catch(ExecutionException e)
+        {
+            //the other clients are waiting for the failed one, so they are stopped too
+            threads.shutdownNow();
+            throw e;
+        }
+        long pausedStart = System.nanoTime();
+        long openGames = (long) connections * gamesPerConnection;
+        long gameHeap = heapAfterGc() - baseHeap;
+        long paused = System.nanoTime() - pausedStart;
+        measured.countDown();
+        LatencyHistogram latency = new LatencyHistogram();
+        for(Future<LatencyHistogram> client : clients)
+        {
+            latency.merge(client.get());
+        }
+        double seconds = (System.nanoTime() - start - paused) / 1e9;
+        threads.shutdown();
+
+        System.out.printf("%d connections x %d games x %d batches, games of %s%n", connections,
+                gamesPerConnection, batches, settings);
+        System.out.printf("%d games, %d moves, %d errors in %.3f s: %.0f games/s, %.0f moves/s%n",
+                games.get(), moves.get(), errors.get(), seconds, games.get() / seconds, moves.get() / seconds);
+        System.out.printf("round trip us: mean %.1f p50 %.1f p99 %.1f p99.9 %.1f max %.1f%n",
+                latency.getMean() / 1e3, latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3,
+                latency.getPercentile(99.9) / 1e3, latency.getMax() / 1e3);
+        System.out.printf("%d games open: %d bytes of heap each, %.0f games per GB%n", openGames,
+                gameHeap / openGames, openGames * (double) (1L << 30) / Math.max(1, gameHeap));
+    }
+
+    /**
+     * Plays every batch of games on one connection
+     */
+    private LatencyHistogram playClient(Random random, CountDownLatch opened, CountDownLatch measured)
+            throws IOException, InterruptedException
+    {
+        LatencyHistogram latency = new LatencyHistogram();
+        try(Socket socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.US_ASCII)))
+        {
+            socket.setTcpNoDelay(true);
+            long[] ids = new long[gamesPerConnection];
+            String[] replies = new String[gamesPerConnection];
+            for(int batch = 0; batch < batches; batch++)
+            {
+                for(int game = 0; game < gamesPerConnection; game++)
+                {
+                    out.write("NEW " + settings + "\n");
+                }
+                roundTrip(in, out, replies, gamesPerConnection, latency);
+                for(int game = 0; game < gamesPerConnection; game++)
+                {
+                    if(!replies[game].startsWith("GAME "))
+                    {
+                        throw new IOException("Server refused NEW: " + replies[game]);
+                    }
+                    ids[game] = Long.parseLong(replies[game].substring("GAME ".length()));
+                }
+                if(batch == 0)
+                {
+                    opened.countDown();
+                    measured.await();
+                }
+                playBatch(random, in, out, ids, replies, latency);
+                for(int game = 0; game < gamesPerConnection; game++)
+                {
+                    out.write("CLOSE " + ids[game] + "\n");
+                }
+                roundTrip(in, out, replies, gamesPerConnection, latency);
+                games.addAndGet(gamesPerConnection);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+        return latency;
+    }
+
+    /**
+     * Plays random moves in every game of a batch until they have all ended
+     */
+    private void playBatch(Random random, BufferedReader in, Writer out, long[] ids, String[] replies,
+                           LatencyHistogram latency) throws IOException
+    {
+        String[] shape = settings.split(" ");
+        int rows = Integer.parseInt(shape[0]);
+        int columns = Integer.parseInt(shape[1]);
+        int[][] heights = new int[ids.length][columns];
+        int[] playing = new int[ids.length];
+        for(int game = 0; game < ids.length; game++)
+        {
+            playing[game] = game;
+        }
+        int numPlaying = ids.length;
+        int[] moved = new int[ids.length];
+        while(numPlaying > 0)
+        {
+            for(int i = 0; i < numPlaying; i++)
+            {
+                int game = playing[i];
+                int column;
+                do
+                {
+                    column = random.nextInt(columns);
+                }
+                while(heights[game][column] == rows);
+                heights[game][column]++;
+                moved[i] = column;
+                out.write("MOVE " + ids[game] + " " + column + "\n");
+            }
+            roundTrip(in, out, replies, numPlaying, latency);
+            moves.addAndGet(numPlaying);
+            int stillPlaying = 0;
+            for(int i = 0; i < numPlaying; i++)
+            {
+                if(replies[i].startsWith("ERR"))
+                {
+                    errors.incrementAndGet();
+                }
+                else if(replies[i].startsWith("PLACED"))
+                {
+                    playing[stillPlaying++] = playing[i];
+                }
+            }
+            numPlaying = stillPlaying;
+        }
+    }
+
+    /**
+     * Sends the commands written since the last round trip and reads their replies
+     */
+    private static void roundTrip(BufferedReader in, Writer out, String[] replies, int count,
+                                  LatencyHistogram latency) throws IOException
+    {
+        long start = System.nanoTime();
+        out.flush();
+        for(int i = 0; i < count; i++)
+        {
+            replies[i] = in.readLine();
+            if(replies[i] == null)
+            {
+                throw new IOException("server closed the connection");
+            }
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Asks the server for its heap in use after a GC
+     */
+    private long heapAfterGc() throws IOException
+    {
+        try(Socket socket = new Socket(host, port);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))
+        {
+            out.write("STATS GC\nQUIT\n");
+            out.flush();
+            String reply = in.readLine();
+            if(reply == null || !reply.startsWith("STATS"))
+            {
+                throw new IOException("Server refused STATS GC: " + reply);
+            }
+            String[] words = reply.split(" ");
+            return Long.parseLong(words[words.length - 1]);
+        }
+    }
+
+    /**
+     * Runs the load generator
+     *
+     * @param args options: --server to start a server in this JVM, --board FAST|MEM|BIT to give that server one
+     *             board implementation instead of the factory's choice, --host h, --port n, --connections n,
+     *             --games n (open at once per connection), --batches n, --rows n, --columns n, --players n,
+     *             --win n
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        int connections = 100;
+        int gamesPerConnection = 100;
+        int batches = 5;
+        int rows = 6;
+        int columns = 7;
+        int players = 2;
+        int numToWin = 4;
+        boolean startServer = false;
+        String board = null;
+        for(int i = 0; i < args.length; i++)
+        {
+            switch(args[i])
+            {
+                case "--server": startServer = true; break;
+                case "--board": board = args[++i]; break;
+                case "--host": host = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--games": gamesPerConnection = Integer.parseInt(args[++i]); break;
+                case "--batches": batches = Integer.parseInt(args[++i]); break;
+                case "--rows": rows = Integer.parseInt(args[++i]); break;
+                case "--columns": columns = Integer.parseInt(args[++i]); break;
+                case "--players": players = Integer.parseInt(args[++i]); break;
+                case "--win": numToWin = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        GameServer server = null;
+        if(startServer)
+        {
+            server = board == null ? new GameServer(GameBoardFactory.getDefault())
+                    : new GameServer(BoardType.valueOf(board));
+            if(GameBoardFactory.getProfileFailure() != null)
+            {
+                System.err.println("Could not load board profile, calibrated instead: "
+                        + GameBoardFactory.getProfileFailure().getMessage());
+            }
+            server.start(0);
+            port = server.getPort();
+            GameServer running = server;
+            Thread accepting = new Thread(() -> {
+                try
+                {
+                    running.serve(0);
+                }
+                catch(IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            accepting.setDaemon(true);
+            accepting.start();
+        }
+        try
+        {
+            new LoadGenerator(host, port, connections, gamesPerConnection, batches, rows, columns, players, numToWin)
+                    .run();
+        }
+        finally
+        {
+            if(server != null)
+            {
+                server.stop();
+            }
+        }
+    }
+}
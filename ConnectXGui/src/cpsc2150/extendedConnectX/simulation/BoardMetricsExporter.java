@@ -0,0 +1,147 @@
+package cpsc2150.extendedConnectX.simulation;
+
+import cpsc2150.extendedConnectX.models.BoardMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes snapshots of every registered BoardMetrics to a directory at a fixed period, from a background thread,
+ * while the games being measured go on.
+ * <p>
+ * Each snapshot replaces {@code board-metrics.txt} with the text table of BoardMetrics.writeText, written to a
+ * temporary file and renamed so a reader never sees half a table, and appends one row per implementation, shape
+ * and call to {@code board-metrics.csv}, which gets a header when it is created. The CSV keeps every snapshot, so
+ * its counts can be differenced to get the calls of each period.
+ * <p>
+ * A snapshot that cannot be written is skipped and the failure kept for getFailure; the next period tries again.
+ * @invariants periodMillis > 0
+ */
+public class BoardMetricsExporter implements Closeable {
+    /**
+     * Name of the text snapshot in the directory
+     */
+    public static final String TEXT_FILE = "board-metrics.txt";
+    /**
+     * Name of the CSV history in the directory
+     */
+    public static final String CSV_FILE = "board-metrics.csv";
+
+    private Path directory;
+    private long periodMillis;
+    private ScheduledExecutorService timer;
+    private long exports;
+    private IOException failure;
+
+    /**
+     * Constructs an exporter and starts exporting
+     * @pre directory != null AND periodMillis > 0
+     * @post [a snapshot is exported to directory every periodMillis until close]
+     * @param directory where the snapshots go; created if it does not exist
+     * @param periodMillis time between snapshots
+     * @throws IOException if the directory cannot be created
+     */
+    public BoardMetricsExporter(Path directory, long periodMillis) throws IOException
+    {
+        this.directory = directory;
+        this.periodMillis = periodMillis;
+        Files.createDirectories(directory);
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ConnectX metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::exportQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Exports a snapshot now
+     * @post [TEXT_FILE holds the current metrics] AND [CSV_FILE has a row per call with calls recorded, stamped
+     *       with the current time] AND exports = #exports + 1
+     * @throws IOException if a file cannot be written
+     */
+    public synchronized void export() throws IOException
+    {
+        Path text = directory.resolve(TEXT_FILE);
+        Path temporary = directory.resolve(TEXT_FILE + ".tmp");
+        try(Writer out = Files.newBufferedWriter(temporary))
+        {
+            BoardMetrics.writeText(out);
+        }
+        try
+        {
+            Files.move(temporary, text, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(AtomicMoveNotSupportedException e)
+        {
+            Files.move(temporary, text, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Path csv = directory.resolve(CSV_FILE);
+        boolean created = !Files.exists(csv) || Files.size(csv) == 0;
+        try(Writer out = Files.newBufferedWriter(csv, StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+        {
+            if(created)
+            {
+                out.append(BoardMetrics.csvHeader()).append(System.lineSeparator());
+            }
+            BoardMetrics.writeCsv(out, System.currentTimeMillis());
+        }
+        exports++;
+    }
+
+    /**
+     * Stops exporting after one last snapshot
+     * @post [no more snapshots are exported after a final one]
+     * @throws IOException if the final snapshot cannot be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        timer.shutdown();
+        try
+        {
+            timer.awaitTermination(periodMillis, TimeUnit.MILLISECONDS);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        export();
+    }
+
+    public synchronized long getExports() { return exports; }
+
+    /**
+     * Gets the last failure of a periodic snapshot
+     * @post [getFailure() = the exception of the last periodic snapshot that could not be written, or null]
+     * @return last failure or null
+     */
+    public synchronized IOException getFailure() { return failure; }
+
+    public Path getDirectory() { return directory; }
+
+    private void exportQuietly()
+    {
+        try
+        {
+            export();
+        }
+        catch(IOException e)
+        {
+            synchronized(this)
+            {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cpsc2150.extendedConnectX.simulation;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed number of buckets, so recording never allocates
+ * however many samples are taken.
+ * <p>
+ * Values below 16 get a bucket each. Above that every power of two is split into 8 buckets, so a percentile
+ * read back is at most 12.5% above the true value. Not thread safe; give each thread its own histogram and
+ * merge them.
+ * @invariants count = [sum of every bucket] AND count >= 0
+ */
+public class LatencyHistogram {
+    private static final int EXACT_VALUES = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = EXACT_VALUES + (64 - 4) * SUB_BUCKETS;
+
+    private long[] buckets = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * Records one sample
+     * @pre nanos >= 0
+     * @post [the bucket of nanos is one higher] AND count = #count + 1
+     * @param nanos the latency
+     */
+    public void record(long nanos)
+    {
+        buckets[bucketOf(nanos)]++;
+        count++;
+        total += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Adds the samples of another histogram to this one
+     * @pre other != null
+     * @post [each bucket = #bucket + other's bucket] AND count = #count + other.count AND other = #other
+     * @param other histogram to add
+     */
+    public void merge(LatencyHistogram other)
+    {
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Reads a percentile
+     * @pre 0 <= percent <= 100
+     * @post self = #self AND [getPercentile() = highest value of the bucket holding the sample at percent,
+     *       or 0 if there are no samples]
+     * @param percent the percentile, such as 99.9
+     * @return latency in nanoseconds that percent of the samples are at or below
+     */
+    public long getPercentile(double percent)
+    {
+        long rank = (long) Math.ceil(percent / 100 * count);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets[i];
+            if(seen >= rank && seen > 0)
+            {
+                return Math.min(max, highestValueOf(i));
+            }
+        }
+        return 0;
+    }
+
+    public long getCount() { return count; }
+
+    public long getMax() { return max; }
+
+    /**
+     * Gets the mean sample
+     * @post [getMean() = total / count, or 0 if there are no samples]
+     * @return mean latency in nanoseconds
+     */
+    public double getMean()
+    {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    private static int bucketOf(long nanos)
+    {
+        if(nanos < EXACT_VALUES)
+        {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT_VALUES + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    private static long highestValueOf(int bucket)
+    {
+        if(bucket < EXACT_VALUES)
+        {
+            return bucket;
+        }
+        int exponent = (bucket - EXACT_VALUES) / SUB_BUCKETS + 4;
+        int sub = (bucket - EXACT_VALUES) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,342 @@
+package cpsc2150.extendedConnectX.simulation;
+
+import cpsc2150.extendedConnectX.ai.IMoveEngine;
+import cpsc2150.extendedConnectX.ai.MonteCarloEngine;
+import cpsc2150.extendedConnectX.ai.NegamaxEngine;
+import cpsc2150.extendedConnectX.ai.RandomPlayer;
+import cpsc2150.extendedConnectX.ai.ScriptedPlayer;
+import cpsc2150.extendedConnectX.models.BoardMetrics;
+import cpsc2150.extendedConnectX.models.BoardType;
+import cpsc2150.extendedConnectX.models.GameEngine;
+import cpsc2150.extendedConnectX.models.IGameBoard;
+import cpsc2150.extendedConnectX.models.InstrumentedBoard;
+import cpsc2150.extendedConnectX.models.MoveResult;
+import cpsc2150.extendedConnectX.records.GameRecordWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays batches of games with no user interface, spread across worker threads, for load testing and for
+ * generating training data.
+ * <p>
+ * Every game is a GameEngine on a fresh board of the chosen BoardType, so it follows exactly the rules of the
+ * game window. Each worker makes its own players from the PlayerMakers, seeded from
+ * the simulator's seed, so a run with the same seed and one thread plays the same games every time.
+ * <p>
+ * When a game log is set, each finished game is written to it as one line: the winner's token (or '-' for a
+ * tie) followed by the columns played, in order. When a record writer is set, each finished game is also
+ * written to it in the compact binary format. When the boards are instrumented, every board is wrapped in an
+ * InstrumentedBoard so its calls are recorded in BoardMetrics.
+ * @invariants threads >= 1 AND seats.length >= 2 AND seats.length <= GameEngine.PLAYER_TOKENS.length
+ */
+public class SelfPlaySimulator {
+    /**
+     * Makes the player for one seat; called once per worker thread
+     */
+    public interface PlayerMaker {
+        IMoveEngine make(long seed);
+    }
+
+    private BoardType boardType;
+    private int rows;
+    private int columns;
+    private int numToWin;
+    private PlayerMaker[] seats;
+    private int threads;
+    private long seed;
+    private Writer gameLog;
+    private GameRecordWriter recordWriter;
+    private boolean instrumented;
+
+    /**
+     * Constructs a simulator
+     * @pre [rows, columns and numToWin are a valid IGameBoard shape] AND 2 <= seats.length AND
+     *      seats.length <= GameEngine.PLAYER_TOKENS.length AND threads >= 1
+     * @post [simulator plays on boardType boards of that shape with one player per seat on threads threads,
+     *       seeding players from seed, with no game log]
+     * @param boardType board implementation to play on
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param numToWin number in a row needed to win
+     * @param seats makers of the players, in turn order
+     * @param threads number of worker threads
+     * @param seed seed the players' seeds are drawn from
+     */
+    public SelfPlaySimulator(BoardType boardType, int rows, int columns, int numToWin, PlayerMaker[] seats,
+                             int threads, long seed)
+    {
+        this.boardType = boardType;
+        this.rows = rows;
+        this.columns = columns;
+        this.numToWin = numToWin;
+        this.seats = seats;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes every finished game to a log
+     * @pre none
+     * @post this.gameLog = gameLog
+     * @param gameLog where to write one line per game, or null for no log; the simulator does not close it
+     */
+    public void setGameLog(Writer gameLog)
+    {
+        this.gameLog = gameLog;
+    }
+
+    /**
+     * Writes every finished game as a binary game record
+     * @pre none
+     * @post this.recordWriter = recordWriter
+     * @param recordWriter where to write each game, or null for none; the simulator does not close it
+     */
+    public void setRecordWriter(GameRecordWriter recordWriter)
+    {
+        this.recordWriter = recordWriter;
+    }
+
+    /**
+     * Wraps every board in an InstrumentedBoard
+     * @pre none
+     * @post this.instrumented = instrumented
+     * @param instrumented whether board calls are recorded in BoardMetrics
+     */
+    public void setInstrumented(boolean instrumented)
+    {
+        this.instrumented = instrumented;
+    }
+
+    /**
+     * Plays a batch of games
+     * @pre games >= 0
+     * @post [run() = totals of games finished games] AND [each game is written to the game log and record writer if
+     *       they are set]
+     * @param games number of games to play
+     * @return totals of the batch
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws UncheckedIOException if the game log or record writer cannot be written
+     */
+    public SimulationReport run(long games) throws InterruptedException
+    {
+        char[] players = Arrays.copyOf(GameEngine.PLAYER_TOKENS, seats.length);
+        AtomicLong nextGame = new AtomicLong();
+        List<Callable<SimulationReport>> workers = new ArrayList<>();
+        for(int worker = 0; worker < threads; worker++)
+        {
+            IMoveEngine[] engines = new IMoveEngine[seats.length];
+            for(int seat = 0; seat < seats.length; seat++)
+            {
+                engines[seat] = seats[seat].make(seed + (long) worker * seats.length + seat);
+            }
+            workers.add(() -> playGames(engines, players, nextGame, games));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        SimulationReport report = new SimulationReport(players);
+        long start = System.nanoTime();
+        try
+        {
+            for(Future<SimulationReport> result : pool.invokeAll(workers))
+            {
+                report.merge(result.get());
+            }
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Plays games on one worker thread until the batch is used up
+     */
+    private SimulationReport playGames(IMoveEngine[] engines, char[] players, AtomicLong nextGame, long games)
+    {
+        SimulationReport report = new SimulationReport(players);
+        StringBuilder line = new StringBuilder();
+        while(nextGame.getAndIncrement() < games)
+        {
+            IGameBoard board = boardType.make(rows, columns, numToWin);
+            GameEngine game = new GameEngine(instrumented ? new InstrumentedBoard(board) : board, players.length);
+            line.setLength(0);
+            MoveResult result;
+            do
+            {
+                int toMove = game.getCurrentPlayer();
+                int column = engines[toMove].chooseMove(game.getBoard(), players, toMove);
+                line.append(' ').append(column);
+                long start = System.nanoTime();
+                result = game.play(column);
+                report.recordMove(System.nanoTime() - start);
+            }
+            while(!result.isGameOver());
+            //the turn does not pass on after the last move, so the current player is the winner
+            int winner = result.isWin() ? game.getCurrentPlayer() : -1;
+            report.recordGame(winner);
+            if(gameLog != null)
+            {
+                line.insert(0, winner < 0 ? '-' : players[winner]).append(System.lineSeparator());
+                writeLog(line);
+            }
+            if(recordWriter != null)
+            {
+                writeRecord(game);
+            }
+        }
+        return report;
+    }
+
+    private void writeLog(CharSequence line)
+    {
+        try
+        {
+            synchronized(gameLog)
+            {
+                gameLog.append(line);
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRecord(GameEngine game)
+    {
+        try
+        {
+            synchronized(recordWriter)
+            {
+                recordWriter.write(game.getBoard(), game.getNumPlayers());
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes a PlayerMaker from a description: "random", "script:c1,c2,...", "negamax:millis" or "mcts:millis"
+     * @pre none
+     * @post [parsePlayer() = a maker of the described player]
+     * @param description the player
+     * @return maker of the player
+     * @throws IllegalArgumentException if the description is not one of the forms above
+     */
+    public static PlayerMaker parsePlayer(String description)
+    {
+        if(description.equals("random"))
+        {
+            return RandomPlayer::new;
+        }
+        if(description.startsWith("script:"))
+        {
+            ScriptedPlayer player = ScriptedPlayer.parse(description.substring("script:".length()));
+            return seed -> player;
+        }
+        if(description.startsWith("negamax:"))
+        {
+            long millis = Long.parseLong(description.substring("negamax:".length()));
+            return seed -> new NegamaxEngine(millis);
+        }
+        if(description.startsWith("mcts:"))
+        {
+            long millis = Long.parseLong(description.substring("mcts:".length()));
+            return seed -> new MonteCarloEngine(1, millis, seed);
+        }
+        throw new IllegalArgumentException("Unknown player " + description);
+    }
+
+    /**
+     * Plays a batch of games and prints the report
+     *
+     * @param args options: --games n, --threads n, --board FAST|MEM|BIT, --rows n, --columns n, --win n,
+     *             --players p1/p2/... (each as parsePlayer reads it), --seed n, --log file and
+     *             --records file (binary game records), --metrics directory (instrumented boards, with
+     *             BoardMetricsExporter snapshots in directory) and --metricsMillis n (time between snapshots)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        long games = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        BoardType type = BoardType.FAST;
+        int rows = 6;
+        int columns = 7;
+        int numToWin = 4;
+        String players = "random/random";
+        long seed = 2150;
+        String log = null;
+        String records = null;
+        String metrics = null;
+        long metricsMillis = 1000;
+        for(int i = 0; i + 1 < args.length; i += 2)
+        {
+            String value = args[i + 1];
+            switch(args[i])
+            {
+                case "--games": games = Long.parseLong(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--board": type = BoardType.valueOf(value); break;
+                case "--rows": rows = Integer.parseInt(value); break;
+                case "--columns": columns = Integer.parseInt(value); break;
+                case "--win": numToWin = Integer.parseInt(value); break;
+                case "--players": players = value; break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--log": log = value; break;
+                case "--records": records = value; break;
+                case "--metrics": metrics = value; break;
+                case "--metricsMillis": metricsMillis = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        String[] descriptions = players.split("/");
+        PlayerMaker[] seats = new PlayerMaker[descriptions.length];
+        for(int seat = 0; seat < seats.length; seat++)
+        {
+            seats[seat] = parsePlayer(descriptions[seat]);
+        }
+        SelfPlaySimulator simulator = new SelfPlaySimulator(type, rows, columns, numToWin, seats, threads, seed);
+        System.out.println(type + " " + rows + "x" + columns + ", " + numToWin + " to win, " + threads
+                + " threads, players " + players);
+        //a null resource is skipped when the try ends, so either output may be left out
+        try(Writer writer = log == null ? null : Files.newBufferedWriter(Paths.get(log));
+            GameRecordWriter recordWriter = records == null ? null
+                    : new GameRecordWriter(Files.newOutputStream(Paths.get(records)));
+            BoardMetricsExporter exporter = metrics == null ? null
+                    : new BoardMetricsExporter(Paths.get(metrics), metricsMillis))
+        {
+            simulator.setGameLog(writer);
+            simulator.setRecordWriter(recordWriter);
+            simulator.setInstrumented(exporter != null);
+            System.out.println(simulator.run(games));
+            if(exporter != null)
+            {
+                BoardMetrics.writeText(System.out);
+            }
+        }
+    }
+}
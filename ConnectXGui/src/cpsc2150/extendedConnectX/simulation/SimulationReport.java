@@ -0,0 +1,146 @@
+package cpsc2150.extendedConnectX.simulation;
+
+/**
+ * Totals of a batch of headless games: how many were played and how they ended, how long they took and the
+ * latency of each move on the board.
+ * <p>
+ * Move latency covers GameEngine.play (placeToken, checkForWin and checkTie), the work the rules do for one
+ * move; the time players spend choosing a move is not included. Each worker thread fills its own report and
+ * the reports are merged when the batch is done.
+ * @invariants games = ties + [sum of wins] AND moves >= games AND elapsedNanos >= 0
+ */
+public class SimulationReport {
+    private char[] players;
+    private long[] wins;
+    private long ties;
+    private long games;
+    private long moves;
+    private long elapsedNanos;
+    private LatencyHistogram moveLatency = new LatencyHistogram();
+
+    /**
+     * Constructs an empty report
+     * @pre players.length >= 2
+     * @post [no games are counted] AND this.players = players
+     * @param players tokens of the players in turn order
+     */
+    public SimulationReport(char[] players)
+    {
+        this.players = players;
+        this.wins = new long[players.length];
+    }
+
+    /**
+     * Counts one move
+     * @pre nanos >= 0
+     * @post moves = #moves + 1 AND [nanos is recorded in the move latency]
+     * @param nanos time the board took to apply and check the move
+     */
+    public void recordMove(long nanos)
+    {
+        moves++;
+        moveLatency.record(nanos);
+    }
+
+    /**
+     * Counts one finished game
+     * @pre -1 <= winner < players.length
+     * @post games = #games + 1 AND [wins[winner] is one higher, or ties is if winner = -1]
+     * @param winner index of the winning player, or -1 for a tie
+     */
+    public void recordGame(int winner)
+    {
+        games++;
+        if(winner < 0)
+        {
+            ties++;
+        }
+        else
+        {
+            wins[winner]++;
+        }
+    }
+
+    /**
+     * Adds the counts of another report to this one
+     * @pre other.players.length = players.length
+     * @post [every count = #count + other's count] AND other = #other
+     * @param other report to add
+     */
+    public void merge(SimulationReport other)
+    {
+        for(int i = 0; i < wins.length; i++)
+        {
+            wins[i] += other.wins[i];
+        }
+        ties += other.ties;
+        games += other.games;
+        moves += other.moves;
+        moveLatency.merge(other.moveLatency);
+    }
+
+    /**
+     * Sets the wall clock time of the batch
+     * @pre elapsedNanos >= 0
+     * @post this.elapsedNanos = elapsedNanos
+     * @param elapsedNanos time from the first game starting to the last one ending
+     */
+    public void setElapsedNanos(long elapsedNanos)
+    {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getGames() { return games; }
+
+    public long getMoves() { return moves; }
+
+    public long getTies() { return ties; }
+
+    public long getWins(int player) { return wins[player]; }
+
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public LatencyHistogram getMoveLatency() { return moveLatency; }
+
+    /**
+     * Gets the game throughput
+     * @post [getGamesPerSecond() = games / elapsed seconds, or 0 if no time elapsed]
+     * @return games finished per second
+     */
+    public double getGamesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Gets the move throughput
+     * @post [getMovesPerSecond() = moves / elapsed seconds, or 0 if no time elapsed]
+     * @return moves played per second
+     */
+    public double getMovesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : moves * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d games, %d moves in %.3f s: %.0f games/s, %.0f moves/s%n",
+                games, moves, elapsedNanos / 1e9, getGamesPerSecond(), getMovesPerSecond()));
+        for(int i = 0; i < players.length; i++)
+        {
+            text.append(String.format("%c wins %d (%.1f%%)  ", players[i], wins[i], percentOf(wins[i])));
+        }
+        text.append(String.format("ties %d (%.1f%%)%n", ties, percentOf(ties)));
+        text.append(String.format("move latency ns: mean %.0f p50 %d p90 %d p99 %d p99.9 %d max %d",
+                moveLatency.getMean(), moveLatency.getPercentile(50), moveLatency.getPercentile(90),
+                moveLatency.getPercentile(99), moveLatency.getPercentile(99.9), moveLatency.getMax()));
+        return text.toString();
+    }
+
+    private double percentOf(long count)
+    {
+        return games == 0 ? 0 : 100.0 * count / games;
+    }
+}
@@ -0,0 +1,128 @@
+package cpsc2150.extendedConnectX.views;
+
+import java.awt.*;
+import java.util.Arrays;
+import javax.swing.*;
+
+/**
+ * The grid of a ConnectX game drawn by one component, in place of a button per cell.
+ * <p>
+ * Tokens are kept in a char per cell. {@code setMarker} only repaints the cell that changed, and painting
+ * only draws the cells inside the clip, so a large board costs no more to update than a small one and only
+ * the visible part of a board inside a scroll pane is ever drawn. The font and its metrics are made once.
+ *
+ * @version 2.0
+ */
+class BoardPanel extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int CELL_SIZE = 50;
+
+    private final int rows;
+    private final int cols;
+    private final char[] cells;
+    private final Font font;
+    private FontMetrics metrics;
+
+    /**
+     * <p>
+     * This creates an empty board.
+     * </p>
+     *
+     * @param rows the number of rows in the grid
+     * @param cols the number of columns in the grid
+     * @param font the font tokens are drawn in
+     *
+     * @pre rows > 0 and cols > 0 and font != null
+     * @post [ an empty rows x cols grid of CELL_SIZE cells is created ]
+     */
+    BoardPanel(int rows, int cols, Font font) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = new char[rows * cols];
+        Arrays.fill(cells, ' ');
+        this.font = font;
+        setPreferredSize(new Dimension(cols * CELL_SIZE, rows * CELL_SIZE));
+        setOpaque(true);
+    }
+
+    /**
+     * <p>
+     * This method empties every cell.
+     * </p>
+     *
+     * @post [ every cell is empty ]
+     */
+    void clear() {
+        Arrays.fill(cells, ' ');
+        repaint();
+    }
+
+    /**
+     * <p>
+     * This method shows a token in a cell and repaints only that cell.
+     * </p>
+     *
+     * @param row the row of the cell, 0 at the bottom
+     * @param col the column of the cell
+     * @param player the token to show, or ' ' to empty the cell
+     *
+     * @pre 0 <= row < rows and 0 <= col < cols
+     * @post [ the cell at row, col shows player ]
+     */
+    void setMarker(int row, int col, char player) {
+        int index = (rows - (row + 1)) * cols + col;
+        if (cells[index] != player) {
+            cells[index] = player;
+            repaint(x(col), y(rows - (row + 1)), x(col + 1) - x(col), y(rows - row) - y(rows - (row + 1)));
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground() != null ? getBackground() : UIManager.getColor("Panel.background"));
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (metrics == null) {
+            metrics = g.getFontMetrics(font);
+        }
+        g.setFont(font);
+
+        // only the cells the clip touches are drawn
+        int firstCol = Math.max(0, clip.x * cols / Math.max(1, getWidth()));
+        int lastCol = Math.min(cols - 1, (clip.x + clip.width) * cols / Math.max(1, getWidth()));
+        int firstLine = Math.max(0, clip.y * rows / Math.max(1, getHeight()));
+        int lastLine = Math.min(rows - 1, (clip.y + clip.height) * rows / Math.max(1, getHeight()));
+        for (int line = firstLine; line <= lastLine; line++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int x = x(col);
+                int y = y(line);
+                int width = x(col + 1) - x;
+                int height = y(line + 1) - y;
+                g.setColor(Color.GRAY);
+                g.drawRect(x, y, width - 1, height - 1);
+                char token = cells[line * cols + col];
+                if (token != ' ') {
+                    g.setColor(Color.BLACK);
+                    String text = String.valueOf(token);
+                    g.drawString(text, x + (width - metrics.stringWidth(text)) / 2,
+                            y + (height - metrics.getHeight()) / 2 + metrics.getAscent());
+                }
+            }
+        }
+    }
+
+    // left edge of a column, spreading the width evenly when the component is resized
+    private int x(int col) {
+        return col * getWidth() / cols;
+    }
+
+    // top edge of a line of cells, counted from the top
+    private int y(int line) {
+        return line * getHeight() / rows;
+    }
+}
\ No newline at end of file
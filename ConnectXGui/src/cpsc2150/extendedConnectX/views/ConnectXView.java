@@ -10,9 +10,10 @@ import javax.swing.*;
 
 /**
  * This class is the view of our Extended Connect X
- * our view has a message area, and a list of buttons
- * the buttons will be arranges in a {@code ROWS_IN_BUTTON_PANEL x COLUMNS_IN_BUTTON_PANEL} Grid
- * Players will use another set of buttons above the grid to select the column to place in
+ * our view has a message area and a {@code ROWS_IN_BUTTON_PANEL x COLUMNS_IN_BUTTON_PANEL} grid
+ * the grid is drawn by a single {@link BoardPanel}, which repaints only the cells that change
+ * Players will use a set of buttons above the grid to select the column to place in
+ * Boards too big for the screen scroll, with the column buttons scrolling along with the grid
  * All events will be passed to the controller
  * <p>
  * You do not need to make any changes to this code, but you do need to understand much of what is happening
@@ -24,7 +25,9 @@ public class ConnectXView extends JFrame implements ActionListener {
     private ConnectXController controller;
 
     private final JTextArea message;
-    private final List<JButton> buttons;
+    private final JButton undoButton;
+    private final JButton newGameButton;
+    private final BoardPanel board;
     private final List<JButton> colButtons;
 
     private static final int LINES_IN_TEXT = 4, LINE_TEXT_LENGTHS = 20;
@@ -57,7 +60,17 @@ public class ConnectXView extends JFrame implements ActionListener {
         this.message.setEditable(false);
         this.message.setLineWrap(true);
         this.message.setWrapStyleWord(true);
-        message.setFont(message.getFont().deriveFont(fontSize));
+        //every widget shares this font instead of deriving its own
+        Font font = message.getFont().deriveFont(fontSize);
+        message.setFont(font);
+
+        //button to take back the last move
+        undoButton = new JButton("Undo");
+        undoButton.setFont(font);
+
+        //button to go back to the setup screen; clicking the board after a game ends plays a rematch instead
+        newGameButton = new JButton("New Game");
+        newGameButton.setFont(font);
 
         //set up buttons to be used to select a column
         colButtons = new ArrayList<>();
@@ -67,33 +80,26 @@ public class ConnectXView extends JFrame implements ActionListener {
             button.setPreferredSize(new Dimension(50, 50));
             button.setMinimumSize(new Dimension(50, 50));
             button.setMaximumSize(new Dimension(50, 50));
-            button.setFont(message.getFont().deriveFont(fontSize));
+            button.setFont(font);
             colButtons.add(button);
         }
 
-        //Add buttons to our list of buttons
-        //These buttons will be used to create our grid for our game board
-        //Buttons would not generally be used like this, however its an easy way to get nice rectangular cells for our grid
-
-        buttons = new ArrayList<JButton>();
-        for (int i = 0; i < ROWS_IN_BUTTON_PANEL * COLUMNS_IN_BUTTON_PANEL; i++) {
-            //these buttons are spaces on the board that start empty
-            JButton button = new JButton("");
-            button.setPreferredSize(new Dimension(50, 50));
-            button.setMinimumSize(new Dimension(50, 50));
-            button.setMaximumSize(new Dimension(50, 50));
-            button.setFont(message.getFont().deriveFont(fontSize));
-            //set enabled to false. we don't want players clicking these buttons
-            //we don't register as an observer because we only use these buttons to display our board
-            button.setEnabled(false);
-            buttons.add(button);
-        }
+        //the grid for our game board is one component that draws every cell itself
+        board = new BoardPanel(ROWS_IN_BUTTON_PANEL, COLUMNS_IN_BUTTON_PANEL, font);
 
         //create layout for the screen
-        this.setLayout(new GridLayout(ROWS_IN_BUTTON_PANEL + 2, 1));
+        this.setLayout(new BorderLayout());
         
-        //add our message box on top
-        this.add(message);
+        //add our message box on top, with the undo and new game buttons beside it
+        JPanel messagePanel = new JPanel(new BorderLayout());
+        messagePanel.add(message, BorderLayout.CENTER);
+        JPanel gameButtonPanel = new JPanel(new GridLayout(2, 1));
+        undoButton.addActionListener(this);
+        gameButtonPanel.add(undoButton);
+        newGameButton.addActionListener(this);
+        gameButtonPanel.add(newGameButton);
+        messagePanel.add(gameButtonPanel, BorderLayout.EAST);
+        this.add(messagePanel, BorderLayout.NORTH);
 
         //create a panel with buttons to select a column
         JPanel colButtonPanel = new JPanel(new GridLayout(1, COLUMNS_IN_BUTTON_PANEL));
@@ -103,22 +109,13 @@ public class ConnectXView extends JFrame implements ActionListener {
             //add to the panel
             colButtonPanel.add(colButtons.get(i));
         }
-        this.add(colButtonPanel);
-
-        //add our rows of buttons for the board
-        for (int i = 0; i < ROWS_IN_BUTTON_PANEL; i++) {
-            //create a panel to hold a row of buttons
-            JPanel buttonPanel = new JPanel(new GridLayout(1, COLUMNS_IN_BUTTON_PANEL));
-            for (int j = 0; j < COLUMNS_IN_BUTTON_PANEL; j++) {
-                //add a button in each column
-                int index = (i * COLUMNS_IN_BUTTON_PANEL) + j;
-                //add the screen as a listener
-                //buttons.get(index).addActionListener(this);
-                buttonPanel.add(buttons.get(index));
-            }
-            //row is complete, add it to out screen
-            this.add(buttonPanel);
-        }
+
+        //the column buttons sit in the scroll pane's header so they stay above their columns when scrolling
+        JScrollPane scrollPane = new JScrollPane(board);
+        scrollPane.setColumnHeaderView(colButtonPanel);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(BoardPanel.CELL_SIZE);
+        scrollPane.getHorizontalScrollBar().setUnitIncrement(BoardPanel.CELL_SIZE);
+        this.add(scrollPane, BorderLayout.CENTER);
 
         // Start the main application window --------------------------------
 
@@ -128,6 +125,8 @@ public class ConnectXView extends JFrame implements ActionListener {
          * visible to the user now
          */
         this.pack();
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        this.setSize(Math.min(getWidth(), screen.width), Math.min(getHeight(), screen.height));
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setVisible(true);
     }
@@ -162,11 +161,10 @@ public class ConnectXView extends JFrame implements ActionListener {
     @Override
     public void actionPerformed(ActionEvent event) {
         /*
-         * Set cursor to indicate computation on-going; this matters only if
-         * processing the event might take a noticeable amount of time as seen
-         * by the user
+         * The controller plays moves on a background thread and calls
+         * setInputEnabled while they run, so this returns straight away and
+         * the window keeps painting
          */
-        this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
         /*
          * Determine which event has occurred that we are being notified of by
@@ -185,13 +183,31 @@ public class ConnectXView extends JFrame implements ActionListener {
 
             //call the controller event
             controller.processButtonClick(column);
+        } else if (source == undoButton) {
+            controller.processUndoClick();
+        } else if (source == newGameButton) {
+            controller.processNewGameClick();
         }
+    }
 
-        /*
-         * Set the cursor back to normal (because we changed it at the beginning
-         * of the method body)
-         */
-        this.setCursor(Cursor.getDefaultCursor());
+    /**
+     * <p>
+     * This method blocks or allows input while a move is being processed.
+     * </p>
+     *
+     * @param enabled
+     *      Whether the column, undo and new game buttons can be clicked
+     *
+     * @post [ the column, undo and new game buttons are enabled iff enabled, and a wait cursor is shown while they are
+     * not ]
+     */
+    public void setInputEnabled(boolean enabled) {
+        for (JButton button : colButtons) {
+            button.setEnabled(enabled);
+        }
+        undoButton.setEnabled(enabled);
+        newGameButton.setEnabled(enabled);
+        this.setCursor(enabled ? Cursor.getDefaultCursor() : Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
     }
 
     /**
@@ -208,6 +224,18 @@ public class ConnectXView extends JFrame implements ActionListener {
         message.setText(m);
     }
 
+    /**
+     * <p>
+     * This method empties the grid so the window can be reused for another game of the same size.
+     * </p>
+     *
+     * @post [ every cell is empty and the message says it is X's turn ]
+     */
+    public void clear() {
+        board.clear();
+        message.setText("It is X\'s turn. ");
+    }
+
     /**
      * <p>
      * This method displays a player token on the screen.
@@ -224,10 +252,7 @@ public class ConnectXView extends JFrame implements ActionListener {
      * @post [ the button at row, col will display the character for the player ]
      */
     public void setMarker(int row, int col, char player) {
-        //find index, remember the indexing starts in top left
-        int index = ((ROWS_IN_BUTTON_PANEL - (row + 1)) * COLUMNS_IN_BUTTON_PANEL) + col;
-        
-        //set the text of the button
-        buttons.get(index).setText(Character.toString(player));
+        //the board repaints just this cell
+        board.setMarker(row, col, player);
     }
 }
\ No newline at end of file
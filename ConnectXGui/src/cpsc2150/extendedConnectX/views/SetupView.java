@@ -23,6 +23,9 @@ public class SetupView extends JFrame implements ActionListener {
     private JTextArea numColsTxt;
     private final Integer[] players = {2, 3, 4, 5, 6, 7, 8, 9, 10};
     private JComboBox<Integer> numPlayersCB;
+    private final Integer[] computers = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+    private JComboBox<Integer> numComputersCB;
+    private JLabel numComputersLbl;
     private JLabel errorMessageLbl;
     private JLabel numRowsLbl;
     private JLabel numColsLbl;
@@ -48,6 +51,8 @@ public class SetupView extends JFrame implements ActionListener {
         errorMessageLbl = new JLabel("");
         numPlayersLbl = new JLabel("Number of Players: ");
         numPlayersCB = new JComboBox<>(players);
+        numComputersLbl = new JLabel("Computer players: ");
+        numComputersCB = new JComboBox<>(computers);
         numWinLbl = new JLabel("Number to win: ");
         numWinTxt = new JTextArea(1, 10);
 
@@ -60,13 +65,16 @@ public class SetupView extends JFrame implements ActionListener {
         numPlayersLbl.setFont(numRowsLbl.getFont());
         numPlayersCB.setFont(numRowsLbl.getFont());
 
+        numComputersLbl.setFont(numRowsLbl.getFont());
+        numComputersCB.setFont(numRowsLbl.getFont());
+
         errorMessageLbl.setFont(numRowsLbl.getFont());
         submitButton.setFont(numRowsLbl.getFont());
 
         numWinLbl.setFont(numRowsLbl.getFont());
         numWinTxt.setFont(numRowsLbl.getFont());
 
-        this.setLayout(new GridLayout(6, 1));
+        this.setLayout(new GridLayout(7, 1));
         this.add(errorMessageLbl);
         JPanel rowsPanel = new JPanel(new GridLayout(1, 2));
         rowsPanel.add(numRowsLbl);
@@ -88,6 +96,11 @@ public class SetupView extends JFrame implements ActionListener {
         playersPanel.add(numPlayersCB);
         this.add(playersPanel);
 
+        JPanel computersPanel = new JPanel(new GridLayout(1, 2));
+        computersPanel.add(numComputersLbl);
+        computersPanel.add(numComputersCB);
+        this.add(computersPanel);
+
         submitButton.addActionListener(this);
         this.add(submitButton);
 
@@ -141,6 +154,7 @@ public class SetupView extends JFrame implements ActionListener {
             int numCols = 0;
             int numPlayers = 0;
             int numWin = 0;
+            int numComputers = 0;
             // exceptions to check for wrong data types
             //all other validation handled by controller
             try {
@@ -162,9 +176,10 @@ public class SetupView extends JFrame implements ActionListener {
             }
 
             numPlayers = numPlayersCB.getItemAt(numPlayersCB.getSelectedIndex());
+            numComputers = numComputersCB.getItemAt(numComputersCB.getSelectedIndex());
 
             if (msg.equals("")) {
-                controller.processButtonClick(numRows, numCols, numPlayers, numWin);
+                controller.processButtonClick(numRows, numCols, numPlayers, numWin, numComputers);
             } else {
                 errorMessageLbl.setText(msg);
             }